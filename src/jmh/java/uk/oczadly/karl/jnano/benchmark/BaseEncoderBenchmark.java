@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the general-purpose base-16 and base-32 encoders, using 256-bit account keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BaseEncoderBenchmark {
+    
+    private byte[][] keys;
+    private String[] hex, base32;
+    private int index;
+    
+    @Setup
+    public void setup() {
+        String[] addresses = Fixtures.addresses();
+        keys = new byte[addresses.length][];
+        hex = new String[addresses.length];
+        base32 = new String[addresses.length];
+        for (int i=0; i<addresses.length; i++) {
+            NanoAccount account = NanoAccount.parseAddress(addresses[i]);
+            keys[i] = account.getPublicKeyBytes();
+            hex[i] = account.toPublicKey();
+            base32[i] = account.getAddressSegment();
+        }
+    }
+    
+    private int next() {
+        if (++index == keys.length) index = 0;
+        return index;
+    }
+    
+    
+    @Benchmark
+    public String encodeBase32() {
+        return JNH.ENC_32.encode(keys[next()]);
+    }
+    
+    @Benchmark
+    public byte[] decodeBase32() {
+        return JNH.ENC_32.decode(base32[next()]);
+    }
+    
+    @Benchmark
+    public String encodeHex() {
+        return JNH.ENC_16.encode(keys[next()]);
+    }
+    
+    @Benchmark
+    public byte[] decodeHex() {
+        return JNH.ENC_16.decode(hex[next()]);
+    }
+    
+}
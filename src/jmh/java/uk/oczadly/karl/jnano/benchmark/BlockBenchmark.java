@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.benchmark;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.BlockCodec;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the deserialization and hashing of state blocks, using the block contents of recorded confirmation
+ * messages. As block hashes are cached by the instance, {@link #getHash()} constructs a new block each invocation;
+ * {@link #construct()} provides the baseline cost of doing so. The binary benchmarks use blocks encoded in the node's
+ * wire format through {@link BlockCodec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockBenchmark {
+    
+    private JsonObject[] json;
+    private StateBlock[] blocks;
+    private ByteBuffer[] encoded;
+    private int index;
+    
+    @Setup
+    public void setup() {
+        List<JsonObject> fixtures = Fixtures.stateBlocks();
+        json = fixtures.toArray(new JsonObject[0]);
+        blocks = new StateBlock[json.length];
+        for (int i=0; i<json.length; i++)
+            blocks[i] = StateBlock.DESERIALIZER.apply(json[i]);
+        encoded = new ByteBuffer[json.length];
+        for (int i=0; i<json.length; i++)
+            encoded[i] = ByteBuffer.wrap(BlockCodec.encode(blocks[i]));
+    }
+    
+    private int next() {
+        if (++index == json.length) index = 0;
+        return index;
+    }
+    
+    private static StateBlock copy(StateBlock b) {
+        return new StateBlock(b.getSubType(), b.getSignature(), b.getWorkSolution(), b.getAccount(),
+                b.getPreviousBlockHash(), b.getRepresentative(), b.getBalance(), b.getLinkAsAccount());
+    }
+    
+    
+    @Benchmark
+    public StateBlock deserialize() {
+        return StateBlock.DESERIALIZER.apply(json[next()]);
+    }
+    
+    @Benchmark
+    public StateBlock construct() {
+        return copy(blocks[next()]);
+    }
+    
+    @Benchmark
+    public String getHash() {
+        return copy(blocks[next()]).getHash();
+    }
+    
+    @Benchmark
+    public Block decodeBinary() {
+        return BlockCodec.decode(encoded[next()].duplicate());
+    }
+    
+    @Benchmark
+    public ByteBuffer encodeBinary() {
+        int i = next();
+        ByteBuffer buffer = encoded[i].duplicate();
+        BlockCodec.encode(blocks[i], buffer);
+        return buffer;
+    }
+    
+    @Benchmark
+    public byte[] hashBinary() {
+        return BlockCodec.hash(encoded[next()]);
+    }
+    
+}
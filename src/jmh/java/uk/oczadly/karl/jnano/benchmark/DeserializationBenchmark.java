@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.rpc.JsonResponseDeserializer;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.response.ResponseLedger;
+import uk.oczadly.karl.jnano.rpc.response.ResponseMultiBlockInfo;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the deserialization of recorded RPC responses (in both buffered and streaming modes), and of websocket
+ * confirmation messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+    
+    /** Whether the raw JSON is retained (buffered mode), or streamed directly into the response object. */
+    @Param({"true", "false"})
+    public boolean retainRawJson;
+    
+    private JsonResponseDeserializer deserializer;
+    private String ledger, blocksInfo;
+    private JsonObject[] confirmations;
+    private int index;
+    
+    @Setup
+    public void setup() {
+        deserializer = new JsonResponseDeserializer(JNH.GSON, retainRawJson);
+        ledger = Fixtures.load(Fixtures.LEDGER);
+        blocksInfo = Fixtures.load(Fixtures.BLOCKS_INFO);
+        JsonArray messages = Fixtures.confirmationMessages();
+        confirmations = new JsonObject[messages.size()];
+        for (int i=0; i<confirmations.length; i++)
+            confirmations[i] = messages.get(i).getAsJsonObject().getAsJsonObject("message");
+    }
+    
+    
+    @Benchmark
+    public ResponseLedger ledger() throws RpcException {
+        return deserializer.deserialize(ledger, ResponseLedger.class);
+    }
+    
+    @Benchmark
+    public ResponseMultiBlockInfo blocksInfo() throws RpcException {
+        return deserializer.deserialize(blocksInfo, ResponseMultiBlockInfo.class);
+    }
+    
+    @Benchmark
+    public TopicMessageConfirmation confirmationMessage() {
+        if (++index == confirmations.length) index = 0;
+        return JNH.GSON.fromJson(confirmations[index], TopicMessageConfirmation.class);
+    }
+    
+}
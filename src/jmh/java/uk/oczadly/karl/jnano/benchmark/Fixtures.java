@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the recorded node responses and websocket messages used by the benchmarks.
+ */
+final class Fixtures {
+    
+    /** A {@code ledger} response containing 200 accounts. */
+    static final String LEDGER = "ledger.json";
+    
+    /** A {@code blocks_info} response containing 100 confirmed state blocks. */
+    static final String BLOCKS_INFO = "blocks_info.json";
+    
+    /** An array of 100 websocket {@code confirmation} topic messages (including block contents). */
+    static final String CONFIRMATIONS = "confirmations.json";
+    
+    private Fixtures() {}
+    
+    
+    /** Returns the raw contents of the fixture file. */
+    static String load(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null)
+                throw new IllegalStateException("Fixture " + name + " not found.");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /** Returns the account addresses from the ledger fixture. */
+    static String[] addresses() {
+        return JsonParser.parseString(load(LEDGER)).getAsJsonObject()
+                .getAsJsonObject("accounts").keySet().toArray(new String[0]);
+    }
+    
+    /** Returns the state block contents from the confirmation messages fixture. */
+    static List<JsonObject> stateBlocks() {
+        List<JsonObject> blocks = new ArrayList<>();
+        for (JsonElement message : confirmationMessages())
+            blocks.add(message.getAsJsonObject().getAsJsonObject("message").getAsJsonObject("block"));
+        return blocks;
+    }
+    
+    /** Returns the parsed websocket messages from the confirmation messages fixture. */
+    static JsonArray confirmationMessages() {
+        return JsonParser.parseString(load(CONFIRMATIONS)).getAsJsonArray();
+    }
+    
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing, formatting and validation of account addresses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NanoAccountBenchmark {
+    
+    private String[] addresses;
+    private byte[][] keys;
+    private int index;
+    
+    @Setup
+    public void setup() {
+        addresses = Fixtures.addresses();
+        keys = new byte[addresses.length][];
+        for (int i=0; i<addresses.length; i++)
+            keys[i] = NanoAccount.parseAddress(addresses[i]).getPublicKeyBytes();
+    }
+    
+    private int next() {
+        if (++index == addresses.length) index = 0;
+        return index;
+    }
+    
+    
+    @Benchmark
+    public NanoAccount parseAddress() {
+        return NanoAccount.parseAddress(addresses[next()]);
+    }
+    
+    @Benchmark
+    public String toAddress() {
+        return new NanoAccount(keys[next()]).toAddress();
+    }
+    
+    @Benchmark
+    public boolean isValidNano() {
+        return NanoAccount.isValidNano(addresses[next()]);
+    }
+    
+}
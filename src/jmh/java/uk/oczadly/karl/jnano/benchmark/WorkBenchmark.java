@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.block.StateBlock;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.model.work.WorkValidator;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks single-threaded work generation and validation. A low difficulty threshold (an expected 256 attempts
+ * per solution) is used for generation, so that the results reflect the cost of each hash attempt. The bulk
+ * validation benchmark validates all of the fixture blocks per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkBenchmark {
+    
+    private static final WorkDifficulty DIFFICULTY = new WorkDifficulty("ff00000000000000");
+    
+    private byte[][] roots;
+    private String[] hexRoots;
+    private WorkSolution[] solutions;
+    private int index;
+    
+    @Setup
+    public void setup() throws InterruptedException {
+        StateBlock[] blocks = Fixtures.stateBlocks().stream()
+                .map(StateBlock.DESERIALIZER)
+                .toArray(StateBlock[]::new);
+        roots = new byte[blocks.length][];
+        hexRoots = new String[blocks.length];
+        solutions = new WorkSolution[blocks.length];
+        for (int i=0; i<blocks.length; i++) {
+            hexRoots[i] = WorkSolution.getRoot(blocks[i]);
+            roots[i] = JNH.ENC_16.decode(hexRoots[i]);
+            solutions[i] = blocks[i].getWorkSolution();
+        }
+    }
+    
+    private int next() {
+        if (++index == roots.length) index = 0;
+        return index;
+    }
+    
+    
+    @Benchmark
+    public WorkSolution generate() throws InterruptedException {
+        return WorkSolution.generate(roots[next()], DIFFICULTY);
+    }
+    
+    @Benchmark
+    public WorkDifficulty calculateDifficulty() {
+        int i = next();
+        return solutions[i].calculateDifficulty(roots[i]);
+    }
+    
+    @Benchmark
+    public BitSet validateBulk() {
+        return WorkValidator.validate(hexRoots, solutions, DIFFICULTY);
+    }
+    
+}
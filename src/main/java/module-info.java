@@ -15,8 +15,10 @@ module uk.oczadly.karl.jnano {
     exports uk.oczadly.karl.jnano.rpc.request.node;
     exports uk.oczadly.karl.jnano.rpc.request.wallet;
     exports uk.oczadly.karl.jnano.rpc.response;
+    exports uk.oczadly.karl.jnano.rpc.util;
     // Utils
     exports uk.oczadly.karl.jnano.util;
+    exports uk.oczadly.karl.jnano.util.workgen;
     // WebSocket
     exports uk.oczadly.karl.jnano.websocket;
     exports uk.oczadly.karl.jnano.websocket.topic;
@@ -26,5 +28,7 @@ module uk.oczadly.karl.jnano {
     requires transitive com.google.gson;
     requires blake2b;
     requires Java.WebSocket;
+    requires transitive java.net.http;
+    requires static jdk.httpserver; // Only required by WorkServer
 
 }
\ No newline at end of file
@@ -19,6 +19,8 @@ import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 /**
@@ -177,6 +179,21 @@ public class JNH {
         return val;
     }
     
+    /**
+     * Creates a new thread pool. If {@code virtual} is true and the runtime supports virtual threads, then a
+     * virtual-thread-per-task executor will be returned instead of the fixed platform thread pool.
+     */
+    public static ExecutorService newThreadPool(int maxThreads, boolean virtual) {
+        if (virtual) {
+            try {
+                return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ignored) {
+                // Virtual threads unsupported (or disabled preview), fall back to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool(maxThreads);
+    }
+    
     public static <T> T unchecked(Callable<T> supplier) {
         try {
             return supplier.call();
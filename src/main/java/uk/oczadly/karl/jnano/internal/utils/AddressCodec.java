@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import com.rfksystems.blake2b.Blake2b;
+
+/**
+ * A specialised base-32 codec for Nano account addresses, which encodes a fixed 256-bit public key (52 characters)
+ * and 40-bit checksum (8 characters). Unlike {@link BaseEncoder}, all methods operate on caller-supplied buffers and
+ * do not allocate any intermediate objects.
+ */
+public final class AddressCodec {
+
+    /** The number of characters in an encoded public key. */
+    public static final int KEY_CHARS = 52;
+
+    /** The number of characters in an encoded checksum. */
+    public static final int CHECKSUM_CHARS = 8;
+
+    /** The number of characters in an encoded address (excluding the prefix and separator). */
+    public static final int ADDRESS_CHARS = KEY_CHARS + CHECKSUM_CHARS;
+
+    private static final char[] ALPHABET = "13456789abcdefghijkmnopqrstuwxyz".toCharArray();
+    private static final byte[] REVERSE = new byte[128];
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    static {
+        for (int i=0; i<REVERSE.length; i++) REVERSE[i] = -1;
+        for (byte i=0; i<ALPHABET.length; i++) {
+            REVERSE[ALPHABET[i]] = i;
+            REVERSE[Character.toUpperCase(ALPHABET[i])] = i;
+        }
+    }
+
+    private AddressCodec() {}
+
+
+    /**
+     * Encodes a 32-byte public key as 52 base-32 characters.
+     * @param key    the 32-byte public key
+     * @param out    the destination array
+     * @param offset the index of {@code out} to begin writing at
+     */
+    public static void encodeKey(byte[] key, char[] out, int offset) {
+        int acc = 0, bits = 4; // Key is left-padded with 4 zero bits
+        for (int i=0; i<32; i++) {
+            acc = (acc << 8) | (key[i] & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                out[offset++] = ALPHABET[(acc >>> bits) & 31];
+            }
+        }
+    }
+
+    /**
+     * Encodes a 5-byte checksum as 8 base-32 characters.
+     * @param checksum the 5-byte checksum
+     * @param out      the destination array
+     * @param offset   the index of {@code out} to begin writing at
+     */
+    public static void encodeChecksum(byte[] checksum, char[] out, int offset) {
+        int acc = 0, bits = 0;
+        for (int i=0; i<5; i++) {
+            acc = (acc << 8) | (checksum[i] & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                out[offset++] = ALPHABET[(acc >>> bits) & 31];
+            }
+        }
+    }
+
+    /**
+     * Encodes a complete address, consisting of the optional prefix, encoded public key and checksum.
+     * @param prefix   the prefix (without separator), or null
+     * @param key      the 32-byte public key
+     * @param checksum the 5-byte checksum
+     * @return the encoded address
+     */
+    public static String encodeAddress(String prefix, byte[] key, byte[] checksum) {
+        int offset = prefix == null ? 0 : prefix.length() + 1;
+        char[] chars = new char[offset + ADDRESS_CHARS];
+        if (prefix != null) {
+            prefix.getChars(0, prefix.length(), chars, 0);
+            chars[offset - 1] = '_';
+        }
+        encodeKey(key, chars, offset);
+        encodeChecksum(checksum, chars, offset + KEY_CHARS);
+        return new String(chars);
+    }
+
+    /**
+     * Decodes 52 base-32 characters into a 32-byte public key. Both lower and upper-case characters are accepted.
+     * @param str    the source string
+     * @param offset the index of the first character
+     * @param out    the 32-byte destination array
+     * @return false if the string contains illegal characters, or the key exceeds 256 bits
+     */
+    public static boolean decodeKey(CharSequence str, int offset, byte[] out) {
+        int acc = value(str.charAt(offset)), bits = 1; // Discard 4 padding bits
+        if (acc < 0 || acc > 1) return false;
+        for (int i=1, n=0; i<KEY_CHARS; i++) {
+            int val = value(str.charAt(offset + i));
+            if (val < 0) return false;
+            acc = (acc << 5) | val;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out[n++] = (byte)(acc >>> bits);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes 8 base-32 characters into a 5-byte checksum. Both lower and upper-case characters are accepted.
+     * @param str    the source string
+     * @param offset the index of the first character
+     * @param out    the 5-byte destination array
+     * @return false if the string contains illegal characters
+     */
+    public static boolean decodeChecksum(CharSequence str, int offset, byte[] out) {
+        long acc = 0;
+        for (int i=0; i<CHECKSUM_CHARS; i++) {
+            int val = value(str.charAt(offset + i));
+            if (val < 0) return false;
+            acc = (acc << 5) | val;
+        }
+        for (int i=4; i>=0; i--) {
+            out[i] = (byte)acc;
+            acc >>>= 8;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the encoded checksum characters against the given checksum bytes.
+     * @param str      the source string
+     * @param offset   the index of the first checksum character
+     * @param checksum the expected 5-byte checksum
+     * @return true if the checksum matches
+     */
+    public static boolean checksumMatches(CharSequence str, int offset, byte[] checksum) {
+        long acc = 0;
+        for (int i=0; i<CHECKSUM_CHARS; i++) {
+            int val = value(str.charAt(offset + i));
+            if (val < 0) return false;
+            acc = (acc << 5) | val;
+        }
+        for (int i=4; i>=0; i--) {
+            if (checksum[i] != (byte)acc) return false;
+            acc >>>= 8;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the address checksum of a public key (the 5-byte Blake2b digest, in reversed byte order).
+     * @param key the 32-byte public key
+     * @param out the 5-byte destination array
+     */
+    public static void checksum(byte[] key, byte[] out) {
+        Blake2b digest = SCRATCH.get().digest;
+        digest.reset();
+        digest.update(key, 0, 32);
+        digest.digest(out, 0);
+        for (int i=0; i<2; i++) {
+            byte b = out[i];
+            out[i] = out[4 - i];
+            out[4 - i] = b;
+        }
+    }
+
+    /**
+     * Validates the encoded key and checksum segments of an address, without allocating any objects.
+     * @param str    the source string
+     * @param offset the index of the first key character
+     * @return true if the characters are valid and the checksum matches the key
+     */
+    public static boolean isValid(CharSequence str, int offset) {
+        Scratch scratch = SCRATCH.get();
+        if (!decodeKey(str, offset, scratch.key)) return false;
+        checksum(scratch.key, scratch.checksum);
+        return checksumMatches(str, offset + KEY_CHARS, scratch.checksum);
+    }
+
+    /**
+     * @param str    the source string
+     * @param offset the index of the first character
+     * @param length the number of characters to check
+     * @return true if the range contains no upper-case characters
+     */
+    public static boolean isLowerCase(CharSequence str, int offset, int length) {
+        for (int i=offset; i<offset+length; i++) {
+            char c = str.charAt(i);
+            if (c >= 'A' && c <= 'Z') return false;
+        }
+        return true;
+    }
+
+
+    private static int value(char c) {
+        return c < 128 ? REVERSE[c] : -1;
+    }
+
+    /** Per-thread buffers used for allocation-free validation. */
+    private static final class Scratch {
+        final Blake2b digest = new Blake2b(null, 5, null, null);
+        final byte[] key = new byte[32], checksum = new byte[5];
+    }
+
+}
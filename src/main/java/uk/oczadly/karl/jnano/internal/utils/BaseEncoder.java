@@ -36,12 +36,9 @@ public class BaseEncoder {
     
     
     public boolean matchesCharacterSet(String str) {
-        for(char c : str.toCharArray()) {
-            try {
-                this.getValueFromChar(c);
-            } catch (IllegalArgumentException e) {
-                return false;
-            }
+        for(int i=0; i<str.length(); i++) {
+            char c = str.charAt(i);
+            if((int)c < TABLE_START || (int)c >= TABLE_END || charReverseTable[(int)c - TABLE_START] == -1) return false;
         }
         return true;
     }
@@ -61,7 +58,8 @@ public class BaseEncoder {
     
     
     public String encode(byte[] rawBytes) {
-        StringBuilder sb = new StringBuilder((int)(rawBytes.length * this.base.charsPerByte) + 1); //Approximate capacity
+        char[] chars = new char[(rawBytes.length * 8 + this.base.bits - 1) / this.base.bits]; //Exact length
+        int charIndex = 0;
         
         int remainder = (rawBytes.length * 8) % this.base.bits;
         int offset = remainder == 0 ? 0 : this.base.bits - remainder;
@@ -76,7 +74,7 @@ public class BaseEncoder {
             
             while(remainingBits >= this.base.bits) {
                 int val = (value >>> (remainingBits + offset - this.base.bits)) & this.base.bitmask;
-                sb.append(this.getCharFromValue(val));
+                chars[charIndex++] = this.charLookupTable[val];
                 remainingBits -= this.base.bits;
             }
         }
@@ -84,10 +82,10 @@ public class BaseEncoder {
         //Handle remaining bits
         if(remainingBits > 0) {
             int val = (value << (this.base.bits - (remainingBits + offset))) & this.base.bitmask;
-            sb.append(this.getCharFromValue(val));
+            chars[charIndex] = this.charLookupTable[val];
         }
         
-        return sb.toString();
+        return new String(chars);
     }
     
     
@@ -102,8 +100,8 @@ public class BaseEncoder {
         int remainingBits = 0; //Count of unprocessed bits
         boolean processedFirst = false;
         
-        for(char c : data.toCharArray()) {
-            value = (value << this.base.bits) | getValueFromChar(c);
+        for(int i=0; i<data.length(); i++) {
+            value = (value << this.base.bits) | getValueFromChar(data.charAt(i));
             remainingBits += this.base.bits;
             
             if(remainingBits >= 8) {
@@ -0,0 +1,783 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+import com.rfksystems.blake2b.Blake2b;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * <p>An implementation of the ed25519 signature scheme, using Blake2b-512 in place of SHA-512 (as used by the Nano
+ * protocol).</p>
+ *
+ * <p>Field elements are represented as ten limbs of alternating 26 and 25 bits stored in {@code long} arrays, and
+ * points are represented in extended coordinates, using a single complete addition formula. Fixed-base scalar
+ * multiplication (used for key derivation and signing) uses a table of precomputed multiples of the base point with
+ * signed 4-bit digits, requiring only 64 additions and 4 doublings; the table is computed once on first use.
+ * Operations involving secret values do not branch on or index memory by secret data. Variable-base multiplication
+ * (used only for verification) uses a 4-bit fixed window.</p>
+ */
+public final class Ed25519 {
+    
+    /** The length of public and private keys, in bytes. */
+    public static final int KEY_LENGTH = 32;
+    
+    /** The length of signatures, in bytes. */
+    public static final int SIGNATURE_LENGTH = 64;
+    
+    private static final int[] LIMB_BITS = {26, 25, 26, 25, 26, 25, 26, 25, 26, 25};
+    private static final BigInteger P = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+    private static final long[] GF0 = new long[10], GF1 = gf(BigInteger.ONE);
+    private static final long[] D, D2, SQRT_M1, BASE_X, BASE_Y;
+    private static final long[] L = new long[32];
+    private static final byte[] L_DIGITS;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    static {
+        BigInteger d = BigInteger.valueOf(-121665).multiply(BigInteger.valueOf(121666).modInverse(P)).mod(P);
+        BigInteger sqrtM1 = BigInteger.TWO.modPow(P.subtract(BigInteger.ONE).shiftRight(2), P);
+        BigInteger y = BigInteger.valueOf(4).multiply(BigInteger.valueOf(5).modInverse(P)).mod(P);
+        // x = sqrt((y^2 - 1) / (d * y^2 + 1)), choosing the even root
+        BigInteger y2 = y.multiply(y);
+        BigInteger xx = y2.subtract(BigInteger.ONE).multiply(d.multiply(y2).add(BigInteger.ONE).modInverse(P)).mod(P);
+        BigInteger x = xx.modPow(P.add(BigInteger.valueOf(3)).shiftRight(3), P);
+        if (!x.multiply(x).subtract(xx).mod(P).equals(BigInteger.ZERO)) x = x.multiply(sqrtM1).mod(P);
+        if (x.testBit(0)) x = P.subtract(x);
+        
+        D = gf(d);
+        D2 = gf(d.shiftLeft(1).mod(P));
+        SQRT_M1 = gf(sqrtM1);
+        BASE_X = gf(x);
+        BASE_Y = gf(y);
+        byte[] l = BigInteger.ONE.shiftLeft(252).add(new BigInteger("27742317777372353535851937790883648493"))
+                .toByteArray();
+        byte[] lBytes = new byte[32];
+        for (int i=0; i<32; i++) {
+            L[i] = l[l.length - 1 - i] & 0xFF;
+            lBytes[i] = (byte)L[i];
+        }
+        L_DIGITS = slide(lBytes, 0);
+    }
+    
+    private Ed25519() {}
+    
+    
+    /**
+     * Derives the public key of a private key.
+     * @param privateKey the 32-byte private key
+     * @return the 32-byte public key
+     */
+    public static byte[] derivePublicKey(byte[] privateKey) {
+        checkLength(privateKey, KEY_LENGTH, "Private key");
+        byte[] d = expandKey(privateKey);
+        byte[] pk = new byte[32];
+        long[][] p = point();
+        scalarBase(p, d);
+        pack(pk, p);
+        return pk;
+    }
+    
+    /**
+     * Signs a message.
+     * @param message    the message (typically a 32-byte block hash)
+     * @param privateKey the 32-byte private key
+     * @return the 64-byte signature
+     */
+    public static byte[] sign(byte[] message, byte[] privateKey) {
+        checkLength(privateKey, KEY_LENGTH, "Private key");
+        if (message == null) throw new IllegalArgumentException("Message cannot be null.");
+        
+        byte[] d = expandKey(privateKey);
+        byte[] pk = new byte[32];
+        long[][] p = point();
+        scalarBase(p, d);
+        pack(pk, p);
+        
+        byte[] sig = new byte[64];
+        byte[] r = hash(d, 32, 32, message, null);
+        reduce(r);
+        scalarBase(p, r);
+        pack(sig, p);
+        
+        byte[] h = hash(sig, 0, 32, pk, message);
+        reduce(h);
+        mulAddModL(sig, 32, h, 0, 32, d, 0, r);
+        return sig;
+    }
+    
+    /**
+     * Verifies the signature of a message.
+     * @param message   the message (typically a 32-byte block hash)
+     * @param signature the 64-byte signature
+     * @param publicKey the 32-byte public key
+     * @return true if the signature is valid
+     */
+    public static boolean verify(byte[] message, byte[] signature, byte[] publicKey) {
+        checkLength(signature, SIGNATURE_LENGTH, "Signature");
+        checkLength(publicKey, KEY_LENGTH, "Public key");
+        if (message == null) throw new IllegalArgumentException("Message cannot be null.");
+        
+        if ((signature[63] & 0xE0) != 0) return false; // S must be reduced
+        long[][] a = point();
+        if (!unpackNeg(a, publicKey)) return false;
+        
+        byte[] h = hash(signature, 0, 32, publicKey, message);
+        reduce(h);
+        long[][] p = point(), q = point();
+        scalarMultVartime(p, a, h);
+        byte[] s = new byte[32];
+        System.arraycopy(signature, 32, s, 0, 32);
+        scalarBase(q, s);
+        add(p, q);
+        
+        byte[] t = new byte[32];
+        pack(t, p);
+        int diff = 0;
+        for (int i=0; i<32; i++)
+            diff |= t[i] ^ signature[i];
+        return diff == 0;
+    }
+    
+    /**
+     * <p>Verifies a batch of signatures using the randomized batch verification equation
+     * {@code [Σz·s]B = Σ[z]R + Σ[z·h]A}, where each {@code z} is a random 128-bit scalar. The right-hand side is
+     * computed through a single multi-scalar multiplication (interleaved width-5 NAF windows, sharing one set of
+     * doublings between all of the points), which is significantly cheaper than verifying each signature
+     * separately.</p>
+     *
+     * <p>The equation alone cannot detect an error term of small order, as {@code [z]} of a small-order point is the
+     * identity for a large fraction of the random scalars. To accept exactly the same signatures as {@link #verify},
+     * entries with a non-canonical {@code R} encoding, or an {@code R} or {@code A} point with a small-order component
+     * (checked through {@code [L]P}), are rejected before entering the batch. With these checks, a batch of
+     * signatures which are not all valid is accepted with a probability of at most 2<sup>-128</sup>.</p>
+     *
+     * <p>If false is returned, then either at least one signature is invalid, or an entry could not be batch
+     * verified; the signatures should be verified individually to identify which are invalid.</p>
+     *
+     * @param messages   the messages
+     * @param signatures the 64-byte signatures
+     * @param publicKeys the 32-byte public keys
+     * @return true if every signature is valid
+     */
+    public static boolean verifyBatch(byte[][] messages, byte[][] signatures, byte[][] publicKeys) {
+        if (messages == null) throw new IllegalArgumentException("Messages array cannot be null.");
+        if (signatures == null) throw new IllegalArgumentException("Signatures array cannot be null.");
+        if (publicKeys == null) throw new IllegalArgumentException("Public keys array cannot be null.");
+        int n = messages.length;
+        if (signatures.length != n || publicKeys.length != n)
+            throw new IllegalArgumentException("Messages, signatures and public keys arrays must be the same length.");
+        for (int i=0; i<n; i++) {
+            if (messages[i] == null) throw new IllegalArgumentException("Message cannot be null.");
+            checkLength(signatures[i], SIGNATURE_LENGTH, "Signature");
+            checkLength(publicKeys[i], KEY_LENGTH, "Public key");
+        }
+        if (n == 0) return true;
+        
+        byte[] z = new byte[32 * n]; // Only the lower 16 bytes of each scalar are random
+        byte[] random = new byte[16 * n];
+        RANDOM.nextBytes(random);
+        for (int i=0; i<n; i++)
+            System.arraycopy(random, 16 * i, z, 32 * i, 16);
+        
+        // Points are decoded as negations, so that the sum is the identity if the signatures are valid
+        long[][][][] tables = new long[2 * n][][][];
+        byte[][] digits = new byte[2 * n][];
+        byte[] sumS = new byte[32], zh = new byte[32];
+        for (int i=0; i<n; i++) {
+            byte[] sig = signatures[i], pk = publicKeys[i];
+            if ((sig[63] & 0xE0) != 0) return false; // S must be reduced
+            long[][] a = point(), r = point();
+            if (!unpackNeg(a, pk) || !unpackNeg(r, sig) || !isCanonicalNeg(r, sig)) return false;
+            tables[2 * i] = oddMultiples(a);
+            tables[2 * i + 1] = oddMultiples(r);
+            if (!isTorsionFree(tables[2 * i]) || !isTorsionFree(tables[2 * i + 1])) return false;
+            
+            byte[] h = hash(sig, 0, 32, pk, messages[i]);
+            reduce(h);
+            mulAddModL(zh, 0, z, 32 * i, 16, h, 0, null);
+            mulAddModL(sumS, 0, z, 32 * i, 16, sig, 32, sumS);
+            digits[2 * i] = slide(zh, 0);
+            digits[2 * i + 1] = slide(z, 32 * i);
+        }
+        
+        long[][] p = point(), t = point();
+        setIdentity(p);
+        for (int i=255; i>=0; i--) {
+            add(p, p);
+            for (int j=0; j<digits.length; j++) {
+                int d = digits[j][i];
+                if (d > 0) {
+                    add(p, tables[j][d >> 1]);
+                } else if (d < 0) {
+                    negate(t, tables[j][-d >> 1]);
+                    add(p, t);
+                }
+            }
+        }
+        scalarBase(t, sumS);
+        add(p, t);
+        
+        byte[] packed = new byte[32];
+        pack(packed, p);
+        int diff = packed[0] ^ 1; // The identity point is encoded as y = 1, x = 0
+        for (int i=1; i<32; i++)
+            diff |= packed[i];
+        return diff == 0;
+    }
+    
+    
+    /* Hashing and scalars */
+    
+    private static byte[] expandKey(byte[] privateKey) {
+        byte[] d = hash(privateKey, 0, 32, null, null);
+        d[0] &= (byte)248;
+        d[31] &= 127;
+        d[31] |= 64;
+        return d;
+    }
+    
+    private static byte[] hash(byte[] a, int aOff, int aLen, byte[] b, byte[] c) {
+        Blake2b digest = new Blake2b(null, 64, null, null);
+        digest.update(a, aOff, aLen);
+        if (b != null) digest.update(b, 0, b.length);
+        if (c != null) digest.update(c, 0, c.length);
+        byte[] out = new byte[64];
+        digest.digest(out, 0);
+        return out;
+    }
+    
+    /** Reduces a 64-byte little-endian value modulo L, storing the result in the first 32 bytes. */
+    private static void reduce(byte[] r) {
+        long[] x = new long[64];
+        for (int i=0; i<64; i++) {
+            x[i] = r[i] & 0xFF;
+            r[i] = 0;
+        }
+        modL(r, 0, x);
+    }
+    
+    /** Computes (a * b + c) mod L, where a has the given length and b and c are 32 bytes (c may be null). */
+    private static void mulAddModL(byte[] out, int outOff, byte[] a, int aOff, int aLen, byte[] b, int bOff,
+                                   byte[] c) {
+        long[] x = new long[64];
+        if (c != null) {
+            for (int i=0; i<32; i++)
+                x[i] = c[i] & 0xFF;
+        }
+        for (int i=0; i<aLen; i++) {
+            long ai = a[aOff + i] & 0xFF;
+            for (int j=0; j<32; j++)
+                x[i + j] += ai * (b[bOff + j] & 0xFF);
+        }
+        modL(out, outOff, x);
+    }
+    
+    /**
+     * Recodes a 32-byte scalar (less than 2^255) into 256 signed digits, where each non-zero digit is odd and in the
+     * range [-15, 15], and is followed by at least 4 zero digits.
+     */
+    private static byte[] slide(byte[] a, int off) {
+        byte[] r = new byte[256];
+        for (int i=0; i<256; i++)
+            r[i] = (byte)(1 & (a[off + (i >> 3)] >> (i & 7)));
+        for (int i=0; i<256; i++) {
+            if (r[i] == 0) continue;
+            for (int b=1; b<=6 && i + b < 256; b++) {
+                if (r[i + b] == 0) continue;
+                if (r[i] + (r[i + b] << b) <= 15) {
+                    r[i] += r[i + b] << b;
+                    r[i + b] = 0;
+                } else if (r[i] - (r[i + b] << b) >= -15) {
+                    r[i] -= r[i + b] << b;
+                    for (int k=i+b; k<256; k++) {
+                        if (r[k] == 0) {
+                            r[k] = 1;
+                            break;
+                        }
+                        r[k] = 0;
+                    }
+                } else {
+                    break;
+                }
+            }
+        }
+        return r;
+    }
+    
+    private static void modL(byte[] r, int off, long[] x) {
+        long carry;
+        for (int i=63; i>=32; i--) {
+            carry = 0;
+            int j;
+            for (j=i-32; j<i-12; j++) {
+                x[j] += carry - 16 * x[i] * L[j - (i - 32)];
+                carry = (x[j] + 128) >> 8;
+                x[j] -= carry << 8;
+            }
+            x[j] += carry;
+            x[i] = 0;
+        }
+        carry = 0;
+        for (int j=0; j<32; j++) {
+            x[j] += carry - (x[31] >> 4) * L[j];
+            carry = x[j] >> 8;
+            x[j] &= 255;
+        }
+        for (int j=0; j<32; j++)
+            x[j] -= carry * L[j];
+        for (int i=0; i<32; i++) {
+            x[i + 1] += x[i] >> 8;
+            r[off + i] = (byte)(x[i] & 255);
+        }
+    }
+    
+    
+    /* Points */
+    
+    private static long[][] point() {
+        return new long[][] {gf(), gf(), gf(), gf()};
+    }
+    
+    private static void setIdentity(long[][] p) {
+        set(p[0], GF0);
+        set(p[1], GF1);
+        set(p[2], GF1);
+        set(p[3], GF0);
+    }
+    
+    /** Adds q to p (complete formula, also valid when p and q are equal). */
+    private static void add(long[][] p, long[][] q) {
+        long[] a = gf(), b = gf(), c = gf(), d = gf(), t = gf(),
+                e = gf(), f = gf(), g = gf(), h = gf();
+        sub(a, p[1], p[0]);
+        sub(t, q[1], q[0]);
+        mul(a, a, t);
+        add(b, p[0], p[1]);
+        add(t, q[0], q[1]);
+        mul(b, b, t);
+        mul(c, p[3], q[3]);
+        mul(c, c, D2);
+        mul(d, p[2], q[2]);
+        add(d, d, d);
+        sub(e, b, a);
+        sub(f, d, c);
+        add(g, d, c);
+        add(h, b, a);
+        mul(p[0], e, f);
+        mul(p[1], h, g);
+        mul(p[2], g, f);
+        mul(p[3], e, h);
+    }
+    
+    private static void pack(byte[] r, long[][] p) {
+        long[] tx = gf(), ty = gf(), zi = gf();
+        inv(zi, p[2]);
+        mul(tx, p[0], zi);
+        mul(ty, p[1], zi);
+        pack(r, 0, ty);
+        r[31] ^= parity(tx) << 7;
+    }
+    
+    /** Decodes the negation of a point, returning false if the encoding is invalid. */
+    private static boolean unpackNeg(long[][] r, byte[] p) {
+        long[] t = gf(), chk = gf(), num = gf(), den = gf(), den2 = gf(),
+                den4 = gf(), den6 = gf();
+        set(r[2], GF1);
+        unpack(r[1], p);
+        sqr(num, r[1]);
+        mul(den, num, D);
+        sub(num, num, r[2]);
+        add(den, r[2], den);
+        
+        sqr(den2, den);
+        sqr(den4, den2);
+        mul(den6, den4, den2);
+        mul(t, den6, num);
+        mul(t, t, den);
+        pow2523(t, t);
+        mul(t, t, num);
+        mul(t, t, den);
+        mul(t, t, den);
+        mul(r[0], t, den);
+        
+        sqr(chk, r[0]);
+        mul(chk, chk, den);
+        if (!equal(chk, num)) mul(r[0], r[0], SQRT_M1);
+        sqr(chk, r[0]);
+        mul(chk, chk, den);
+        if (!equal(chk, num)) return false;
+        
+        if (parity(r[0]) == ((p[31] & 0xFF) >> 7)) sub(r[0], GF0, r[0]);
+        mul(r[3], r[0], r[1]);
+        return true;
+    }
+    
+    /**
+     * Returns true if the 32-byte encoding is the canonical encoding of the point, given its decoded negation. The
+     * encoding is not canonical if y is not reduced (y &ge; p), or if the sign bit is set when x is zero.
+     */
+    private static boolean isCanonicalNeg(long[][] neg, byte[] p) {
+        long[] x = gf();
+        sub(x, GF0, neg[0]);
+        byte[] t = new byte[32];
+        pack(t, 0, neg[1]);
+        t[31] ^= parity(x) << 7;
+        int diff = 0;
+        for (int i=0; i<32; i++)
+            diff |= t[i] ^ p[i];
+        return diff == 0;
+    }
+    
+    /**
+     * Returns true if the point has no small-order component, i.e. [L]Q is the identity, given the odd multiples of
+     * Q. Not constant-time, so must only be used with public values.
+     */
+    private static boolean isTorsionFree(long[][][] multiples) {
+        long[][] p = point(), t = point();
+        setIdentity(p);
+        for (int i=255; i>=0; i--) {
+            add(p, p);
+            int d = L_DIGITS[i];
+            if (d > 0) {
+                add(p, multiples[d >> 1]);
+            } else if (d < 0) {
+                negate(t, multiples[-d >> 1]);
+                add(p, t);
+            }
+        }
+        return equal(p[0], GF0) && equal(p[1], p[2]);
+    }
+    
+    /** Computes [s]B using the precomputed table, in constant time. */
+    private static void scalarBase(long[][] p, byte[] s) {
+        byte[] e = new byte[64];
+        for (int i=0; i<32; i++) {
+            e[2 * i] = (byte)(s[i] & 15);
+            e[2 * i + 1] = (byte)((s[i] >> 4) & 15);
+        }
+        int carry = 0; // Convert to signed digits in [-8, 8]
+        for (int i=0; i<63; i++) {
+            e[i] += carry;
+            carry = (e[i] + 8) >> 4;
+            e[i] -= carry << 4;
+        }
+        e[63] += carry;
+        
+        long[][][][] table = BaseTable.TABLE;
+        long[][] t = point();
+        setIdentity(p);
+        for (int i=1; i<64; i+=2) {
+            select(t, table[i >> 1], e[i]);
+            add(p, t);
+        }
+        for (int i=0; i<4; i++)
+            add(p, p);
+        for (int i=0; i<64; i+=2) {
+            select(t, table[i >> 1], e[i]);
+            add(p, t);
+        }
+    }
+    
+    /** Sets t to [b] of the given row, where b is in [-8, 8], without branching on b. */
+    private static void select(long[][] t, long[][][] row, int b) {
+        int negative = b >>> 31;
+        int abs = b - ((-negative & b) << 1);
+        setIdentity(t);
+        for (int j=0; j<8; j++) {
+            int eq = ((abs ^ (j + 1)) - 1) >>> 31;
+            for (int k=0; k<4; k++)
+                cmov(t[k], row[j][k], eq);
+        }
+        long[] negX = gf(), negT = gf();
+        sub(negX, GF0, t[0]);
+        sub(negT, GF0, t[3]);
+        cmov(t[0], negX, negative);
+        cmov(t[3], negT, negative);
+    }
+    
+    /** Computes [s]Q using a 4-bit window. Not constant-time, so must only be used with public values. */
+    private static void scalarMultVartime(long[][] p, long[][] q, byte[] s) {
+        long[][][] multiples = new long[16][][];
+        multiples[0] = point();
+        setIdentity(multiples[0]);
+        for (int i=1; i<16; i++) {
+            multiples[i] = copy(multiples[i - 1]);
+            add(multiples[i], q);
+        }
+        setIdentity(p);
+        for (int i=63; i>=0; i--) {
+            for (int j=0; j<4; j++)
+                add(p, p);
+            int nibble = (s[i >> 1] >> ((i & 1) * 4)) & 15;
+            if (nibble != 0) add(p, multiples[nibble]);
+        }
+    }
+    
+    /** Returns the odd multiples {@code [1]Q, [3]Q, ..., [15]Q}. */
+    private static long[][][] oddMultiples(long[][] q) {
+        long[][][] multiples = new long[8][][];
+        long[][] q2 = copy(q);
+        add(q2, q);
+        multiples[0] = copy(q);
+        for (int i=1; i<8; i++) {
+            multiples[i] = copy(multiples[i - 1]);
+            add(multiples[i], q2);
+        }
+        return multiples;
+    }
+    
+    private static void negate(long[][] r, long[][] p) {
+        sub(r[0], GF0, p[0]);
+        set(r[1], p[1]);
+        set(r[2], p[2]);
+        sub(r[3], GF0, p[3]);
+    }
+    
+    private static long[][] copy(long[][] p) {
+        long[][] r = point();
+        for (int i=0; i<4; i++)
+            set(r[i], p[i]);
+        return r;
+    }
+    
+    
+    /* Field arithmetic (mod 2^255 - 19), using 10 signed limbs of alternating 26 and 25 bits */
+    
+    private static long[] gf() {
+        return new long[10];
+    }
+    
+    private static long[] gf(BigInteger val) {
+        long[] r = gf();
+        for (int i=0, off=0; i<10; off+=LIMB_BITS[i++])
+            r[i] = val.shiftRight(off).longValue() & ((1L << LIMB_BITS[i]) - 1);
+        return r;
+    }
+    
+    private static void set(long[] r, long[] a) {
+        System.arraycopy(a, 0, r, 0, 10);
+    }
+    
+    /** Copies a into r if flag is 1, or leaves r unchanged if flag is 0. */
+    private static void cmov(long[] r, long[] a, int flag) {
+        long mask = -flag;
+        for (int i=0; i<10; i++)
+            r[i] ^= mask & (r[i] ^ a[i]);
+    }
+    
+    private static void add(long[] o, long[] a, long[] b) {
+        for (int i=0; i<10; i++)
+            o[i] = a[i] + b[i];
+    }
+    
+    private static void sub(long[] o, long[] a, long[] b) {
+        for (int i=0; i<10; i++)
+            o[i] = a[i] - b[i];
+    }
+    
+    private static void mul(long[] o, long[] f, long[] g) {
+        long f0 = f[0], f1 = f[1], f2 = f[2], f3 = f[3], f4 = f[4], f5 = f[5], f6 = f[6], f7 = f[7], f8 = f[8],
+                f9 = f[9];
+        long g0 = g[0], g1 = g[1], g2 = g[2], g3 = g[3], g4 = g[4], g5 = g[5], g6 = g[6], g7 = g[7], g8 = g[8],
+                g9 = g[9];
+        long g1_19 = 19 * g1, g2_19 = 19 * g2, g3_19 = 19 * g3, g4_19 = 19 * g4, g5_19 = 19 * g5, g6_19 = 19 * g6,
+                g7_19 = 19 * g7, g8_19 = 19 * g8, g9_19 = 19 * g9;
+        long f1_2 = 2 * f1, f3_2 = 2 * f3, f5_2 = 2 * f5, f7_2 = 2 * f7, f9_2 = 2 * f9;
+        long h0 = f0 * g0 + f1_2 * g9_19 + f2 * g8_19 + f3_2 * g7_19 + f4 * g6_19 + f5_2 * g5_19 + f6 * g4_19 +
+                f7_2 * g3_19 + f8 * g2_19 + f9_2 * g1_19;
+        long h1 = f0 * g1 + f1 * g0 + f2 * g9_19 + f3 * g8_19 + f4 * g7_19 + f5 * g6_19 + f6 * g5_19 + f7 * g4_19 +
+                f8 * g3_19 + f9 * g2_19;
+        long h2 = f0 * g2 + f1_2 * g1 + f2 * g0 + f3_2 * g9_19 + f4 * g8_19 + f5_2 * g7_19 + f6 * g6_19 + f7_2 * g5_19 +
+                f8 * g4_19 + f9_2 * g3_19;
+        long h3 = f0 * g3 + f1 * g2 + f2 * g1 + f3 * g0 + f4 * g9_19 + f5 * g8_19 + f6 * g7_19 + f7 * g6_19 +
+                f8 * g5_19 + f9 * g4_19;
+        long h4 = f0 * g4 + f1_2 * g3 + f2 * g2 + f3_2 * g1 + f4 * g0 + f5_2 * g9_19 + f6 * g8_19 + f7_2 * g7_19 +
+                f8 * g6_19 + f9_2 * g5_19;
+        long h5 = f0 * g5 + f1 * g4 + f2 * g3 + f3 * g2 + f4 * g1 + f5 * g0 + f6 * g9_19 + f7 * g8_19 + f8 * g7_19 +
+                f9 * g6_19;
+        long h6 = f0 * g6 + f1_2 * g5 + f2 * g4 + f3_2 * g3 + f4 * g2 + f5_2 * g1 + f6 * g0 + f7_2 * g9_19 +
+                f8 * g8_19 + f9_2 * g7_19;
+        long h7 = f0 * g7 + f1 * g6 + f2 * g5 + f3 * g4 + f4 * g3 + f5 * g2 + f6 * g1 + f7 * g0 + f8 * g9_19 +
+                f9 * g8_19;
+        long h8 = f0 * g8 + f1_2 * g7 + f2 * g6 + f3_2 * g5 + f4 * g4 + f5_2 * g3 + f6 * g2 + f7_2 * g1 + f8 * g0 +
+                f9_2 * g9_19;
+        long h9 = f0 * g9 + f1 * g8 + f2 * g7 + f3 * g6 + f4 * g5 + f5 * g4 + f6 * g3 + f7 * g2 + f8 * g1 + f9 * g0;
+        carry(o, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+    }
+    
+    private static void sqr(long[] o, long[] f) {
+        long f0 = f[0], f1 = f[1], f2 = f[2], f3 = f[3], f4 = f[4], f5 = f[5], f6 = f[6], f7 = f[7], f8 = f[8],
+                f9 = f[9];
+        long h0 = f0 * f0 + 76 * f1 * f9 + 38 * f2 * f8 + 76 * f3 * f7 + 38 * f4 * f6 + 38 * f5 * f5;
+        long h1 = 2 * f0 * f1 + 38 * f2 * f9 + 38 * f3 * f8 + 38 * f4 * f7 + 38 * f5 * f6;
+        long h2 = 2 * f0 * f2 + 2 * f1 * f1 + 76 * f3 * f9 + 38 * f4 * f8 + 76 * f5 * f7 + 19 * f6 * f6;
+        long h3 = 2 * f0 * f3 + 2 * f1 * f2 + 38 * f4 * f9 + 38 * f5 * f8 + 38 * f6 * f7;
+        long h4 = 2 * f0 * f4 + 4 * f1 * f3 + f2 * f2 + 76 * f5 * f9 + 38 * f6 * f8 + 38 * f7 * f7;
+        long h5 = 2 * f0 * f5 + 2 * f1 * f4 + 2 * f2 * f3 + 38 * f6 * f9 + 38 * f7 * f8;
+        long h6 = 2 * f0 * f6 + 4 * f1 * f5 + 2 * f2 * f4 + 2 * f3 * f3 + 76 * f7 * f9 + 19 * f8 * f8;
+        long h7 = 2 * f0 * f7 + 2 * f1 * f6 + 2 * f2 * f5 + 2 * f3 * f4 + 38 * f8 * f9;
+        long h8 = 2 * f0 * f8 + 4 * f1 * f7 + 2 * f2 * f6 + 4 * f3 * f5 + f4 * f4 + 38 * f9 * f9;
+        long h9 = 2 * f0 * f9 + 2 * f1 * f8 + 2 * f2 * f7 + 2 * f3 * f6 + 2 * f4 * f5;
+        carry(o, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+    }
+    
+    /** Reduces the limbs of h into their nominal widths, storing the result in o. */
+    private static void carry(long[] o, long h0, long h1, long h2, long h3, long h4, long h5, long h6, long h7,
+                              long h8, long h9) {
+        long c;
+        c = (h0 + (1L << 25)) >> 26; h1 += c; h0 -= c << 26;
+        c = (h1 + (1L << 24)) >> 25; h2 += c; h1 -= c << 25;
+        c = (h2 + (1L << 25)) >> 26; h3 += c; h2 -= c << 26;
+        c = (h3 + (1L << 24)) >> 25; h4 += c; h3 -= c << 25;
+        c = (h4 + (1L << 25)) >> 26; h5 += c; h4 -= c << 26;
+        c = (h5 + (1L << 24)) >> 25; h6 += c; h5 -= c << 25;
+        c = (h6 + (1L << 25)) >> 26; h7 += c; h6 -= c << 26;
+        c = (h7 + (1L << 24)) >> 25; h8 += c; h7 -= c << 25;
+        c = (h8 + (1L << 25)) >> 26; h9 += c; h8 -= c << 26;
+        c = (h9 + (1L << 24)) >> 25; h0 += c * 19; h9 -= c << 25;
+        c = (h0 + (1L << 25)) >> 26; h1 += c; h0 -= c << 26;
+        o[0] = h0; o[1] = h1; o[2] = h2; o[3] = h3; o[4] = h4;
+        o[5] = h5; o[6] = h6; o[7] = h7; o[8] = h8; o[9] = h9;
+    }
+    
+    /** Encodes the canonical (fully reduced) little-endian form of a field element. */
+    private static void pack(byte[] o, int off, long[] a) {
+        long[] h = gf();
+        carry(h, a[0], a[1], a[2], a[3], a[4], a[5], a[6], a[7], a[8], a[9]);
+        // Compute q = floor(h / p), which is either 0 or 1, and subtract q * p
+        long q = (19 * h[9] + (1L << 24)) >> 25;
+        for (int i=0; i<10; i++)
+            q = (h[i] + q) >> LIMB_BITS[i];
+        h[0] += 19 * q;
+        for (int i=0; i<9; i++) {
+            long c = h[i] >> LIMB_BITS[i];
+            h[i + 1] += c;
+            h[i] -= c << LIMB_BITS[i];
+        }
+        h[9] &= (1L << 25) - 1;
+        
+        long acc = 0;
+        for (int i=0, bits=0, n=off; i<10; i++) {
+            acc |= h[i] << bits;
+            bits += LIMB_BITS[i];
+            while (bits >= 8 || (i == 9 && bits > 0)) {
+                o[n++] = (byte)acc;
+                acc >>>= 8;
+                bits -= 8;
+            }
+        }
+    }
+    
+    /** Decodes a little-endian field element, ignoring the most significant bit. */
+    private static void unpack(long[] o, byte[] n) {
+        long acc = 0;
+        for (int i=0, bits=0, k=0; i<10; i++) {
+            while (bits < LIMB_BITS[i]) {
+                acc |= (long)(n[k++] & 0xFF) << bits;
+                bits += 8;
+            }
+            o[i] = acc & ((1L << LIMB_BITS[i]) - 1);
+            acc >>>= LIMB_BITS[i];
+            bits -= LIMB_BITS[i];
+        }
+    }
+    
+    private static boolean equal(long[] a, long[] b) {
+        byte[] c = new byte[32], d = new byte[32];
+        pack(c, 0, a);
+        pack(d, 0, b);
+        int diff = 0;
+        for (int i=0; i<32; i++)
+            diff |= c[i] ^ d[i];
+        return diff == 0;
+    }
+    
+    private static int parity(long[] a) {
+        byte[] d = new byte[32];
+        pack(d, 0, a);
+        return d[0] & 1;
+    }
+    
+    /** Computes 1/z = z^(p - 2) = z^(2^255 - 21). */
+    private static void inv(long[] o, long[] z) {
+        long[] t = gf(), z11 = gf();
+        pow22501(t, z11, z);
+        sqrN(t, t, 5);
+        mul(o, t, z11);
+    }
+    
+    /** Computes z^((p - 5) / 8) = z^(2^252 - 3), used for square roots. */
+    private static void pow2523(long[] o, long[] z) {
+        long[] t = gf(), z11 = gf();
+        pow22501(t, z11, z);
+        sqrN(t, t, 2);
+        mul(o, t, z);
+    }
+    
+    /** Computes z^(2^250 - 1) and z^11, using the addition chain from the ref10 implementation. */
+    private static void pow22501(long[] o, long[] z11, long[] z) {
+        long[] t = gf(), z9 = gf(), a = gf(), b = gf(), c = gf();
+        sqr(t, z);            // 2
+        sqrN(z9, t, 2);       // 8
+        mul(z9, z9, z);       // 9
+        mul(z11, z9, t);      // 11
+        sqr(t, z11);          // 22
+        mul(a, t, z9);        // 2^5 - 1
+        sqrN(t, a, 5);
+        mul(a, t, a);         // 2^10 - 1
+        sqrN(t, a, 10);
+        mul(b, t, a);         // 2^20 - 1
+        sqrN(t, b, 20);
+        mul(t, t, b);         // 2^40 - 1
+        sqrN(t, t, 10);
+        mul(b, t, a);         // 2^50 - 1
+        sqrN(t, b, 50);
+        mul(c, t, b);         // 2^100 - 1
+        sqrN(t, c, 100);
+        mul(t, t, c);         // 2^200 - 1
+        sqrN(t, t, 50);
+        mul(o, t, b);         // 2^250 - 1
+    }
+    
+    private static void sqrN(long[] o, long[] a, int n) {
+        sqr(o, a);
+        for (int i=1; i<n; i++)
+            sqr(o, o);
+    }
+    
+    
+    private static void checkLength(byte[] arr, int len, String name) {
+        if (arr == null) throw new IllegalArgumentException(name + " cannot be null.");
+        if (arr.length != len)
+            throw new IllegalArgumentException(name + " array must have a length of " + len + ".");
+    }
+    
+    
+    /** Holds the precomputed base point table, which is initialized on first use. */
+    private static final class BaseTable {
+        /** TABLE[i][j] = (j + 1) * 256^i * B */
+        static final long[][][][] TABLE = new long[32][8][][];
+        
+        static {
+            long[][] base = point();
+            set(base[0], BASE_X);
+            set(base[1], BASE_Y);
+            set(base[2], GF1);
+            mul(base[3], BASE_X, BASE_Y);
+            for (int i=0; i<32; i++) {
+                TABLE[i][0] = copy(base);
+                for (int j=1; j<8; j++) {
+                    TABLE[i][j] = copy(TABLE[i][j - 1]);
+                    add(TABLE[i][j], base);
+                }
+                for (int j=0; j<8; j++)
+                    add(base, base); // Multiply by 256 for the next row
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.internal.utils;
+
+/**
+ * <p>A specialised Blake2b kernel for computing proof-of-work difficulty values, which are the 8-byte Blake2b digest
+ * of the 40-byte message consisting of the little-endian work nonce, followed by the 32-byte root.</p>
+ *
+ * <p>The message words of the root are decoded once on construction, and the unused (zero) message words are laid out
+ * ahead of time in a per-round schedule, so that each hash only needs to write the nonce word. The 8 mixing
+ * functions of each round are unrolled; the 12 rounds are looped over so that the method remains small enough to be
+ * compiled by the JIT. The result is returned as a single unsigned {@code long} value, equal to the work
+ * difficulty.</p>
+ *
+ * <p>The root of an instance may be replaced through {@link #setRoot(byte[])} or {@link #setRoot(CharSequence, int)},
+ * allowing a single instance to be reused for many roots without allocating. Instances of this class are <em>not</em>
+ * thread-safe, and should be created for each thread.</p>
+ */
+public final class WorkKernel {
+    
+    private static final long IV0 = 0x6a09e667f3bcc908L, IV1 = 0xbb67ae8584caa73bL, IV2 = 0x3c6ef372fe94f82bL,
+            IV3 = 0xa54ff53a5f1d36f1L, IV4 = 0x510e527fade682d1L, IV5 = 0x9b05688c2b3e6c1fL,
+            IV6 = 0x1f83d9abfb41bd6bL, IV7 = 0x5be0cd19137e2179L;
+    private static final long H0 = IV0 ^ 0x01010008L; // Parameter block: 8-byte digest, no key, fanout/depth 1
+    private static final long T0 = 40; // Message length
+    
+    private static final int[][] SIGMA = {
+            {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+            {14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3},
+            {11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4},
+            {7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8},
+            {9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13},
+            {2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9},
+            {12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11},
+            {13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10},
+            {6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5},
+            {10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0}
+    };
+    private static final int ROUNDS = 12;
+    private static final int[] NONCE_SLOTS = new int[ROUNDS];
+    private static final int[][] ROOT_SLOTS = new int[4][ROUNDS];
+    
+    static {
+        for (int r=0; r<ROUNDS; r++) {
+            for (int i=0; i<16; i++) {
+                int word = SIGMA[r % 10][i];
+                if (word == 0) {
+                    NONCE_SLOTS[r] = r * 16 + i;
+                } else if (word <= 4) {
+                    ROOT_SLOTS[word - 1][r] = r * 16 + i;
+                }
+            }
+        }
+    }
+    
+    private final long[] m = new long[ROUNDS * 16]; // Unused message words remain zero
+    
+    
+    /**
+     * Constructs a kernel with a root of zero. The root should be set through one of the {@code setRoot} methods.
+     */
+    public WorkKernel() {}
+    
+    /**
+     * @param root the 32-byte work root
+     */
+    public WorkKernel(byte[] root) {
+        setRoot(root);
+    }
+    
+    
+    /**
+     * Replaces the work root of this kernel.
+     * @param root the 32-byte work root
+     */
+    public void setRoot(byte[] root) {
+        if (root == null || root.length != 32)
+            throw new IllegalArgumentException("Root array must have a length of 32.");
+        for (int i=0; i<4; i++)
+            setRootWord(i, readLongLE(root, i * 8));
+    }
+    
+    /**
+     * Replaces the work root of this kernel, decoding the root directly from 64 hexadecimal characters.
+     * @param hex    the source string
+     * @param offset the index of the first character
+     * @return false if the characters are not valid hexadecimal, in which case the root is left undefined
+     */
+    public boolean setRoot(CharSequence hex, int offset) {
+        if (hex.length() - offset < 64) return false;
+        for (int i=0; i<4; i++) {
+            long word = 0;
+            for (int j=0; j<8; j++) {
+                int pos = offset + (i * 8 + j) * 2;
+                int hi = Character.digit(hex.charAt(pos), 16), lo = Character.digit(hex.charAt(pos + 1), 16);
+                if ((hi | lo) < 0) return false;
+                word |= (long)(hi << 4 | lo) << (j * 8);
+            }
+            setRootWord(i, word);
+        }
+        return true;
+    }
+    
+    
+    /**
+     * Computes the difficulty value of the given work nonce.
+     * @param work the work nonce
+     * @return the difficulty (compare as an unsigned value)
+     */
+    public long difficulty(long work) {
+        long[] m = this.m;
+        for (int slot : NONCE_SLOTS)
+            m[slot] = work;
+        
+        long v0 = H0, v1 = IV1, v2 = IV2, v3 = IV3, v4 = IV4, v5 = IV5, v6 = IV6, v7 = IV7;
+        long v8 = IV0, v9 = IV1, v10 = IV2, v11 = IV3, v12 = IV4 ^ T0, v13 = IV5, v14 = ~IV6, v15 = IV7;
+        for (int o=0; o<ROUNDS*16; o+=16) {
+            v0 += v4 + m[o + 0]; v12 = Long.rotateRight(v12 ^ v0, 32);
+            v8 += v12; v4 = Long.rotateRight(v4 ^ v8, 24);
+            v0 += v4 + m[o + 1]; v12 = Long.rotateRight(v12 ^ v0, 16);
+            v8 += v12; v4 = Long.rotateRight(v4 ^ v8, 63);
+            v1 += v5 + m[o + 2]; v13 = Long.rotateRight(v13 ^ v1, 32);
+            v9 += v13; v5 = Long.rotateRight(v5 ^ v9, 24);
+            v1 += v5 + m[o + 3]; v13 = Long.rotateRight(v13 ^ v1, 16);
+            v9 += v13; v5 = Long.rotateRight(v5 ^ v9, 63);
+            v2 += v6 + m[o + 4]; v14 = Long.rotateRight(v14 ^ v2, 32);
+            v10 += v14; v6 = Long.rotateRight(v6 ^ v10, 24);
+            v2 += v6 + m[o + 5]; v14 = Long.rotateRight(v14 ^ v2, 16);
+            v10 += v14; v6 = Long.rotateRight(v6 ^ v10, 63);
+            v3 += v7 + m[o + 6]; v15 = Long.rotateRight(v15 ^ v3, 32);
+            v11 += v15; v7 = Long.rotateRight(v7 ^ v11, 24);
+            v3 += v7 + m[o + 7]; v15 = Long.rotateRight(v15 ^ v3, 16);
+            v11 += v15; v7 = Long.rotateRight(v7 ^ v11, 63);
+            v0 += v5 + m[o + 8]; v15 = Long.rotateRight(v15 ^ v0, 32);
+            v10 += v15; v5 = Long.rotateRight(v5 ^ v10, 24);
+            v0 += v5 + m[o + 9]; v15 = Long.rotateRight(v15 ^ v0, 16);
+            v10 += v15; v5 = Long.rotateRight(v5 ^ v10, 63);
+            v1 += v6 + m[o + 10]; v12 = Long.rotateRight(v12 ^ v1, 32);
+            v11 += v12; v6 = Long.rotateRight(v6 ^ v11, 24);
+            v1 += v6 + m[o + 11]; v12 = Long.rotateRight(v12 ^ v1, 16);
+            v11 += v12; v6 = Long.rotateRight(v6 ^ v11, 63);
+            v2 += v7 + m[o + 12]; v13 = Long.rotateRight(v13 ^ v2, 32);
+            v8 += v13; v7 = Long.rotateRight(v7 ^ v8, 24);
+            v2 += v7 + m[o + 13]; v13 = Long.rotateRight(v13 ^ v2, 16);
+            v8 += v13; v7 = Long.rotateRight(v7 ^ v8, 63);
+            v3 += v4 + m[o + 14]; v14 = Long.rotateRight(v14 ^ v3, 32);
+            v9 += v14; v4 = Long.rotateRight(v4 ^ v9, 24);
+            v3 += v4 + m[o + 15]; v14 = Long.rotateRight(v14 ^ v3, 16);
+            v9 += v14; v4 = Long.rotateRight(v4 ^ v9, 63);
+        }
+        return H0 ^ v0 ^ v8;
+    }
+    
+    /**
+     * Searches for a work nonce which meets the threshold, starting from the given value and incrementing.
+     * @param start     the first nonce to test
+     * @param count     the maximum number of nonces to test
+     * @param threshold the minimum difficulty threshold
+     * @return the number of nonces tested <em>before</em> the valid nonce (ie. the offset from {@code start}), or
+     *         {@code count} if none were found
+     */
+    public int search(long start, int count, long threshold) {
+        for (int i=0; i<count; i++) {
+            if (Long.compareUnsigned(difficulty(start + i), threshold) >= 0)
+                return i;
+        }
+        return count;
+    }
+    
+    
+    private void setRootWord(int index, long word) {
+        for (int slot : ROOT_SLOTS[index])
+            m[slot] = word;
+    }
+    
+    private static long readLongLE(byte[] b, int off) {
+        return (b[off] & 0xFFL) | (b[off + 1] & 0xFFL) << 8 | (b[off + 2] & 0xFFL) << 16 | (b[off + 3] & 0xFFL) << 24
+                | (b[off + 4] & 0xFFL) << 32 | (b[off + 5] & 0xFFL) << 40 | (b[off + 6] & 0xFFL) << 48
+                | (b[off + 7] & 0xFFL) << 56;
+    }
+    
+}
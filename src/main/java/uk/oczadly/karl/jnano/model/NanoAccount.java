@@ -8,7 +8,7 @@ package uk.oczadly.karl.jnano.model;
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
 import uk.oczadly.karl.jnano.internal.JNH;
-import uk.oczadly.karl.jnano.internal.utils.BaseEncoder;
+import uk.oczadly.karl.jnano.internal.utils.AddressCodec;
 
 import java.lang.reflect.Type;
 import java.math.BigInteger;
@@ -48,6 +48,8 @@ public final class NanoAccount {
     public static final Set<String> DEFAULT_PERMITTED_PREFIXES =
             Collections.unmodifiableSet(Set.of(DEFAULT_PREFIX, "xrb"));
     
+    private static final String[] NANO_PREFIXES = DEFAULT_PERMITTED_PREFIXES.toArray(new String[0]);
+    
     /**
      * <p>The zeroth index account, represented by all zeroes for the public key. This address is also the burn address
      * used within Nano and other forks.</p>
@@ -59,7 +61,7 @@ public final class NanoAccount {
     
     private final byte[] keyBytes;
     private final String prefix;
-    // Fields below may be initialized lazily
+    // Fields below may be initialized lazily (races are benign, as computed values are always equal)
     private volatile byte[] checksumBytes;
     private volatile String cachedAddress, publicKeyHex, segAddress, segChecksum;
     private volatile BigInteger index;
@@ -151,17 +153,21 @@ public final class NanoAccount {
         return Arrays.copyOf(keyBytes, keyBytes.length);
     }
     
+    /**
+     * Copies the 32 bytes of the public key into the given array, without allocating a new array.
+     * @param dest   the destination array
+     * @param offset the starting index of the destination array
+     */
+    public void copyPublicKeyBytes(byte[] dest, int offset) {
+        System.arraycopy(keyBytes, 0, dest, offset, keyBytes.length);
+    }
+    
     /**
      * @return an array of bytes which represent the public key of this address
      */
     public byte[] getChecksumBytes() {
-        if (checksumBytes == null) {
-            synchronized (this) {
-                if (checksumBytes == null)
-                    checksumBytes = calculateChecksumBytes(keyBytes);
-            }
-        }
-        return Arrays.copyOf(checksumBytes, checksumBytes.length);
+        byte[] checksum = checksumBytes();
+        return Arrays.copyOf(checksum, checksum.length);
     }
     
     /**
@@ -171,12 +177,9 @@ public final class NanoAccount {
      * @return the integer-based index of this account, derived from the key byte array
      */
     public BigInteger getAccountIndex() {
-        if (index == null) {
-            synchronized (this) {
-                if (index == null)
-                    index = new BigInteger(1, keyBytes);
-            }
-        }
+        BigInteger index = this.index;
+        if (index == null)
+            this.index = index = new BigInteger(1, keyBytes);
         return index;
     }
     
@@ -186,12 +189,9 @@ public final class NanoAccount {
      * @return this address, represented by a 64-character hexadecimal string
      */
     public String toPublicKey() {
-        if (publicKeyHex == null) {
-            synchronized (this) {
-                if (publicKeyHex == null)
-                    publicKeyHex = JNH.ENC_16.encode(keyBytes);
-            }
-        }
+        String publicKeyHex = this.publicKeyHex;
+        if (publicKeyHex == null)
+            this.publicKeyHex = publicKeyHex = JNH.ENC_16.encode(keyBytes);
         return publicKeyHex;
     }
     
@@ -200,47 +200,45 @@ public final class NanoAccount {
      * <p>Example returned value: {@code nano_34qjpc8t1u6wnb584pc4iwsukwa8jhrobpx4oea5gbaitnqafm6qsgoacpiz}</p>
      * @return this address, complete with prefix and checksum
      */
-    public synchronized String toAddress() {
-        if (cachedAddress == null) {
-            synchronized (this) {
-                if (cachedAddress == null) {
-                    // Generate
-                    StringBuilder sb = new StringBuilder(
-                            60 + (getPrefix() == null ? 0 : getPrefix().length() + 1)); // Capacity
-                    if (getPrefix() != null)
-                        sb.append(getPrefix()).append(PREFIX_SEPARATOR_CHAR);
-                    cachedAddress = sb.append(getAddressSegment()).append(getAddressChecksumSegment()).toString();
-                    return cachedAddress;
-                }
-            }
-        }
-        return cachedAddress;
+    public String toAddress() {
+        String address = cachedAddress;
+        if (address == null)
+            cachedAddress = address = AddressCodec.encodeAddress(prefix, keyBytes, checksumBytes());
+        return address;
     }
     
     /**
      * @return this address, without the prefix or checksum segments
      */
     public String getAddressSegment() {
-        if (segAddress == null) {
-            synchronized (this) {
-                if (segAddress == null)
-                    segAddress = JNH.ENC_32.encode(getPublicKeyBytes());
-            }
+        String segment = segAddress;
+        if (segment == null) {
+            char[] chars = new char[AddressCodec.KEY_CHARS];
+            AddressCodec.encodeKey(keyBytes, chars, 0);
+            segAddress = segment = new String(chars);
         }
-        return segAddress;
+        return segment;
     }
     
     /**
      * @return the checksum segment of this address
      */
     public String getAddressChecksumSegment() {
-        if (segChecksum == null) {
-            synchronized (this) {
-                if (segChecksum == null)
-                    segChecksum = JNH.ENC_32.encode(getChecksumBytes());
-            }
+        String segment = segChecksum;
+        if (segment == null) {
+            char[] chars = new char[AddressCodec.CHECKSUM_CHARS];
+            AddressCodec.encodeChecksum(checksumBytes(), chars, 0);
+            segChecksum = segment = new String(chars);
         }
-        return segChecksum;
+        return segment;
+    }
+    
+    /** Returns the checksum bytes, without copying the array. */
+    private byte[] checksumBytes() {
+        byte[] checksum = checksumBytes;
+        if (checksum == null)
+            checksumBytes = checksum = calculateChecksumBytes(keyBytes);
+        return checksum;
     }
     
     
@@ -299,7 +297,7 @@ public final class NanoAccount {
      * @return whether the given address is a valid Nano account
      */
     public boolean isValidNano() {
-        return comparePrefix(getPrefix(), DEFAULT_PERMITTED_PREFIXES.toArray(new String[0]));
+        return comparePrefix(getPrefix(), NANO_PREFIXES);
     }
     
     
@@ -374,10 +372,23 @@ public final class NanoAccount {
                 || (separatorIndex != -1 && (address.length() - separatorIndex - 1) != 60))
             throw new AddressFormatException("Address/checksum segment is not the right length.");
         
-        return parseAddressSegment(
-                address.substring(address.length() - 60, address.length() - 8),
-                (separatorIndex <= 0 ? null : address.substring(0, separatorIndex)),
-                address.substring(address.length() - 8));
+        String prefix = null;
+        if (separatorIndex > 0) {
+            prefix = (separatorIndex == DEFAULT_PREFIX.length() && address.startsWith(DEFAULT_PREFIX))
+                    ? DEFAULT_PREFIX : address.substring(0, separatorIndex);
+        }
+        validatePrefix(prefix);
+        
+        int offset = address.length() - 60;
+        byte[] keyBytes = decodeKeyBytes(address, offset);
+        byte[] checksumBytes = calculateChecksumBytes(keyBytes);
+        if (!AddressCodec.checksumMatches(address, offset + AddressCodec.KEY_CHARS, checksumBytes))
+            throw new AddressFormatException("Provided checksum did not match the computed checksum.");
+        
+        // Retain the original string if it is already in the standard format
+        String cachedAddress = (separatorIndex != 0 && AddressCodec.isLowerCase(address, offset, 60))
+                ? address : null;
+        return new NanoAccount(prefix, keyBytes, checksumBytes, cachedAddress, null, null, null, null);
     }
     
     /**
@@ -417,25 +428,22 @@ public final class NanoAccount {
     public static NanoAccount parseAddressSegment(String address, String prefix, String checksum) {
         if (address == null) throw new IllegalArgumentException("Address argument cannot be null.");
         if (address.length() != 52) throw new AddressFormatException("Address string must be 52 characters long.");
-        if (address.charAt(0) != '1' && address.charAt(0) != '3')
-            throw new AddressFormatException("Addresses may only begin with characters 1 or 3.");
         validatePrefix(prefix);
         if (checksum != null && checksum.length() != 8)
             throw new AddressFormatException("Expected checksum string must be 8 characters long.");
         
-        // Preprocess
-        address = address.toLowerCase();
-        checksum = checksum != null ? checksum.toLowerCase() : null;
-        
-        // Create object
-        NanoAccount createdAddr = new NanoAccount(
-                prefix, calculateKeyBytes(address, JNH.ENC_32), address, null, null);
+        byte[] keyBytes = decodeKeyBytes(address, 0);
         
         // Verify checksum (if provided)
-        if (checksum != null && !checksum.equals(createdAddr.getAddressChecksumSegment()))
-            throw new AddressFormatException("Provided checksum did not match the computed checksum.");
+        byte[] checksumBytes = null;
+        if (checksum != null) {
+            checksumBytes = calculateChecksumBytes(keyBytes);
+            if (!AddressCodec.checksumMatches(checksum, 0, checksumBytes))
+                throw new AddressFormatException("Provided checksum did not match the computed checksum.");
+        }
         
-        return createdAddr;
+        String segAddress = AddressCodec.isLowerCase(address, 0, 52) ? address : null;
+        return new NanoAccount(prefix, keyBytes, checksumBytes, null, null, segAddress, null, null);
     }
     
     /**
@@ -462,7 +470,13 @@ public final class NanoAccount {
         if (key.length() != 64) throw new AddressFormatException("Key string must be 64 characters long.");
         
         key = key.toUpperCase();
-        return new NanoAccount(prefix, calculateKeyBytes(key, JNH.ENC_16), null, key, null);
+        byte[] keyBytes;
+        try {
+            keyBytes = JNH.ENC_16.decode(key);
+        } catch (IllegalArgumentException e) { // Catch illegal characters
+            throw new AddressFormatException(e);
+        }
+        return new NanoAccount(prefix, keyBytes, null, key, null);
     }
     
     
@@ -473,11 +487,7 @@ public final class NanoAccount {
      * @return whether the given address string is a valid Nano account
      */
     public static boolean isValidNano(String address) {
-        try {
-            return parseAddress(address).isValidNano();
-        } catch (AddressFormatException e) {
-            return false;
-        }
+        return isValid(address, NANO_PREFIXES);
     }
     
     /**
@@ -500,12 +510,27 @@ public final class NanoAccount {
      * @return whether the given address string is valid
      */
     public static boolean isValid(String address, String...prefixes) {
-        try {
-            NanoAccount addr = parseAddress(address);
-            return comparePrefix(addr.getPrefix(), prefixes);
-        } catch (AddressFormatException e) {
+        if (address == null) throw new IllegalArgumentException("Address argument cannot be null.");
+        int separatorIndex = address.lastIndexOf(PREFIX_SEPARATOR_CHAR);
+        if (address.length() - separatorIndex - 1 != 60)
             return false;
+        
+        // Compare prefix in-place
+        if (prefixes != null && prefixes.length > 0) {
+            if (separatorIndex <= 0) return false;
+            boolean matched = false;
+            for (String prefix : prefixes) {
+                if (prefix.length() == separatorIndex && address.regionMatches(true, 0, prefix, 0, separatorIndex)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) return false;
         }
+        if (!isValidPrefix(address, 0, Math.max(separatorIndex, 0)))
+            return false;
+        
+        return AddressCodec.isValid(address, separatorIndex + 1);
     }
     
     /**
@@ -526,27 +551,36 @@ public final class NanoAccount {
     
     /** Helper method to calculate checksum bytes from a public key. */
     private static byte[] calculateChecksumBytes(byte[] keyBytes) {
-        return JNH.reverseArray(JNH.blake2b(5, keyBytes));
+        byte[] checksum = new byte[5];
+        AddressCodec.checksum(keyBytes, checksum);
+        return checksum;
     }
     
-    /** Helper method to calculate bytes from an encoded address. */
-    private static byte[] calculateKeyBytes(String str, BaseEncoder decoder) {
-        byte[] keyBytes;
-        try {
-            keyBytes = decoder.decode(str);
-        } catch (IllegalArgumentException e) { // Catch illegal characters
-            throw new AddressFormatException(e);
-        }
-        if (keyBytes.length != 32)
-            throw new AddressFormatException("Address/key bytes could not be decoded.");
+    /** Helper method to decode the key bytes from a 52-character address segment. */
+    private static byte[] decodeKeyBytes(String str, int offset) {
+        char first = str.charAt(offset);
+        if (first != '1' && first != '3')
+            throw new AddressFormatException("Addresses may only begin with characters 1 or 3.");
+        byte[] keyBytes = new byte[32];
+        if (!AddressCodec.decodeKey(str, offset, keyBytes))
+            throw new AddressFormatException("Address contains an illegal character.");
         return keyBytes;
     }
     
     private static void validatePrefix(String prefix) {
-        if (prefix != null && !prefix.isEmpty() && !prefix.matches("[0-9A-Za-z]+"))
+        if (prefix != null && !isValidPrefix(prefix, 0, prefix.length()))
             throw new AddressFormatException("Address prefix contains an illegal character.");
     }
     
+    private static boolean isValidPrefix(String str, int offset, int length) {
+        for (int i=offset; i<offset+length; i++) {
+            char c = str.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'A' || c > 'Z') && (c < 'a' || c > 'z'))
+                return false;
+        }
+        return true;
+    }
+    
     private static boolean comparePrefix(String prefix, String[] prefixes) {
         if (prefixes == null || prefixes.length == 0) return true; // Allow any prefix
         if (prefix == null) return false; // Prefix is null, cannot be valid
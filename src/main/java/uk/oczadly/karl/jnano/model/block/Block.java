@@ -10,11 +10,17 @@ import com.google.gson.JsonParser;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.rfksystems.blake2b.Blake2b;
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.block.interfaces.IBlock;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
 
+import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * An abstract class which represents a Nano block.
@@ -32,6 +38,16 @@ public abstract class Block implements IBlock {
      */
     protected static final int HASH_LENGTH = 64;
     
+    /**
+     * The minimum length of the buffer passed to {@link #writeHashables(byte[])}.
+     */
+    protected static final int MAX_HASHABLES_LENGTH = 176;
+    
+    private static final ThreadLocal<Blake2b> HASH_DIGEST =
+            ThreadLocal.withInitial(() -> new Blake2b(null, 32, null, null));
+    private static final ThreadLocal<byte[]> HASHABLES_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[MAX_HASHABLES_LENGTH]);
+    
     
     @Expose @SerializedName("hash")
     private volatile String hash;
@@ -157,10 +173,56 @@ public abstract class Block implements IBlock {
      */
     protected abstract byte[][] generateHashables();
     
+    /**
+     * Writes the hashable fields of this block into the given buffer, in the correct sequence. This is used in place of
+     * {@link #generateHashables()} to compute the block hash without allocating intermediate arrays.
+     * @param buffer the buffer to write into, with a length of at least {@link #MAX_HASHABLES_LENGTH}
+     * @return the number of bytes written, or -1 if not supported (in which case {@link #generateHashables()} is used)
+     */
+    protected int writeHashables(byte[] buffer) {
+        return -1;
+    }
+    
     protected final byte[] calculateHashBytes() {
-        byte[][] hashables = generateHashables();
-        if (hashables == null) return null;
-        return JNH.blake2b(32, hashables);
+        byte[] buffer = HASHABLES_BUFFER.get();
+        int length = writeHashables(buffer);
+        if (length < 0) {
+            byte[][] hashables = generateHashables();
+            if (hashables == null) return null;
+            return JNH.blake2b(32, hashables);
+        }
+        Blake2b digest = HASH_DIGEST.get();
+        digest.reset();
+        digest.update(buffer, 0, length);
+        byte[] hash = new byte[32];
+        digest.digest(hash, 0);
+        return hash;
+    }
+    
+    /** Decodes a hexadecimal string into the buffer, returning the index following the written bytes. */
+    static int writeHex(String hex, byte[] buffer, int offset) {
+        for (int i=0; i<hex.length(); i+=2) {
+            buffer[offset++] = (byte)((Character.digit(hex.charAt(i), 16) << 4)
+                    | Character.digit(hex.charAt(i + 1), 16));
+        }
+        return offset;
+    }
+    
+    /** Writes the amount as a 16-byte big-endian value, returning the index following the written bytes. */
+    static int writeBalance(NanoAmount amount, byte[] buffer, int offset) {
+        BigInteger raw = amount.getAsRaw();
+        if (raw.bitLength() < 64) {
+            long val = raw.longValue();
+            Arrays.fill(buffer, offset, offset + 8, (byte)0);
+            for (int i=0; i<8; i++)
+                buffer[offset + 15 - i] = (byte)(val >>> (i * 8));
+        } else {
+            byte[] bytes = raw.toByteArray(); // BigInteger offers no allocation-free export
+            int len = Math.min(bytes.length, 16);
+            Arrays.fill(buffer, offset, offset + 16 - len, (byte)0);
+            System.arraycopy(bytes, bytes.length - len, buffer, offset + 16 - len, len);
+        }
+        return offset + 16;
     }
     
     private byte[] generateHashBytes() {
@@ -275,4 +337,17 @@ public abstract class Block implements IBlock {
         return BlockDeserializer.DEFAULT.deserialize(json);
     }
     
+    /**
+     * Computes the hashes of the given blocks in parallel, using the common fork-join pool. The computed hashes are
+     * also cached by each block instance.
+     * @param blocks the blocks to hash
+     * @return the hashes of the blocks, in the iteration order of the collection
+     */
+    public static List<String> hashAll(Collection<? extends Block> blocks) {
+        if (blocks == null) throw new IllegalArgumentException("Blocks collection cannot be null.");
+        return blocks.parallelStream()
+                .map(Block::getHash)
+                .collect(Collectors.toList());
+    }
+    
 }
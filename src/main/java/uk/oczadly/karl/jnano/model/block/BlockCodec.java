@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import com.rfksystems.blake2b.Blake2b;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Encodes and decodes blocks using the binary format of the Nano node's network protocol. Blocks may be encoded
+ * with a leading type byte (as used by the node when the block type isn't implied), or as the block body alone.</p>
+ *
+ * <p>The fields of each block type are stored in their canonical order, with the signature and work appended. Block
+ * hashes and public keys are written as raw 32-byte values, and balances as 16-byte big-endian values. The work value
+ * is stored in big-endian order for state blocks, and in little-endian order for legacy blocks. The subtype of state
+ * blocks is not part of the format, and will be null for decoded blocks.</p>
+ *
+ * <table>
+ *     <caption>Encoded lengths (excluding the type byte)</caption>
+ *     <tr><th>Type</th><th>Layout</th><th>Length</th></tr>
+ *     <tr><td>send</td><td>previous, destination, balance, signature, work</td><td>152</td></tr>
+ *     <tr><td>receive</td><td>previous, source, signature, work</td><td>136</td></tr>
+ *     <tr><td>open</td><td>source, representative, account, signature, work</td><td>168</td></tr>
+ *     <tr><td>change</td><td>previous, representative, signature, work</td><td>136</td></tr>
+ *     <tr><td>state</td><td>account, previous, representative, balance, link, signature, work</td><td>216</td></tr>
+ * </table>
+ *
+ * <p>Both heap and direct {@link ByteBuffer}s are supported. Fields are converted directly between their binary and
+ * model representations, and the hash of an encoded block can be computed directly from the buffer through
+ * {@link #hash(ByteBuffer)}, without decoding the block. This class is thread-safe.</p>
+ */
+public final class BlockCodec {
+    
+    private static final byte[] STATE_PREAMBLE = JNH.leftPadByteArray(new byte[] {6}, 32, false);
+    private static final ThreadLocal<Blake2b> DIGEST = ThreadLocal.withInitial(() -> new Blake2b(null, 32, null, null));
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[144]);
+    
+    private BlockCodec() {}
+    
+    
+    /**
+     * Returns the encoded length of a block type, excluding the type byte.
+     * @param type the block type
+     * @return the length in bytes
+     */
+    public static int getLength(BlockType type) {
+        if (type == null) throw new IllegalArgumentException("Block type cannot be null.");
+        switch (type) {
+            case SEND:    return 152;
+            case RECEIVE: return 136;
+            case OPEN:    return 168;
+            case CHANGE:  return 136;
+            case STATE:   return 216;
+            default: throw new AssertionError();
+        }
+    }
+    
+    /**
+     * Returns the type identifier used by the node protocol.
+     * @param type the block type
+     * @return the identifier of the type
+     */
+    public static int getTypeId(BlockType type) {
+        if (type == null) throw new IllegalArgumentException("Block type cannot be null.");
+        switch (type) {
+            case SEND:    return 2;
+            case RECEIVE: return 3;
+            case OPEN:    return 4;
+            case CHANGE:  return 5;
+            case STATE:   return 6;
+            default: throw new AssertionError();
+        }
+    }
+    
+    /**
+     * Returns the block type of a node protocol type identifier.
+     * @param id the type identifier
+     * @return the block type
+     * @throws IllegalArgumentException if the identifier is not a known block type
+     */
+    public static BlockType getTypeFromId(int id) {
+        switch (id) {
+            case 2: return BlockType.SEND;
+            case 3: return BlockType.RECEIVE;
+            case 4: return BlockType.OPEN;
+            case 5: return BlockType.CHANGE;
+            case 6: return BlockType.STATE;
+            default: throw new IllegalArgumentException("Unknown block type identifier " + id + ".");
+        }
+    }
+    
+    
+    /**
+     * Encodes a block, including the leading type byte.
+     * @param block the block to encode
+     * @return the encoded block
+     */
+    public static byte[] encode(Block block) {
+        if (block == null) throw new IllegalArgumentException("Block cannot be null.");
+        ByteBuffer buffer = ByteBuffer.allocate(getLength(block.getType()) + 1);
+        encode(block, buffer);
+        return buffer.array();
+    }
+    
+    /**
+     * Encodes a block into the buffer at its current position, including the leading type byte. The position of the
+     * buffer is advanced past the encoded block.
+     * @param block  the block to encode
+     * @param buffer the destination buffer
+     * @throws BufferOverflowException if the buffer does not have enough space remaining, in which case nothing is
+     *                                 written
+     */
+    public static void encode(Block block, ByteBuffer buffer) {
+        if (block == null) throw new IllegalArgumentException("Block cannot be null.");
+        if (buffer == null) throw new IllegalArgumentException("Buffer cannot be null.");
+        if (block.getSignature() == null || block.getWorkSolution() == null)
+            throw new IllegalArgumentException("Block must contain a signature and work solution.");
+        if (buffer.remaining() < getLength(block.getType()) + 1) throw new BufferOverflowException();
+        buffer.put((byte)getTypeId(block.getType()));
+        encodeBody(block, buffer);
+    }
+    
+    /**
+     * Encodes a block into the buffer at its current position, excluding the type byte. The position of the buffer is
+     * advanced past the encoded block.
+     * @param block  the block to encode
+     * @param buffer the destination buffer
+     * @throws BufferOverflowException if the buffer does not have enough space remaining, in which case nothing is
+     *                                 written
+     */
+    public static void encodeBody(Block block, ByteBuffer buffer) {
+        if (block == null) throw new IllegalArgumentException("Block cannot be null.");
+        if (buffer == null) throw new IllegalArgumentException("Buffer cannot be null.");
+        if (block.getSignature() == null || block.getWorkSolution() == null)
+            throw new IllegalArgumentException("Block must contain a signature and work solution.");
+        if (buffer.remaining() < getLength(block.getType())) throw new BufferOverflowException();
+        
+        switch (block.getType()) {
+            case SEND:
+                SendBlock send = (SendBlock)block;
+                putHex(buffer, send.getPreviousBlockHash());
+                buffer.put(send.getDestinationAccount().getPublicKeyBytes());
+                putBalance(buffer, send.getBalance());
+                break;
+            case RECEIVE:
+                ReceiveBlock receive = (ReceiveBlock)block;
+                putHex(buffer, receive.getPreviousBlockHash());
+                putHex(buffer, receive.getSourceBlockHash());
+                break;
+            case OPEN:
+                OpenBlock open = (OpenBlock)block;
+                putHex(buffer, open.getSourceBlockHash());
+                buffer.put(open.getRepresentative().getPublicKeyBytes());
+                buffer.put(open.getAccount().getPublicKeyBytes());
+                break;
+            case CHANGE:
+                ChangeBlock change = (ChangeBlock)block;
+                putHex(buffer, change.getPreviousBlockHash());
+                buffer.put(change.getRepresentative().getPublicKeyBytes());
+                break;
+            case STATE:
+                StateBlock state = (StateBlock)block;
+                buffer.put(state.getAccount().getPublicKeyBytes());
+                putHex(buffer, state.getPreviousBlockHash());
+                buffer.put(state.getRepresentative().getPublicKeyBytes());
+                putBalance(buffer, state.getBalance());
+                putHex(buffer, state.getLinkData());
+                break;
+        }
+        putHex(buffer, block.getSignature());
+        long work = block.getWorkSolution().getAsLong();
+        if (block.getType() == BlockType.STATE) {
+            for (int i=56; i>=0; i-=8)
+                buffer.put((byte)(work >>> i));
+        } else {
+            for (int i=0; i<64; i+=8)
+                buffer.put((byte)(work >>> i));
+        }
+    }
+    
+    
+    /**
+     * Decodes a block, including the leading type byte.
+     * @param bytes the encoded block
+     * @return the decoded block
+     */
+    public static Block decode(byte[] bytes) {
+        if (bytes == null) throw new IllegalArgumentException("Bytes array cannot be null.");
+        return decode(ByteBuffer.wrap(bytes));
+    }
+    
+    /**
+     * Decodes a block from the current position of the buffer, including the leading type byte. The position of the
+     * buffer is advanced past the encoded block.
+     * @param buffer the source buffer
+     * @return the decoded block
+     * @throws BufferUnderflowException if the buffer does not contain a complete block
+     */
+    public static Block decode(ByteBuffer buffer) {
+        if (buffer == null) throw new IllegalArgumentException("Buffer cannot be null.");
+        return decodeBody(buffer, getTypeFromId(buffer.get()));
+    }
+    
+    /**
+     * Decodes a block of a known type from the current position of the buffer, excluding the type byte. The position
+     * of the buffer is advanced past the encoded block.
+     * @param buffer the source buffer
+     * @param type   the type of the encoded block
+     * @return the decoded block
+     * @throws BufferUnderflowException if the buffer does not contain a complete block
+     */
+    public static Block decodeBody(ByteBuffer buffer, BlockType type) {
+        if (buffer == null) throw new IllegalArgumentException("Buffer cannot be null.");
+        if (type == null) throw new IllegalArgumentException("Block type cannot be null.");
+        
+        switch (type) {
+            case SEND: {
+                String previous = getHex(buffer, 32);
+                NanoAccount destination = getAccount(buffer);
+                NanoAmount balance = getBalance(buffer);
+                return new SendBlock(null, getHex(buffer, 64), getWork(buffer, false), previous, destination,
+                        balance);
+            }
+            case RECEIVE: {
+                String previous = getHex(buffer, 32);
+                String source = getHex(buffer, 32);
+                return new ReceiveBlock(null, getHex(buffer, 64), getWork(buffer, false), previous, source);
+            }
+            case OPEN: {
+                String source = getHex(buffer, 32);
+                NanoAccount representative = getAccount(buffer);
+                NanoAccount account = getAccount(buffer);
+                return new OpenBlock(null, getHex(buffer, 64), getWork(buffer, false), source, account,
+                        representative);
+            }
+            case CHANGE: {
+                String previous = getHex(buffer, 32);
+                NanoAccount representative = getAccount(buffer);
+                return new ChangeBlock(null, getHex(buffer, 64), getWork(buffer, false), previous, representative);
+            }
+            case STATE: {
+                NanoAccount account = getAccount(buffer);
+                String previous = getHex(buffer, 32);
+                NanoAccount representative = getAccount(buffer);
+                NanoAmount balance = getBalance(buffer);
+                String link = getHex(buffer, 32);
+                return new StateBlock(null, null, getHex(buffer, 64), getWork(buffer, true), account, previous,
+                        representative, balance, link, null);
+            }
+            default:
+                throw new AssertionError();
+        }
+    }
+    
+    
+    /**
+     * Computes the hash of an encoded block (including the leading type byte) at the current position of the buffer,
+     * without decoding the block. The position of the buffer is not modified.
+     * @param buffer the buffer containing the encoded block
+     * @return the 32-byte block hash
+     */
+    public static byte[] hash(ByteBuffer buffer) {
+        if (buffer == null) throw new IllegalArgumentException("Buffer cannot be null.");
+        return hash(buffer, buffer.position() + 1, getTypeFromId(buffer.get(buffer.position())));
+    }
+    
+    /**
+     * Computes the hash of an encoded block of a known type (excluding the type byte) at the current position of the
+     * buffer, without decoding the block. The position of the buffer is not modified.
+     * @param buffer the buffer containing the encoded block
+     * @param type   the type of the encoded block
+     * @return the 32-byte block hash
+     */
+    public static byte[] hashBody(ByteBuffer buffer, BlockType type) {
+        if (buffer == null) throw new IllegalArgumentException("Buffer cannot be null.");
+        if (type == null) throw new IllegalArgumentException("Block type cannot be null.");
+        return hash(buffer, buffer.position(), type);
+    }
+    
+    private static byte[] hash(ByteBuffer buffer, int offset, BlockType type) {
+        // The hashed fields are always at the start of the body, in the same order
+        int length = getLength(type) - 72;
+        if (offset + getLength(type) > buffer.limit())
+            throw new BufferUnderflowException();
+        
+        Blake2b digest = DIGEST.get();
+        digest.reset();
+        if (type == BlockType.STATE)
+            digest.update(STATE_PREAMBLE, 0, STATE_PREAMBLE.length);
+        if (buffer.hasArray()) {
+            digest.update(buffer.array(), buffer.arrayOffset() + offset, length);
+        } else {
+            byte[] scratch = SCRATCH.get();
+            for (int i=0; i<length; i++)
+                scratch[i] = buffer.get(offset + i);
+            digest.update(scratch, 0, length);
+        }
+        byte[] hash = new byte[32];
+        digest.digest(hash, 0);
+        return hash;
+    }
+    
+    
+    private static void putHex(ByteBuffer buffer, String hex) {
+        for (int i=0; i<hex.length(); i+=2)
+            buffer.put((byte)((Character.digit(hex.charAt(i), 16) << 4) | Character.digit(hex.charAt(i + 1), 16)));
+    }
+    
+    private static String getHex(ByteBuffer buffer, int length) {
+        char[] chars = new char[length * 2];
+        for (int i=0; i<length; i++) {
+            int b = buffer.get() & 0xFF;
+            chars[2 * i] = JNH.HEX_CHARS_UC[b >>> 4];
+            chars[2 * i + 1] = JNH.HEX_CHARS_UC[b & 15];
+        }
+        return new String(chars);
+    }
+    
+    private static NanoAccount getAccount(ByteBuffer buffer) {
+        byte[] key = new byte[32];
+        buffer.get(key);
+        return new NanoAccount(key);
+    }
+    
+    private static void putBalance(ByteBuffer buffer, NanoAmount balance) {
+        byte[] raw = balance.getAsRaw().toByteArray(); // May contain a leading sign byte
+        for (int i=16; i>raw.length; i--)
+            buffer.put((byte)0);
+        buffer.put(raw, Math.max(0, raw.length - 16), Math.min(16, raw.length));
+    }
+    
+    private static NanoAmount getBalance(ByteBuffer buffer) {
+        byte[] raw = new byte[16];
+        buffer.get(raw);
+        return new NanoAmount(new BigInteger(1, raw));
+    }
+    
+    private static WorkSolution getWork(ByteBuffer buffer, boolean bigEndian) {
+        long work = 0;
+        if (bigEndian) {
+            for (int i=0; i<8; i++)
+                work = (work << 8) | (buffer.get() & 0xFF);
+        } else {
+            for (int i=0; i<64; i+=8)
+                work |= (buffer.get() & 0xFFL) << i;
+        }
+        return new WorkSolution(work);
+    }
+    
+}
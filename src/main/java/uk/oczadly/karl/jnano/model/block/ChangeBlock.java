@@ -79,6 +79,13 @@ public class ChangeBlock extends Block implements IBlockPrevious, IBlockRepresen
     }
     
     
+    @Override
+    protected int writeHashables(byte[] buffer) {
+        writeHex(getPreviousBlockHash(), buffer, 0);
+        getRepresentative().copyPublicKeyBytes(buffer, 32);
+        return 64;
+    }
+    
     @Override
     protected byte[][] generateHashables() {
         return new byte[][] {
@@ -95,6 +95,14 @@ public class OpenBlock extends Block implements IBlockSource, IBlockAccount, IBl
     }
     
     
+    @Override
+    protected int writeHashables(byte[] buffer) {
+        writeHex(getSourceBlockHash(), buffer, 0);
+        getRepresentative().copyPublicKeyBytes(buffer, 32);
+        getAccount().copyPublicKeyBytes(buffer, 64);
+        return 96;
+    }
+    
     @Override
     protected byte[][] generateHashables() {
         return new byte[][] {
@@ -79,6 +79,11 @@ public class ReceiveBlock extends Block implements IBlockPrevious, IBlockSource
     }
     
     
+    @Override
+    protected int writeHashables(byte[] buffer) {
+        return writeHex(getSourceBlockHash(), buffer, writeHex(getPreviousBlockHash(), buffer, 0));
+    }
+    
     @Override
     protected byte[][] generateHashables() {
         return new byte[][] {
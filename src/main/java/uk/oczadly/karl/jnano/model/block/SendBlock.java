@@ -124,12 +124,19 @@ public class SendBlock extends Block implements IBlockPrevious, IBlockLink, IBlo
     }
     
     
+    @Override
+    protected int writeHashables(byte[] buffer) {
+        int offset = writeHex(getPreviousBlockHash(), buffer, 0);
+        getDestinationAccount().copyPublicKeyBytes(buffer, offset);
+        return writeBalance(getBalance(), buffer, offset + 32);
+    }
+    
     @Override
     protected byte[][] generateHashables() {
         return new byte[][] {
                 JNH.ENC_16.decode(getPreviousBlockHash()),
                 getDestinationAccount().getPublicKeyBytes(),
-                JNH.leftPadByteArray(getBalance().getAsRaw().toByteArray(), 16, false)
+                JNH.leftPadByteArray(getBalance().getAsRaw().toByteArray(), 16, true)
         };
     }
     
@@ -254,6 +254,17 @@ public final class StateBlock extends Block implements IBlockLink, IBlockBalance
     }
     
     
+    @Override
+    protected int writeHashables(byte[] buffer) {
+        System.arraycopy(HASH_PREAMBLE_BYTES, 0, buffer, 0, 32);
+        getAccount().copyPublicKeyBytes(buffer, 32);
+        writeHex(getPreviousBlockHash(), buffer, 64);
+        getRepresentative().copyPublicKeyBytes(buffer, 96);
+        writeBalance(getBalance(), buffer, 128);
+        getLinkAsAccount().copyPublicKeyBytes(buffer, 144);
+        return 176;
+    }
+    
     @Override
     protected byte[][] generateHashables() {
         return new byte[][] {
@@ -261,7 +272,7 @@ public final class StateBlock extends Block implements IBlockLink, IBlockBalance
                 getAccount().getPublicKeyBytes(),
                 JNH.ENC_16.decode(getPreviousBlockHash()),
                 getRepresentative().getPublicKeyBytes(),
-                JNH.leftPadByteArray(getBalance().getAsRaw().toByteArray(), 16, false),
+                JNH.leftPadByteArray(getBalance().getAsRaw().toByteArray(), 16, true),
                 getLinkAsAccount().getPublicKeyBytes()
         };
     }
@@ -6,11 +6,13 @@
 package uk.oczadly.karl.jnano.model.block;
 
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.Ed25519;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -293,6 +295,37 @@ public final class StateBlockBuilder {
      * @return a new instance of the {@link StateBlock} class using the configured parameters
      */
     public StateBlock build() {
+        return build(hash, signature);
+    }
+    
+    /**
+     * Creates a new {@link StateBlock} using the configured parameters, and signs the block locally using the given
+     * private key. The hash and signature set in this builder are ignored. If no account has been set, then the
+     * account of the private key will be set and used.
+     *
+     * @param privateKey the private key of the account, represented as a 64-character hex string
+     * @return a new signed instance of the {@link StateBlock} class
+     * @throws IllegalArgumentException if the private key does not belong to the block's account
+     */
+    public StateBlock buildAndSign(String privateKey) {
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        if (!JNH.isValidHex(privateKey, 64))
+            throw new IllegalArgumentException("Private key must be a 64-character hex string.");
+        
+        byte[] key = JNH.ENC_16.decode(privateKey.toUpperCase());
+        byte[] publicKey = Ed25519.derivePublicKey(key);
+        if (accountAddress == null) {
+            setAccountAddress(new NanoAccount(publicKey));
+        } else if (!Arrays.equals(accountAddress.getPublicKeyBytes(), publicKey)) {
+            throw new IllegalArgumentException("Private key does not belong to the block account.");
+        }
+        
+        byte[] hash = build(null, null).getHashBytes();
+        return build(JNH.ENC_16.encode(hash), JNH.ENC_16.encode(Ed25519.sign(hash, key)));
+    }
+    
+    private StateBlock build(String hash, String signature) {
         return new StateBlock(subtype, hash, signature, work, accountAddress,
                 Objects.requireNonNullElse(previousBlockHash, JNH.ZEROES_64),
                 representativeAddress, balance,
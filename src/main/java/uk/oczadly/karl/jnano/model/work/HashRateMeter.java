@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.work;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>This class measures the number of work hashes computed by the CPU work generator. The global meter used by
+ * {@link WorkSolution}'s generation methods can be obtained through {@link WorkSolution#getHashRateMeter()}.</p>
+ *
+ * <p>The hash rate is calculated as the average rate between samples, where a new sample is taken when
+ * {@link #getHashesPerSecond()} is called, no more than once per second. Instances of this class are thread-safe.</p>
+ */
+public final class HashRateMeter {
+    
+    private static final long MIN_SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    
+    private final LongAdder total = new LongAdder();
+    private long sampleTime = System.nanoTime(), sampleTotal;
+    private double rate;
+    
+    
+    /**
+     * Records the given number of computed hashes.
+     * @param hashes the number of hashes
+     */
+    public void record(long hashes) {
+        total.add(hashes);
+    }
+    
+    /**
+     * @return the total number of hashes computed
+     */
+    public long getTotalHashes() {
+        return total.sum();
+    }
+    
+    /**
+     * Returns the average number of hashes computed per second, since the previous sample.
+     * @return the hash rate, in hashes per second
+     */
+    public synchronized double getHashesPerSecond() {
+        long now = System.nanoTime(), elapsed = now - sampleTime;
+        if (elapsed >= MIN_SAMPLE_INTERVAL) {
+            long total = getTotalHashes();
+            rate = (total - sampleTotal) * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+            sampleTime = now;
+            sampleTotal = total;
+        }
+        return rate;
+    }
+    
+}
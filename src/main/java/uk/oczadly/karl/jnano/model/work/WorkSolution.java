@@ -7,8 +7,8 @@ package uk.oczadly.karl.jnano.model.work;
 
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
-import com.rfksystems.blake2b.Blake2b;
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.WorkKernel;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.block.Block;
 import uk.oczadly.karl.jnano.model.block.interfaces.IBlockAccount;
@@ -16,7 +16,6 @@ import uk.oczadly.karl.jnano.model.block.interfaces.IBlockPrevious;
 import uk.oczadly.karl.jnano.rpc.request.node.RequestWorkGenerate;
 
 import java.lang.reflect.Type;
-import java.util.Arrays;
 import java.util.Objects;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
@@ -33,6 +32,8 @@ public class WorkSolution {
     
     private static final Random RANDOM = new Random();
     private static final ExecutorService WORK_GEN_POOL = Executors.newWorkStealingPool();
+    private static final HashRateMeter HASH_RATE = new HashRateMeter();
+    private static final int BATCH_SIZE = 4096; // Hashes computed between interrupt checks
     
     private final long longVal;
     private final String hexVal;
@@ -105,7 +106,7 @@ public class WorkSolution {
         if (root == null) throw new IllegalArgumentException("Root array cannot be null.");
         if (root.length != 32) throw new IllegalArgumentException("Root array must have a length of 32.");
     
-        return new WorkDifficulty(convertBytesToLong(JNH.blake2b(8, convertLongToBytes(longVal), root)));
+        return new WorkDifficulty(new WorkKernel(root).difficulty(longVal));
     }
     
     
@@ -128,6 +129,14 @@ public class WorkSolution {
     }
     
     
+    /**
+     * Returns the meter which records the hashes computed by the CPU work generation methods of this class.
+     * @return the global CPU work hash rate meter
+     */
+    public static HashRateMeter getHashRateMeter() {
+        return HASH_RATE;
+    }
+    
     /**
      * Returns the root data for the given block, for use in work calculations. The block type must implement either the
      * {@link IBlockAccount} or {@link IBlockPrevious} interface, otherwise an {@link IllegalArgumentException} will
@@ -190,10 +199,7 @@ public class WorkSolution {
         if (root.length != 32) throw new IllegalArgumentException("Root array must have a length of 32.");
         if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
         
-        byte[] thresholdBytes = convertLongToBytes(threshold.getAsLong());
-        byte[] initialWork = new byte[8];
-        RANDOM.nextBytes(initialWork);
-        return generate(root, thresholdBytes, initialWork, null);
+        return generate(root, threshold.getAsLong(), RANDOM.nextLong(), null);
     }
     
     /**
@@ -228,8 +234,8 @@ public class WorkSolution {
      * <p>Generates a work solution from the given root and minimum difficulty threshold. The root value should be
      * either the previous block hash for existing accounts, or the account's public key for the first block.</p>
      * <p>This variant of the generate method will submit the number of {@code parallelTasks} specified to the given
-     * {@code executor}. Once a valid work solution has been found by any of the created tasks, they will all
-     * automatically end and discard themselves.</p>
+     * {@code executor}. Once a valid work solution has been found by any of the created tasks (or the returned
+     * future is cancelled), they will all automatically end and discard themselves.</p>
      * <p><strong>CAUTION:</strong> This method will generate the work on the CPU. For GPU calculations, use the
      * work generation utility provided by the node through RPC ({@link RequestWorkGenerate}).</p>
      * @param root          the root hash (64 character hex string)
@@ -251,8 +257,8 @@ public class WorkSolution {
      * <p>Generates a work solution from the given root and minimum difficulty threshold. The root value should be
      * either the previous block hash for existing accounts, or the account's public key for the first block.</p>
      * <p>This variant of the generate method will submit the number of {@code parallelTasks} specified to the given
-     * {@code executor}. Once a valid work solution has been found by any of the created tasks, they will all
-     * automatically end and discard themselves.</p>
+     * {@code executor}. Once a valid work solution has been found by any of the created tasks (or the returned
+     * future is cancelled), they will all automatically end and discard themselves.</p>
      * <p><strong>CAUTION:</strong> This method will generate the work on the CPU. For GPU calculations, use the
      * work generation utility provided by the node through RPC ({@link RequestWorkGenerate}).</p>
      * @param root          the root bytes (32 element byte array)
@@ -263,24 +269,60 @@ public class WorkSolution {
      */
     public static Future<WorkSolution> generateMultiThreaded(byte[] root, WorkDifficulty threshold,
                                                              ExecutorService executor, int parallelTasks) {
+        return generateAsync(root, threshold, executor, parallelTasks);
+    }
+    
+    /**
+     * <p>Generates a work solution from the given root and minimum difficulty threshold, utilising all of the systems
+     * CPU cores. This method is equivalent to {@link #generateMultiThreaded(String, WorkDifficulty)}, but returns a
+     * {@link CompletableFuture} which can be composed with other stages. Cancelling the future will stop the
+     * generation tasks.</p>
+     * <p><strong>CAUTION:</strong> This method will generate the work on the CPU. For GPU calculations, use the
+     * work generation utility provided by the node through RPC ({@link RequestWorkGenerate}).</p>
+     * @param root      the root hash (64 character hex string)
+     * @param threshold the minimum difficulty threshold
+     * @return a future object, representing the generated work solution
+     */
+    public static CompletableFuture<WorkSolution> generateAsync(String root, WorkDifficulty threshold) {
+        if (root == null) throw new IllegalArgumentException("Root argument cannot be null.");
+        if (!JNH.isValidHex(root, 64))
+            throw new IllegalArgumentException("Root argument must be a 64-character hex string.");
+        
+        return generateAsync(JNH.ENC_16.decode(root), threshold, WORK_GEN_POOL,
+                Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * <p>Generates a work solution from the given root and minimum difficulty threshold. This method is equivalent to
+     * {@link #generateMultiThreaded(byte[], WorkDifficulty, ExecutorService, int)}, but returns a
+     * {@link CompletableFuture} which can be composed with other stages. Cancelling the future will stop the
+     * generation tasks.</p>
+     * <p><strong>CAUTION:</strong> This method will generate the work on the CPU. For GPU calculations, use the
+     * work generation utility provided by the node through RPC ({@link RequestWorkGenerate}).</p>
+     * @param root          the root bytes (32 element byte array)
+     * @param threshold     the minimum difficulty threshold
+     * @param executor      the {@link ExecutorService} to submit the work generation tasks to
+     * @param parallelTasks the number of tasks to submit to the executor service
+     * @return a future object, representing the generated work solution
+     */
+    public static CompletableFuture<WorkSolution> generateAsync(byte[] root, WorkDifficulty threshold,
+                                                                ExecutorService executor, int parallelTasks) {
         if (root == null) throw new IllegalArgumentException("Root array cannot be null.");
         if (root.length != 32) throw new IllegalArgumentException("Root array must have a length of 32.");
         if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
         if (parallelTasks < 1) throw new IllegalArgumentException("Parallel tasks must be 1 or greater.");
         
         final CompletableFuture<WorkSolution> future = new CompletableFuture<>();
-        byte[] thresholdBytes = convertLongToBytes(threshold.getAsLong());
-        byte[] initialWork = new byte[8];
-        RANDOM.nextBytes(initialWork); // Populate initial work array with random bytes
+        long initialWork = RANDOM.nextLong();
         AtomicBoolean interrupt = new AtomicBoolean(false);
+        future.whenComplete((r, ex) -> interrupt.set(true)); // Also stops the tasks if the future is cancelled
         
         for (int i=0; i<parallelTasks; i++) {
-            byte[] work = Arrays.copyOf(initialWork, initialWork.length);
-            work[7] += i * 2; // Ensure last (MSB) byte is different for each thread
+            long work = initialWork + ((long)i << 56); // Ensure MSB is different for each thread
     
             executor.execute(() -> {
                 try {
-                    WorkSolution result = generate(root, thresholdBytes, work, interrupt);
+                    WorkSolution result = generate(root, threshold.getAsLong(), work, interrupt);
                     future.complete(result);
                     interrupt.set(true);
                 } catch (InterruptedException e) {
@@ -294,48 +336,23 @@ public class WorkSolution {
     }
     
     
-    private static WorkSolution generate(byte[] root, byte[] thresholdBytes, byte[] work, AtomicBoolean interrupt)
+    private static WorkSolution generate(byte[] root, long threshold, long work, AtomicBoolean interrupt)
             throws InterruptedException {
-        Blake2b digest = new Blake2b(null, 8, null, null);
-        byte[] difficulty = new byte[8];
-        
+        WorkKernel kernel = new WorkKernel(root);
         Thread thread = Thread.currentThread();
         
         while (true) {
             if ((interrupt != null && interrupt.get()) || thread.isInterrupted())
                 throw new InterruptedException();
             
-            // Hash digest
-            digest.update(work, 0, work.length);
-            digest.update(root, 0, root.length);
-            digest.digest(difficulty, 0);
-            
-            // Compare against threshold
-            boolean valid = true;
-            for (int i=0; i<thresholdBytes.length; i++) {
-                if (Byte.compareUnsigned(difficulty[i], thresholdBytes[i]) < 0) {
-                    valid = false;
-                    break;
-                }
-            }
-            if (valid)
-                return new WorkSolution(convertBytesToLong(work));
-            
-            // Increment 'work' array
-            for (int i=0; i<work.length; i++) {
-                if (++work[i] != 0) break;
-            }
+            int offset = kernel.search(work, BATCH_SIZE, threshold);
+            HASH_RATE.record(offset < BATCH_SIZE ? offset + 1 : BATCH_SIZE);
+            if (offset < BATCH_SIZE)
+                return new WorkSolution(work + offset);
+            work += BATCH_SIZE;
         }
     }
     
-    private static byte[] convertLongToBytes(long val) {
-        return JNH.reverseArray(JNH.longToBytes(val));
-    }
-    
-    private static long convertBytesToLong(byte[] val) {
-        return JNH.bytesToLong(JNH.reverseArray(val));
-    }
-    
     
     
     static class WorkSolutionJsonAdapter implements JsonSerializer<WorkSolution>,
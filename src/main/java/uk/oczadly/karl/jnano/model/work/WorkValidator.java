@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.work;
+
+import uk.oczadly.karl.jnano.internal.utils.WorkKernel;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.util.NetworkConstants;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Validates the work of many blocks or roots in bulk. Items are split into chunks and validated in parallel on the
+ * common fork-join pool, with each thread reusing a single work kernel. Roots are decoded from their hexadecimal form
+ * directly into the kernel, and difficulties are compared as primitive values, so no objects are allocated for each
+ * validated item.</p>
+ *
+ * <p>Results are returned as a {@link BitSet}, where the bit at each index is set if the item at the same index is
+ * valid.</p>
+ */
+public final class WorkValidator {
+    
+    private static final int CHUNK_SIZE = 256; // Multiple of 64, so that chunks never share a bitset word
+    private static final ThreadLocal<WorkKernel> KERNEL = ThreadLocal.withInitial(WorkKernel::new);
+    
+    private WorkValidator() {}
+    
+    
+    /**
+     * Validates the work of each item against a single difficulty threshold.
+     * @param roots     the root hashes (64 character hex strings)
+     * @param work      the work solutions
+     * @param threshold the minimum difficulty threshold
+     * @return a bitset containing the indexes of the valid items
+     */
+    public static BitSet validate(String[] roots, WorkSolution[] work, WorkDifficulty threshold) {
+        if (roots == null) throw new IllegalArgumentException("Roots array cannot be null.");
+        if (work == null) throw new IllegalArgumentException("Work array cannot be null.");
+        if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
+        if (roots.length != work.length)
+            throw new IllegalArgumentException("Roots and work arrays must be the same length.");
+        
+        long thresholdVal = threshold.getAsLong();
+        return validate(roots.length, (kernel, i) ->
+                isValid(kernel, roots[i], work[i], thresholdVal));
+    }
+    
+    /**
+     * Validates the work of each item against its own difficulty threshold.
+     * @param roots      the root hashes (64 character hex strings)
+     * @param work       the work solutions
+     * @param thresholds the minimum difficulty thresholds
+     * @return a bitset containing the indexes of the valid items
+     */
+    public static BitSet validate(String[] roots, WorkSolution[] work, WorkDifficulty[] thresholds) {
+        if (roots == null) throw new IllegalArgumentException("Roots array cannot be null.");
+        if (work == null) throw new IllegalArgumentException("Work array cannot be null.");
+        if (thresholds == null) throw new IllegalArgumentException("Thresholds array cannot be null.");
+        if (roots.length != work.length || roots.length != thresholds.length)
+            throw new IllegalArgumentException("Roots, work and thresholds arrays must be the same length.");
+        
+        return validate(roots.length, (kernel, i) ->
+                thresholds[i] != null && isValid(kernel, roots[i], work[i], thresholds[i].getAsLong()));
+    }
+    
+    /**
+     * Validates the work of each block, against the threshold for its block type. Blocks without a work solution are
+     * considered invalid.
+     * @param blocks       the blocks to validate
+     * @param difficulties the difficulty thresholds of the network
+     * @return a bitset containing the indexes of the valid blocks
+     * @see NetworkConstants.WorkDifficulties#getForBlock(Block)
+     */
+    public static BitSet validate(List<? extends Block> blocks, NetworkConstants.WorkDifficulties difficulties) {
+        if (blocks == null) throw new IllegalArgumentException("Blocks list cannot be null.");
+        if (difficulties == null) throw new IllegalArgumentException("Work difficulties cannot be null.");
+        
+        return validate(blocks.size(), (kernel, i) -> {
+            Block block = blocks.get(i);
+            if (block == null || block.getWorkSolution() == null) return false;
+            String root;
+            try {
+                root = WorkSolution.getRoot(block);
+            } catch (IllegalArgumentException e) {
+                return false; // No root
+            }
+            return isValid(kernel, root, block.getWorkSolution(), difficulties.getForBlock(block).getAsLong());
+        });
+    }
+    
+    
+    private static BitSet validate(int count, ItemValidator validator) {
+        long[] words = new long[(count + 63) >>> 6];
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream range = IntStream.range(0, chunks);
+        (chunks > 1 ? range.parallel() : range).forEach(chunk -> {
+            WorkKernel kernel = KERNEL.get();
+            int end = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+            for (int i=chunk*CHUNK_SIZE; i<end; i++) {
+                if (validator.isValid(kernel, i))
+                    words[i >>> 6] |= 1L << i;
+            }
+        });
+        return BitSet.valueOf(words);
+    }
+    
+    private static boolean isValid(WorkKernel kernel, String root, WorkSolution work, long threshold) {
+        if (root == null || work == null || root.length() != 64 || !kernel.setRoot(root, 0)) return false;
+        return Long.compareUnsigned(kernel.difficulty(work.getAsLong()), threshold) >= 0;
+    }
+    
+    private interface ItemValidator {
+        boolean isValid(WorkKernel kernel, int index);
+    }
+    
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Classes which implement this interface are capable of submitting requests to an external Nano node without blocking
+ * the calling thread.
+ *
+ * <p>When an executor implementing this interface is used by an {@link RpcQueryNode}, asynchronous queries will be
+ * submitted through {@link #submitAsync(URL, String, int)} rather than being dispatched to a worker thread.</p>
+ */
+public interface AsyncRpcRequestExecutor extends RpcRequestExecutor {
+    
+    /**
+     * Submits a raw RPC request to the specified external node address, without blocking the calling thread.
+     *
+     * <p>The returned future should be completed exceptionally with an {@link IOException} if an exception occurs
+     * with the remote connection.</p>
+     *
+     * @param address   the network address of the local or external node
+     * @param request   the raw request data
+     * @param timeout   the timeout value in milliseconds, or 0 for infinite
+     * @return a future which will be completed with the raw string response
+     */
+    CompletableFuture<String> submitAsync(URL address, String request, int timeout);
+    
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The default implementation of this method waits on the future returned from
+     * {@link #submitAsync(URL, String, int)}.</p>
+     */
+    @Override
+    default String submit(URL address, String request, int timeout) throws IOException {
+        try {
+            return submitAsync(address, request, timeout).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response.");
+        } catch (CancellationException e) {
+            throw new IOException("The request was cancelled.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+    
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.interfaces.IBlockLink;
+import uk.oczadly.karl.jnano.websocket.TopicListener;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>An implementation of {@link RpcRequestExecutor} which caches the responses of another executor. Responses which
+ * can never change (such as confirmed blocks) are retained until evicted by the size limit, with the least recently
+ * used entries being discarded first. Responses which reflect the current state of an account are retained for a
+ * short time-to-live period, configurable per action through {@link #setTimeToLive(String, long)}.</p>
+ *
+ * <p>The following actions are cached by default:</p>
+ * <table summary="Cached actions">
+ *     <thead><tr><th>Action</th><th>Lifetime</th></tr></thead>
+ *     <tbody>
+ *         <tr><td>{@code block_info}</td><td>Until evicted (only if the block is confirmed)</td></tr>
+ *         <tr><td>{@code block_account}, {@code block_hash}, {@code account_key}</td><td>Until evicted</td></tr>
+ *         <tr><td>{@code account_balance}, {@code account_info}</td>
+ *         <td>{@value #DEFAULT_ACCOUNT_TTL} milliseconds, or until the account is invalidated</td></tr>
+ *     </tbody>
+ * </table>
+ *
+ * <p>Cached account state can be invalidated early by passing the listener returned from
+ * {@link #getConfirmationListener()} to a {@link uk.oczadly.karl.jnano.websocket.topic.TopicConfirmation} topic, which
+ * invalidates both the account and (for send blocks) the destination account of every confirmed block.</p>
+ *
+ * <p>Error responses are never cached. {@code blocks_info} responses aren't cached, as the receivable status of each
+ * block changes once the destination account receives it. Instances of this class are thread-safe.</p>
+ */
+public class CachingRequestExecutor implements AsyncRpcRequestExecutor {
+    
+    /** The default maximum number of cached responses. */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    
+    /** The default time-to-live of cached account state, in milliseconds. */
+    public static final long DEFAULT_ACCOUNT_TTL = 1000;
+    
+    private static final long IMMUTABLE = -1;
+    
+    private final RpcRequestExecutor executor;
+    private final int maxEntries;
+    private final Map<String, Long> actionTtls = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, CachedResponse> cache;
+    private final Map<String, Set<String>> accountIndex = new HashMap<>();
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+    private volatile ExecutorService asyncExecutor;
+    
+    
+    /**
+     * Constructs a caching executor which stores up to {@value #DEFAULT_MAX_ENTRIES} responses.
+     * @param executor the executor to submit uncached requests to
+     */
+    public CachingRequestExecutor(RpcRequestExecutor executor) {
+        this(executor, DEFAULT_MAX_ENTRIES);
+    }
+    
+    /**
+     * @param executor   the executor to submit uncached requests to
+     * @param maxEntries the maximum number of cached responses
+     */
+    public CachingRequestExecutor(RpcRequestExecutor executor, int maxEntries) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor cannot be null.");
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Maximum entries must be at least 1.");
+        
+        this.executor = executor;
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > CachingRequestExecutor.this.maxEntries) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        for (String action : new String[] {"block_info", "block_account", "block_hash", "account_key"})
+            actionTtls.put(action, IMMUTABLE);
+        actionTtls.put("account_balance", DEFAULT_ACCOUNT_TTL);
+        actionTtls.put("account_info", DEFAULT_ACCOUNT_TTL);
+    }
+    
+    
+    /**
+     * @return the executor which uncached requests are submitted to
+     */
+    public final RpcRequestExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * @return the maximum number of cached responses
+     */
+    public final int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    /**
+     * Sets the time-to-live period of responses for the given account-specific action. The request must contain an
+     * {@code account} parameter, which is used to invalidate the entry when the account changes.
+     * @param action the action name
+     * @param ttl    the time-to-live in milliseconds, or zero to disable caching of the action
+     * @return this executor
+     */
+    public CachingRequestExecutor setTimeToLive(String action, long ttl) {
+        if (action == null)
+            throw new IllegalArgumentException("Action cannot be null.");
+        if (ttl < 0)
+            throw new IllegalArgumentException("Time-to-live must be positive or zero.");
+        if (ttl == 0) {
+            actionTtls.remove(action);
+        } else {
+            actionTtls.put(action, ttl);
+        }
+        return this;
+    }
+    
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    /**
+     * @return the number of cacheable requests which were not present in the cache
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    /**
+     * @return the number of entries evicted to satisfy the size limit
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+    
+    /**
+     * @return the number of responses currently cached (including expired entries which have not yet been removed)
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+    
+    /**
+     * Removes all cached responses.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        accountIndex.clear();
+    }
+    
+    /**
+     * Removes all cached responses containing state of the given account.
+     * @param account the account
+     */
+    public void invalidateAccount(NanoAccount account) {
+        if (account == null)
+            throw new IllegalArgumentException("Account cannot be null.");
+        String accountKey = account.toPublicKey();
+        synchronized (this) {
+            Set<String> keys = accountIndex.remove(accountKey);
+            if (keys != null)
+                cache.keySet().removeAll(keys);
+        }
+    }
+    
+    /**
+     * Returns a listener which invalidates the affected accounts of each confirmed block. The listener should be
+     * registered to a {@link uk.oczadly.karl.jnano.websocket.topic.TopicConfirmation} topic.
+     * @return a confirmation listener which invalidates cached account state
+     */
+    public TopicListener<TopicMessageConfirmation> getConfirmationListener() {
+        return (message, context) -> {
+            if (message.getAccount() != null)
+                invalidateAccount(NanoAccount.parse(message.getAccount()));
+            Block block = message.getBlock();
+            if (block instanceof IBlockLink) {
+                NanoAccount destination = ((IBlockLink)block).getLinkAsAccount();
+                if (destination != null)
+                    invalidateAccount(destination);
+            }
+        };
+    }
+    
+    
+    @Override
+    public String submit(URL address, String request, int timeout) throws IOException {
+        CacheRequest cacheReq = lookup(address, request);
+        if (cacheReq != null && cacheReq.cached != null)
+            return cacheReq.cached;
+        
+        String response = executor.submit(address, request, timeout);
+        store(cacheReq, response);
+        return response;
+    }
+    
+    @Override
+    public CompletableFuture<String> submitAsync(URL address, String request, int timeout) {
+        CacheRequest cacheReq = lookup(address, request);
+        if (cacheReq != null && cacheReq.cached != null)
+            return CompletableFuture.completedFuture(cacheReq.cached);
+        
+        CompletableFuture<String> future;
+        if (executor instanceof AsyncRpcRequestExecutor) {
+            future = ((AsyncRpcRequestExecutor)executor).submitAsync(address, request, timeout);
+        } else {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return executor.submit(address, request, timeout);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, getAsyncExecutor());
+        }
+        if (cacheReq != null)
+            future.thenAccept(response -> store(cacheReq, response));
+        return future;
+    }
+    
+    
+    /** Returns the cache entry of the request, or null if the request's action isn't cacheable. */
+    private CacheRequest lookup(URL address, String request) {
+        String action = null, account = null, accountKey = null;
+        Long ttl = null;
+        // Only read the action and account parameters, without parsing the whole request
+        try (JsonReader json = new JsonReader(new StringReader(request))) {
+            json.beginObject();
+            while (json.hasNext() && (action == null || (ttl != IMMUTABLE && account == null))) {
+                String name = json.nextName();
+                if (name.equals("action")) {
+                    action = json.nextString();
+                    ttl = actionTtls.get(action);
+                    if (ttl == null) return null;
+                } else if (name.equals("account")) {
+                    account = json.nextString();
+                } else {
+                    json.skipValue();
+                }
+            }
+            if (action == null || (ttl != IMMUTABLE && account == null))
+                return null;
+            if (ttl != IMMUTABLE)
+                accountKey = NanoAccount.parse(account).toPublicKey();
+        } catch (IOException | IllegalStateException | NanoAccount.AddressFormatException e) {
+            return null; // Malformed or unrecognized, don't cache
+        }
+        
+        String key = address + "\n" + request;
+        synchronized (this) {
+            CachedResponse entry = cache.get(key);
+            if (entry != null) {
+                if (entry.immutable || entry.expires - System.nanoTime() > 0) {
+                    hits.increment();
+                    return new CacheRequest(key, action, accountKey, ttl, entry.response);
+                }
+                cache.remove(key);
+                unindex(key, entry);
+            }
+        }
+        misses.increment();
+        return new CacheRequest(key, action, accountKey, ttl, null);
+    }
+    
+    private void store(CacheRequest req, String response) {
+        if (req == null || !isCacheable(req.action, response))
+            return;
+        
+        CachedResponse entry = req.ttl == IMMUTABLE ? new CachedResponse(response, true, 0, null)
+                : new CachedResponse(response, false, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(req.ttl),
+                        req.accountKey);
+        synchronized (this) {
+            CachedResponse prev = cache.put(req.key, entry);
+            if (prev != null)
+                unindex(req.key, prev);
+            if (entry.accountKey != null)
+                accountIndex.computeIfAbsent(entry.accountKey, k -> new HashSet<>()).add(req.key);
+        }
+    }
+    
+    private void unindex(String key, CachedResponse entry) {
+        if (entry.accountKey != null) {
+            Set<String> keys = accountIndex.get(entry.accountKey);
+            if (keys != null && keys.remove(key) && keys.isEmpty())
+                accountIndex.remove(entry.accountKey);
+        }
+    }
+    
+    private ExecutorService getAsyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    asyncExecutor = executor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = new Thread(r, "jnano-caching-executor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+    
+    
+    /** Returns true if the response is successful, and (for block info) the block is confirmed. */
+    static boolean isCacheable(String action, String response) {
+        boolean confirmed = false;
+        // Scan the top-level fields without building a tree of the response
+        try (JsonReader json = new JsonReader(new StringReader(response))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("error")) {
+                    return false;
+                } else if (name.equals("confirmed") && json.peek() == JsonToken.STRING) {
+                    confirmed = json.nextString().equals("true");
+                } else if (name.equals("confirmed") && json.peek() == JsonToken.BOOLEAN) {
+                    confirmed = json.nextBoolean();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+        return confirmed || !action.equals("block_info");
+    }
+    
+    
+    private static final class CachedResponse {
+        final String response;
+        final boolean immutable;
+        final long expires;
+        final String accountKey;
+        
+        CachedResponse(String response, boolean immutable, long expires, String accountKey) {
+            this.response = response;
+            this.immutable = immutable;
+            this.expires = expires;
+            this.accountKey = accountKey;
+        }
+    }
+    
+    private static final class CacheRequest {
+        final String key, action, accountKey;
+        final long ttl;
+        final String cached;
+        
+        CacheRequest(String key, String action, String accountKey, long ttl, String cached) {
+            this.key = key;
+            this.action = action;
+            this.accountKey = accountKey;
+            this.ttl = ttl;
+            this.cached = cached;
+        }
+    }
+    
+}
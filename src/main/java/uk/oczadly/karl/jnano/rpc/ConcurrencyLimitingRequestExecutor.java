@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import uk.oczadly.karl.jnano.rpc.exception.RpcInternalException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>An implementation of {@link RpcRequestExecutor} which limits the number of concurrent requests submitted to
+ * another executor, so that bursts of requests are queued locally rather than saturating the RPC worker threads of the
+ * node. The limit is continuously adjusted using a gradient algorithm: the limit grows while the latency of recent
+ * requests stays close to the long-term average, and shrinks in proportion as the latency rises above it. Timeouts and
+ * internal server errors ({@link RpcInternalException}) are treated as signs of overload, and reduce the limit
+ * multiplicatively.</p>
+ *
+ * <p>Requests are assigned a {@link Priority}, and each priority class has its own independent limit and queue, so
+ * that batch traffic cannot starve interactive requests. Requests are assigned the {@link Priority#INTERACTIVE}
+ * priority unless their action has been assigned a different priority through {@link #setPriority(String, Priority)},
+ * or they are submitted through the executor returned by {@link #withPriority(Priority)}. Requests which exceed the
+ * limit are queued in FIFO order, and are rejected with an {@link IOException} once the queue is full. Queued requests
+ * count towards their timeout period.</p>
+ *
+ * <p>Instances of this class are thread-safe.</p>
+ */
+public class ConcurrencyLimitingRequestExecutor implements AsyncRpcRequestExecutor {
+    
+    /** The default initial concurrency limit of each priority class. */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    
+    /** The default maximum concurrency limit of each priority class. */
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    
+    /** The default maximum number of queued requests of each priority class. */
+    public static final int DEFAULT_MAX_QUEUE_LENGTH = 1000;
+    
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+    private static final double SMOOTHING = 0.2, BACKOFF_RATIO = 0.9, TOLERANCE = 1.5;
+    private static final int LONG_WINDOW = 600;
+    
+    private final RpcRequestExecutor executor;
+    private final int maxLimit, maxQueueLength;
+    private final Pool[] pools;
+    private final Map<String, Priority> actionPriorities = new ConcurrentHashMap<>();
+    private volatile ExecutorService asyncExecutor;
+    
+    
+    /**
+     * Constructs a limiting executor with the default limits.
+     * @param executor the executor to submit requests to
+     */
+    public ConcurrencyLimitingRequestExecutor(RpcRequestExecutor executor) {
+        this(executor, DEFAULT_INITIAL_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_MAX_QUEUE_LENGTH);
+    }
+    
+    /**
+     * @param executor       the executor to submit requests to
+     * @param initialLimit   the initial concurrency limit of each priority class
+     * @param maxLimit       the maximum concurrency limit of each priority class
+     * @param maxQueueLength the maximum number of queued requests of each priority class, or zero to reject requests
+     *                       exceeding the limit
+     */
+    public ConcurrencyLimitingRequestExecutor(RpcRequestExecutor executor, int initialLimit, int maxLimit,
+                                              int maxQueueLength) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor cannot be null.");
+        if (initialLimit < 1)
+            throw new IllegalArgumentException("Initial limit must be at least 1.");
+        if (maxLimit < initialLimit)
+            throw new IllegalArgumentException("Maximum limit cannot be less than the initial limit.");
+        if (maxQueueLength < 0)
+            throw new IllegalArgumentException("Maximum queue length must be positive or zero.");
+        
+        this.executor = executor;
+        this.maxLimit = maxLimit;
+        this.maxQueueLength = maxQueueLength;
+        this.pools = new Pool[Priority.values().length];
+        for (int i=0; i<pools.length; i++)
+            pools[i] = new Pool(initialLimit);
+    }
+    
+    
+    /**
+     * @return the executor which requests are submitted to
+     */
+    public final RpcRequestExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * @return the maximum concurrency limit of each priority class
+     */
+    public final int getMaxLimit() {
+        return maxLimit;
+    }
+    
+    /**
+     * @return the maximum number of queued requests of each priority class
+     */
+    public final int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+    
+    /**
+     * Sets the priority class of requests with the given action.
+     * @param action   the action name
+     * @param priority the priority class, or null to use the default ({@link Priority#INTERACTIVE})
+     * @return this executor
+     */
+    public ConcurrencyLimitingRequestExecutor setPriority(String action, Priority priority) {
+        if (action == null)
+            throw new IllegalArgumentException("Action cannot be null.");
+        if (priority == null || priority == Priority.INTERACTIVE) {
+            actionPriorities.remove(action);
+        } else {
+            actionPriorities.put(action, priority);
+        }
+        return this;
+    }
+    
+    /**
+     * Returns an executor which submits all requests through this executor using the given priority class, regardless
+     * of their action. This can be passed to a separate {@link RpcQueryNode} which is used for batch jobs.
+     * @param priority the priority class
+     * @return an executor which submits requests with the given priority
+     */
+    public AsyncRpcRequestExecutor withPriority(Priority priority) {
+        if (priority == null)
+            throw new IllegalArgumentException("Priority cannot be null.");
+        return new AsyncRpcRequestExecutor() {
+            @Override
+            public String submit(URL address, String request, int timeout) throws IOException {
+                return ConcurrencyLimitingRequestExecutor.this.submit(address, request, timeout, priority);
+            }
+            
+            @Override
+            public CompletableFuture<String> submitAsync(URL address, String request, int timeout) {
+                return ConcurrencyLimitingRequestExecutor.this.submitAsync(address, request, timeout, priority);
+            }
+        };
+    }
+    
+    /**
+     * @param priority the priority class
+     * @return the current concurrency limit of the priority class
+     */
+    public int getLimit(Priority priority) {
+        return getPool(priority).getLimit();
+    }
+    
+    /**
+     * @param priority the priority class
+     * @return the number of requests of the priority class which are currently being processed by the node
+     */
+    public int getInFlight(Priority priority) {
+        return getPool(priority).getInFlight();
+    }
+    
+    /**
+     * @param priority the priority class
+     * @return the number of requests of the priority class which are waiting for the limit
+     */
+    public int getQueueLength(Priority priority) {
+        return getPool(priority).getQueueLength();
+    }
+    
+    /**
+     * @param priority the priority class
+     * @return the number of requests of the priority class which were rejected because the queue was full
+     */
+    public long getRejectedCount(Priority priority) {
+        return getPool(priority).rejected.sum();
+    }
+    
+    
+    @Override
+    public String submit(URL address, String request, int timeout) throws IOException {
+        return submit(address, request, timeout, classify(request));
+    }
+    
+    @Override
+    public CompletableFuture<String> submitAsync(URL address, String request, int timeout) {
+        return submitAsync(address, request, timeout, classify(request));
+    }
+    
+    
+    private String submit(URL address, String request, int timeout, Priority priority) throws IOException {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be positive or zero.");
+        Pool pool = getPool(priority);
+        long queueTime = System.nanoTime();
+        CompletableFuture<Void> permit = pool.acquire();
+        if (permit == null)
+            throw new IOException("Request rejected, the " + priority + " request queue is full.");
+        try {
+            if (timeout > 0) {
+                permit.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                permit.get();
+            }
+        } catch (TimeoutException e) {
+            if (permit.cancel(false))
+                throw new HttpTimeoutException("Timed out waiting for the concurrency limit.");
+        } catch (InterruptedException e) {
+            if (permit.cancel(false)) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the concurrency limit.");
+            }
+            Thread.currentThread().interrupt(); // Permit was granted concurrently, continue with the request
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause()); // Shouldn't happen
+        }
+        
+        long start = System.nanoTime();
+        boolean released = false;
+        try {
+            String response = executor.submit(address, request, remainingTimeout(queueTime, timeout));
+            released = true;
+            pool.release(System.nanoTime() - start, isInternalError(response));
+            return response;
+        } catch (IOException e) {
+            if (isTimeout(e)) {
+                released = true;
+                pool.release(System.nanoTime() - start, true);
+            }
+            throw e;
+        } finally {
+            if (!released) pool.release(-1, false);
+        }
+    }
+    
+    private CompletableFuture<String> submitAsync(URL address, String request, int timeout, Priority priority) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be positive or zero.");
+        Pool pool = getPool(priority);
+        long queueTime = System.nanoTime();
+        CompletableFuture<Void> permit = pool.acquire();
+        if (permit == null)
+            return CompletableFuture.failedFuture(
+                    new IOException("Request rejected, the " + priority + " request queue is full."));
+        if (timeout > 0 && !permit.isDone())
+            permit.orTimeout(timeout, TimeUnit.MILLISECONDS);
+        
+        CompletableFuture<String> result = new CompletableFuture<>();
+        permit.whenComplete((v, permitEx) -> {
+            if (permitEx != null) {
+                result.completeExceptionally(permitEx instanceof TimeoutException
+                        ? new HttpTimeoutException("Timed out waiting for the concurrency limit.") : permitEx);
+                return;
+            }
+            if (result.isDone()) { // Cancelled while queued
+                pool.release(-1, false);
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<String> exchange = execute(address, request, remainingTimeout(queueTime, timeout));
+            exchange.whenComplete((response, ex) -> {
+                if (ex == null) {
+                    pool.release(System.nanoTime() - start, isInternalError(response));
+                    result.complete(response);
+                    return;
+                }
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (isTimeout(cause)) {
+                    pool.release(System.nanoTime() - start, true);
+                } else {
+                    pool.release(-1, false);
+                }
+                result.completeExceptionally(cause);
+            });
+            result.whenComplete((r, ex) -> {
+                if (result.isCancelled()) exchange.cancel(true);
+            });
+        });
+        result.whenComplete((r, ex) -> {
+            if (result.isCancelled()) permit.cancel(false);
+        });
+        return result;
+    }
+    
+    private CompletableFuture<String> execute(URL address, String request, int timeout) {
+        if (executor instanceof AsyncRpcRequestExecutor)
+            return ((AsyncRpcRequestExecutor)executor).submitAsync(address, request, timeout);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return executor.submit(address, request, timeout);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor());
+    }
+    
+    private Priority classify(String request) {
+        if (actionPriorities.isEmpty())
+            return Priority.INTERACTIVE;
+        String action = JsonRequestSerializer.parseAction(request);
+        Priority priority = action != null ? actionPriorities.get(action) : null;
+        return priority != null ? priority : Priority.INTERACTIVE; // Default if malformed or unrecognized
+    }
+    
+    private Pool getPool(Priority priority) {
+        if (priority == null)
+            throw new IllegalArgumentException("Priority cannot be null.");
+        return pools[priority.ordinal()];
+    }
+    
+    private ExecutorService getAsyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    asyncExecutor = executor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = new Thread(r, "jnano-concurrency-limiter");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+    
+    
+    private static int remainingTimeout(long queueTime, int timeout) {
+        if (timeout == 0) return 0;
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queueTime);
+        return (int)Math.max(1, timeout - elapsed);
+    }
+    
+    private static boolean isTimeout(Throwable ex) {
+        return ex instanceof SocketTimeoutException || ex instanceof HttpTimeoutException;
+    }
+    
+    /** Returns true if the response is an internal server error, which only requires a cheap check for success. */
+    static boolean isInternalError(String response) {
+        if (response == null || response.length() > 512 || !response.contains("\"error\""))
+            return false;
+        try {
+            JsonElement error = JsonParser.parseString(response).getAsJsonObject().get("error");
+            return error != null && error.isJsonPrimitive()
+                    && JsonResponseDeserializer.createException(error.getAsString()) instanceof RpcInternalException;
+        } catch (JsonParseException | IllegalStateException e) {
+            return false;
+        }
+    }
+    
+    
+    /** The priority classes of requests, each of which has its own independent limit and queue. */
+    public enum Priority {
+        /** Latency-sensitive requests, such as those made on behalf of users. This is the default priority. */
+        INTERACTIVE,
+        /** Throughput-oriented requests, such as those made by batch jobs. */
+        BATCH
+    }
+    
+    /** The adaptive limit and queue of a single priority class. */
+    private final class Pool {
+        final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        final LongAdder rejected = new LongAdder();
+        double limit, longRtt; // Following fields are guarded by the instance lock
+        int inFlight;
+        
+        Pool(int initialLimit) {
+            this.limit = initialLimit;
+        }
+        
+        /**
+         * Acquires a permit, returning null if the request is rejected. The returned future is completed once the
+         * permit has been granted, and may be cancelled (or completed exceptionally) to withdraw from the queue.
+         */
+        synchronized CompletableFuture<Void> acquire() {
+            if (inFlight < (int)limit && waiters.isEmpty()) {
+                inFlight++;
+                return GRANTED;
+            }
+            if (waiters.size() >= maxQueueLength) {
+                rejected.increment();
+                return null;
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            waiter.whenComplete((v, ex) -> {
+                if (ex != null) withdraw(waiter);
+            });
+            return waiter;
+        }
+        
+        /**
+         * Releases a permit, and updates the limit from the given sample.
+         * @param rtt     the latency of the request in nanoseconds, or -1 if the request didn't reach the node
+         * @param dropped true if the request timed out or failed due to overload
+         */
+        void release(long rtt, boolean dropped) {
+            synchronized (this) {
+                if (rtt >= 0) update(rtt, dropped);
+                inFlight--;
+            }
+            // Grant permits to the waiting requests
+            while (true) {
+                CompletableFuture<Void> next;
+                synchronized (this) {
+                    if (inFlight >= (int)limit || (next = waiters.poll()) == null)
+                        return;
+                    inFlight++;
+                }
+                if (!next.complete(null)) { // Withdrawn
+                    synchronized (this) {
+                        inFlight--;
+                    }
+                }
+            }
+        }
+        
+        private void update(long rtt, boolean dropped) {
+            if (dropped) {
+                limit = Math.max(1, limit * BACKOFF_RATIO); // Multiplicative decrease on overload
+                return;
+            }
+            longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) * 2 / (LONG_WINDOW + 1);
+            if (longRtt / Math.max(rtt, 1) > 2)
+                longRtt *= 0.95; // Recover faster from periods of high latency
+            if (inFlight < limit / 2)
+                return; // Limit isn't being used, so the sample says nothing about the capacity
+            double gradient = Math.max(0.5, Math.min(1, TOLERANCE * longRtt / Math.max(rtt, 1)));
+            double newLimit = limit * gradient + Math.sqrt(limit); // Allow a small queue on the node
+            newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            limit = Math.max(1, Math.min(maxLimit, newLimit));
+        }
+        
+        synchronized int getLimit() {
+            return (int)limit;
+        }
+        
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+        
+        synchronized int getQueueLength() {
+            return waiters.size();
+        }
+        
+        private synchronized void withdraw(CompletableFuture<Void> waiter) {
+            waiters.remove(waiter);
+        }
+    }
+    
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A non-blocking counting semaphore which limits the number of concurrent connections to a single endpoint. Waiting
+ * acquirers are represented as futures, and are completed in FIFO order as permits are released.
+ */
+final class EndpointLimiter {
+    
+    private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int permits;
+    
+    EndpointLimiter(int permits) {
+        this.permits = permits;
+    }
+    
+    
+    /**
+     * Acquires a permit. The returned future is completed once the permit has been granted, and may be cancelled
+     * (or completed exceptionally) to withdraw from the queue.
+     */
+    synchronized CompletableFuture<Void> acquire() {
+        if (permits > 0) {
+            permits--;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        waiter.whenComplete((v, ex) -> {
+            if (ex != null) withdraw(waiter);
+        });
+        return waiter;
+    }
+    
+    /**
+     * Releases a permit, handing it to the next waiting acquirer (if any).
+     */
+    void release() {
+        CompletableFuture<Void> next;
+        do {
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    permits++;
+                    return;
+                }
+            }
+        } while (!next.complete(null)); // Skip waiters which have been withdrawn
+    }
+    
+    /** @return the number of acquirers waiting for a permit */
+    synchronized int getQueueLength() {
+        return waiters.size();
+    }
+    
+    private synchronized void withdraw(CompletableFuture<Void> waiter) {
+        waiters.remove(waiter);
+    }
+    
+}
@@ -5,13 +5,11 @@
 
 package uk.oczadly.karl.jnano.rpc;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 
 /**
  * The standard implementation of {@link RpcRequestExecutor}, which submits requests through an HTTP POST request.
@@ -20,6 +18,21 @@ public class HttpRequestExecutor implements RpcRequestExecutor {
     
     @Override
     public final String submit(URL address, String request, int timeout) throws IOException {
+        return makeRequest(openConnection(address, request, timeout), request);
+    }
+    
+    @Override
+    public final Reader submitStream(URL address, String request, int timeout) throws IOException {
+        URLConnection con = openConnection(address, request, timeout);
+        
+        // Write request data
+        try (OutputStream os = con.getOutputStream()) {
+            os.write(request.getBytes(StandardCharsets.UTF_8));
+        }
+        return new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8);
+    }
+    
+    private HttpURLConnection openConnection(URL address, String request, int timeout) throws IOException {
         if (address == null)
             throw new IllegalArgumentException("Address cannot be null.");
         if (!address.getProtocol().equalsIgnoreCase("http") && !address.getProtocol().equalsIgnoreCase("https"))
@@ -39,9 +52,7 @@ public class HttpRequestExecutor implements RpcRequestExecutor {
         con.setDoOutput(true);
         con.setDoInput(true);
         setRequestHeaders(con);
-        
-        // Submit
-        return makeRequest(con, request);
+        return con;
     }
     
     /**
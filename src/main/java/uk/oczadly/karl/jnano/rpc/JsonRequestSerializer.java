@@ -7,9 +7,14 @@ package uk.oczadly.karl.jnano.rpc;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
 
+import java.io.IOException;
+import java.io.StringReader;
+
 /**
  * The standard implementation of {@link RpcRequestSerializer}, which serializes requests into a JSON object and adds
  * the command as the {@code action} attribute.
@@ -42,5 +47,25 @@ public class JsonRequestSerializer implements RpcRequestSerializer {
         obj.addProperty("action", request.getActionCommand());
         return obj.toString();
     }
+    
+    
+    /**
+     * Reads the top-level {@code action} attribute of a JSON request, without parsing the remainder of the request.
+     * @param request the request JSON
+     * @return the action, or null if the request is malformed or doesn't specify an action
+     */
+    static String parseAction(String request) {
+        try (JsonReader json = new JsonReader(new StringReader(request))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("action"))
+                    return json.peek() == JsonToken.STRING ? json.nextString() : null;
+                json.skipValue();
+            }
+            return null;
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+    }
 
 }
@@ -6,21 +6,34 @@
 package uk.oczadly.karl.jnano.rpc;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.rpc.exception.*;
 import uk.oczadly.karl.jnano.rpc.response.ResponseSuccessful;
 import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 
 /**
  * The standard implementation of {@link RpcResponseDeserializer}, which deserializes the response as a JSON object.
+ *
+ * <p>By default, the response is parsed into a {@link JsonObject} which is retained by the returned response object
+ * (accessible through {@link RpcResponse#getRawResponseJson()}). If raw JSON retention is disabled, responses are
+ * instead deserialized directly from the JSON token stream without constructing the intermediate JSON tree, which
+ * significantly reduces the memory usage of large responses.</p>
  */
 public class JsonResponseDeserializer implements RpcResponseDeserializer {
     
     private static volatile Field RESPONSE_JSON_FIELD;
     
     private final Gson gson;
+    private final boolean retainRawJson;
     
     
     public JsonResponseDeserializer() {
@@ -28,7 +41,17 @@ public class JsonResponseDeserializer implements RpcResponseDeserializer {
     }
     
     public JsonResponseDeserializer(Gson gson) {
+        this(gson, true);
+    }
+    
+    /**
+     * @param gson          the Gson instance used to deserialize responses
+     * @param retainRawJson if true, the raw JSON will be made available from the response object; if false, the
+     *                      response will be deserialized in streaming mode
+     */
+    public JsonResponseDeserializer(Gson gson, boolean retainRawJson) {
         this.gson = gson;
+        this.retainRawJson = retainRawJson;
     }
     
     
@@ -36,10 +59,42 @@ public class JsonResponseDeserializer implements RpcResponseDeserializer {
         return gson;
     }
     
+    /**
+     * @return true if the raw JSON is retained by responses, false if responses are deserialized in streaming mode
+     */
+    public final boolean isRetainingRawJson() {
+        return retainRawJson;
+    }
+    
+    
+    @Override
+    public <R extends RpcResponse> R deserialize(Reader response, Class<R> responseClass)
+            throws RpcException, IOException {
+        if (retainRawJson)
+            return RpcResponseDeserializer.super.deserialize(response, responseClass);
+        
+        try {
+            return deserializeStream(new ErrorTrackingJsonReader(response), responseClass);
+        } catch (JsonParseException ex) {
+            throw new RpcInvalidResponseException(null, ex);
+        } catch (MalformedJsonException | EOFException ex) {
+            throw new RpcInvalidResponseException(null, new JsonSyntaxException(ex));
+        }
+    }
     
     @Override
     @SuppressWarnings("unchecked")
     public <R extends RpcResponse> R deserialize(String response, Class<R> responseClass) throws RpcException {
+        if (!retainRawJson) {
+            try {
+                return deserializeStream(new ErrorTrackingJsonReader(new StringReader(response)), responseClass);
+            } catch (JsonParseException ex) {
+                throw new RpcInvalidResponseException(response, ex);
+            } catch (IOException ex) {
+                throw new RpcInvalidResponseException(response, new JsonSyntaxException(ex));
+            }
+        }
+        
         try {
             // Parse response into JSON
             JsonObject responseJson = JsonParser.parseString(response).getAsJsonObject();
@@ -51,7 +106,7 @@ public class JsonResponseDeserializer implements RpcResponseDeserializer {
                 if (responseClass == ResponseSuccessful.class && errorStr.equalsIgnoreCase("Empty response")) {
                     return (R)new ResponseSuccessful(true); // Fix for empty response error
                 }
-                throw parseException(errorStr);
+                throw createException(errorStr);
             }
     
             // Deserialize response
@@ -64,6 +119,36 @@ public class JsonResponseDeserializer implements RpcResponseDeserializer {
     }
     
     
+    @SuppressWarnings("unchecked")
+    private <R extends RpcResponse> R deserializeStream(ErrorTrackingJsonReader reader, Class<R> responseClass)
+            throws RpcException, IOException {
+        reader.setLenient(true);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            throw new JsonSyntaxException("Expected a JSON object, but was " + reader.peek() + ".");
+        
+        // Deserialize response, tracking any returned error
+        R responseObj;
+        try {
+            responseObj = getGson().getAdapter(responseClass).read(reader);
+        } catch (RuntimeException ex) {
+            if (reader.error == null) throw ex;
+            responseObj = null; // Error response may not match the expected structure
+        }
+        
+        // Check for returned RPC error
+        if (reader.error != null) {
+            String errorStr = reader.error.trim();
+            if (responseClass == ResponseSuccessful.class && errorStr.equalsIgnoreCase("Empty response")) {
+                return (R)new ResponseSuccessful(true); // Fix for empty response error
+            }
+            throw createException(errorStr);
+        }
+        if (responseObj == null)
+            throw new JsonSyntaxException("Response object could not be deserialized.");
+        return responseObj;
+    }
+    
+    
     /**
      * Parses an {@link RpcException} from a given response message.
      * @param msg the received error message
@@ -72,6 +157,11 @@ public class JsonResponseDeserializer implements RpcResponseDeserializer {
      */
     @Deprecated
     public static RpcException parseException(String msg) {
+        return createException(msg);
+    }
+    
+    /** Creates the {@link RpcException} which represents the given error message returned by the node. */
+    static RpcException createException(String msg) {
         String msgLc = msg.toLowerCase();
         
         // Check and parse error type
@@ -146,5 +236,73 @@ public class JsonResponseDeserializer implements RpcResponseDeserializer {
             }
         }
     }
-
+    
+    
+    /**
+     * A {@link JsonReader} which captures the value of the top-level {@code error} attribute as it is read (or skipped)
+     * by the type adapter.
+     */
+    private static final class ErrorTrackingJsonReader extends JsonReader {
+        private int depth = 0;
+        private boolean readingError = false;
+        String error;
+        
+        ErrorTrackingJsonReader(Reader in) {
+            super(in);
+        }
+        
+        @Override
+        public void beginObject() throws IOException {
+            super.beginObject();
+            depth++;
+            readingError = false;
+        }
+        
+        @Override
+        public void endObject() throws IOException {
+            super.endObject();
+            depth--;
+        }
+        
+        @Override
+        public void beginArray() throws IOException {
+            super.beginArray();
+            depth++;
+            readingError = false;
+        }
+        
+        @Override
+        public void endArray() throws IOException {
+            super.endArray();
+            depth--;
+        }
+        
+        @Override
+        public String nextName() throws IOException {
+            String name = super.nextName();
+            readingError = depth == 1 && name.equals("error");
+            return name;
+        }
+        
+        @Override
+        public String nextString() throws IOException {
+            String val = super.nextString();
+            if (readingError) {
+                error = val;
+                readingError = false;
+            }
+            return val;
+        }
+        
+        @Override
+        public void skipValue() throws IOException {
+            if (readingError && peek() == JsonToken.STRING) {
+                nextString();
+            } else {
+                readingError = false;
+                super.skipValue();
+            }
+        }
+    }
+    
 }
@@ -0,0 +1,641 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import uk.oczadly.karl.jnano.rpc.request.node.RequestVersion;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>An implementation of {@link RpcRequestExecutor} which distributes requests between multiple nodes. Read-only
+ * actions are sent to the node with the lowest expected cost, which is calculated as the peak-EWMA latency of the node
+ * multiplied by its number of outstanding requests. Two available nodes are sampled at random for each request, and
+ * the cheaper of the two is selected. All other actions (such as wallet and control actions) are pinned to the
+ * designated primary node.</p>
+ *
+ * <p>Nodes which fail to respond (including timeouts) are ejected from the pool after
+ * {@value #DEFAULT_FAILURE_THRESHOLD} consecutive failures. Ejected nodes are probed with a {@link RequestVersion}
+ * request once their ejection period has elapsed, and are returned to the pool once a probe succeeds; the ejection
+ * period doubles after each failed probe, up to a maximum. If a read-only request fails, it is retried on another
+ * available node, up to {@value #DEFAULT_MAX_ATTEMPTS} attempts in total. If no nodes are available, requests are
+ * sent to the primary node.</p>
+ *
+ * <p>Read-only requests may optionally be hedged through {@link #setHedging(double, double)}. If a request hasn't
+ * completed within the given percentile of the recent latencies of its action, the same request is sent to a second
+ * node, and the first response to arrive is used while the other call is cancelled. The number of hedged requests is
+ * limited to a fraction of the read-only requests, so that hedging cannot double the load on the nodes. Requests
+ * submitted through the blocking {@link #submit(URL, String, int)} method are only hedged if hedging is enabled.</p>
+ *
+ * <p>The address passed to the submit methods is ignored. To use this executor in place of a single-node
+ * {@link RpcQueryNode}, create the query node through {@link #newQueryNodeBuilder()}:</p>
+ * <pre>{@code
+ *  LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor(new PooledHttpRequestExecutor(),
+ *          new URL("http://node1:7076"), new URL("http://node2:7076"), new URL("http://node3:7076"));
+ *  RpcQueryNode node = executor.newQueryNodeBuilder().setDefaultTimeout(5000).build();
+ * }</pre>
+ *
+ * <p>Instances of this class are thread-safe.</p>
+ */
+public class LoadBalancingRequestExecutor implements AsyncRpcRequestExecutor {
+    
+    /** The default number of consecutive failures before a node is ejected. */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 2;
+    
+    /** The default maximum number of nodes a read-only request is attempted on. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 2;
+    
+    /** The default decay time of the latency average, in milliseconds. */
+    public static final long DEFAULT_DECAY_TIME = 10000;
+    
+    /** The default initial ejection period, in milliseconds. */
+    public static final long DEFAULT_MIN_EJECTION_TIME = 1000;
+    
+    /** The default maximum ejection period, in milliseconds. */
+    public static final long DEFAULT_MAX_EJECTION_TIME = 30000;
+    
+    private static final int PROBE_TIMEOUT = 5000;
+    private static final String PROBE_REQUEST = new JsonRequestSerializer().serialize(new RequestVersion());
+    private static final double PENALTY = 1e15; // Cost of busy nodes without any latency samples
+    private static final int LATENCY_SAMPLES = 256, MIN_LATENCY_SAMPLES = 32, PERCENTILE_INTERVAL = 16;
+    private static final double HEDGE_BURST = 10; // Maximum number of hedges which may be sent in a burst
+    private static final Set<String> DEFAULT_READ_ONLY_ACTIONS = Set.of(
+            "account_balance", "account_block_count", "account_get", "account_history", "account_info",
+            "account_key", "account_representative", "account_weight", "accounts_balances", "accounts_frontiers",
+            "accounts_pending", "active_difficulty", "available_supply", "block_account", "block_count",
+            "block_count_type", "block_hash", "block_info", "blocks", "blocks_info", "bootstrap_status", "chain",
+            "confirmation_active", "confirmation_history", "confirmation_info", "confirmation_quorum", "delegators",
+            "delegators_count", "deterministic_key", "frontier_count", "frontiers", "key_expand", "ledger", "peers",
+            "pending", "pending_exists", "representatives", "representatives_online", "successors", "telemetry",
+            "unchecked", "unchecked_get", "unchecked_keys", "unopened", "uptime", "validate_account_number",
+            "version", "work_validate");
+    
+    private final RpcRequestExecutor executor;
+    private final Endpoint primary;
+    private final List<Endpoint> endpoints;
+    private final Set<String> readOnlyActions = ConcurrentHashMap.newKeySet();
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD, maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long decayTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_DECAY_TIME);
+    private volatile long minEjectionTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_EJECTION_TIME),
+            maxEjectionTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_EJECTION_TIME);
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    private final HedgeBudget hedgeBudget = new HedgeBudget();
+    private final LongAdder hedges = new LongAdder();
+    private volatile double hedgePercentile, hedgeBudgetRatio;
+    private volatile ExecutorService asyncExecutor;
+    
+    
+    /**
+     * @param executor  the executor used to submit requests to each node
+     * @param primary   the address of the primary node, which also serves read-only requests
+     * @param secondary the addresses of the other nodes, which only serve read-only requests
+     */
+    public LoadBalancingRequestExecutor(RpcRequestExecutor executor, URL primary, URL... secondary) {
+        this(executor, primary, Arrays.asList(secondary));
+    }
+    
+    /**
+     * @param executor  the executor used to submit requests to each node
+     * @param primary   the address of the primary node, which also serves read-only requests
+     * @param secondary the addresses of the other nodes, which only serve read-only requests
+     */
+    public LoadBalancingRequestExecutor(RpcRequestExecutor executor, URL primary, Collection<URL> secondary) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor cannot be null.");
+        if (primary == null)
+            throw new IllegalArgumentException("Primary address cannot be null.");
+        if (secondary == null)
+            throw new IllegalArgumentException("Secondary addresses cannot be null.");
+        
+        this.executor = executor;
+        this.primary = new Endpoint(primary, 0);
+        List<Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(this.primary);
+        Set<String> addresses = new HashSet<>();
+        addresses.add(primary.toString());
+        for (URL address : secondary) {
+            if (address == null)
+                throw new IllegalArgumentException("Secondary addresses cannot contain null elements.");
+            if (addresses.add(address.toString()))
+                endpoints.add(new Endpoint(address, endpoints.size()));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.readOnlyActions.addAll(DEFAULT_READ_ONLY_ACTIONS);
+    }
+    
+    
+    /**
+     * @return the executor used to submit requests to each node
+     */
+    public final RpcRequestExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * @return the address of the primary node
+     */
+    public final URL getPrimary() {
+        return primary.address;
+    }
+    
+    /**
+     * @return the addresses of all the nodes, starting with the primary node
+     */
+    public final List<URL> getAddresses() {
+        List<URL> addresses = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints)
+            addresses.add(endpoint.address);
+        return addresses;
+    }
+    
+    /**
+     * @param address the address of the node
+     * @return true if the node is currently accepting read-only requests, or false if it has been ejected
+     */
+    public boolean isAvailable(URL address) {
+        return !getEndpoint(address).ejected;
+    }
+    
+    /**
+     * @param address the address of the node
+     * @return the number of outstanding requests submitted to the node
+     */
+    public int getOutstandingRequests(URL address) {
+        return getEndpoint(address).pending.get();
+    }
+    
+    /**
+     * Sets whether the given action is read-only, and may be served by any node. Actions which are not read-only are
+     * always sent to the primary node.
+     * @param action   the action name
+     * @param readOnly true if the action may be served by any node
+     * @return this executor
+     */
+    public LoadBalancingRequestExecutor setReadOnly(String action, boolean readOnly) {
+        if (action == null)
+            throw new IllegalArgumentException("Action cannot be null.");
+        if (readOnly) {
+            readOnlyActions.add(action);
+        } else {
+            readOnlyActions.remove(action);
+        }
+        return this;
+    }
+    
+    /**
+     * Sets the number of consecutive failures after which a node is ejected from the pool.
+     * @param failureThreshold the number of consecutive failures
+     * @return this executor
+     */
+    public LoadBalancingRequestExecutor setFailureThreshold(int failureThreshold) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("Failure threshold must be at least 1.");
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+    
+    /**
+     * Sets the maximum number of nodes which a read-only request is attempted on before failing.
+     * @param maxAttempts the maximum number of attempts, or {@code 1} to disable failover
+     * @return this executor
+     */
+    public LoadBalancingRequestExecutor setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("Maximum attempts must be at least 1.");
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+    
+    /**
+     * Sets the decay time of the latency moving average. Lower values react faster to latency changes.
+     * @param decayTime the decay time in milliseconds
+     * @return this executor
+     */
+    public LoadBalancingRequestExecutor setDecayTime(long decayTime) {
+        if (decayTime < 1)
+            throw new IllegalArgumentException("Decay time must be positive.");
+        this.decayTime = TimeUnit.MILLISECONDS.toNanos(decayTime);
+        return this;
+    }
+    
+    /**
+     * Sets the period for which a node is ejected before it is probed. The period doubles after every failed probe,
+     * up to the maximum.
+     * @param min the initial ejection period in milliseconds
+     * @param max the maximum ejection period in milliseconds
+     * @return this executor
+     */
+    public LoadBalancingRequestExecutor setEjectionTime(long min, long max) {
+        if (min < 0)
+            throw new IllegalArgumentException("Minimum ejection time must be positive or zero.");
+        if (max < min)
+            throw new IllegalArgumentException("Maximum ejection time cannot be less than the minimum.");
+        this.minEjectionTime = TimeUnit.MILLISECONDS.toNanos(min);
+        this.maxEjectionTime = TimeUnit.MILLISECONDS.toNanos(max);
+        return this;
+    }
+    
+    /**
+     * Enables hedging of read-only requests. If a request hasn't completed within the given percentile of the recent
+     * latencies of its action, the request is also sent to another available node. Hedging is disabled by default.
+     * @param percentile the latency percentile after which requests are hedged, or zero to disable hedging
+     * @param budget     the maximum ratio of hedged requests to read-only requests (eg. {@code 0.05} for 5%)
+     * @return this executor
+     */
+    public LoadBalancingRequestExecutor setHedging(double percentile, double budget) {
+        if (percentile < 0 || percentile >= 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        if (budget < 0 || budget > 1)
+            throw new IllegalArgumentException("Hedge budget must be between 0 and 1.");
+        this.hedgeBudgetRatio = budget;
+        this.hedgePercentile = percentile;
+        return this;
+    }
+    
+    /**
+     * @return the number of hedged requests which have been sent
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+    
+    /**
+     * Returns a new query node builder which submits requests through this executor, with the primary node as the
+     * address.
+     * @return a new query node builder
+     */
+    public RpcQueryNode.Builder newQueryNodeBuilder() {
+        return new RpcQueryNode.Builder(primary.address).setRequestExecutor(this);
+    }
+    
+    
+    @Override
+    public String submit(URL address, String request, int timeout) throws IOException {
+        if (!isReadOnly(JsonRequestSerializer.parseAction(request)))
+            return submit(primary, request, timeout);
+        if (hedgePercentile > 0)
+            return AsyncRpcRequestExecutor.super.submit(address, request, timeout); // Hedged requests are async
+        
+        Endpoint endpoint = select(null);
+        if (endpoint == null) endpoint = primary;
+        BitSet attempted = null;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return submit(endpoint, request, timeout);
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) throw e;
+                if (attempted == null) attempted = new BitSet(endpoints.size());
+                attempted.set(endpoint.index);
+                endpoint = select(attempted);
+                if (endpoint == null) throw e;
+            }
+        }
+    }
+    
+    @Override
+    public CompletableFuture<String> submitAsync(URL address, String request, int timeout) {
+        String action = JsonRequestSerializer.parseAction(request);
+        if (!isReadOnly(action)) {
+            Exchange exchange = new Exchange(request, timeout, 1, null);
+            exchange.start(primary, false);
+            return exchange.result;
+        }
+        
+        double percentile = hedgePercentile;
+        LatencyTracker tracker = percentile > 0 ? latencies.computeIfAbsent(action, k -> new LatencyTracker()) : null;
+        Exchange exchange = new Exchange(request, timeout, maxAttempts, tracker);
+        Endpoint endpoint;
+        synchronized (exchange) {
+            endpoint = select(exchange.attempted);
+        }
+        exchange.start(endpoint != null ? endpoint : primary, false);
+        if (tracker != null) {
+            hedgeBudget.deposit(hedgeBudgetRatio);
+            long delay = tracker.percentile(percentile);
+            if (delay >= 0 && !exchange.result.isDone())
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(exchange::hedge);
+        }
+        return exchange.result;
+    }
+    
+    
+    private String submit(Endpoint endpoint, String request, int timeout) throws IOException {
+        long start = endpoint.begin();
+        boolean success = false;
+        try {
+            String response = executor.submit(endpoint.address, request, timeout);
+            success = true;
+            return response;
+        } finally {
+            endpoint.end(start, success);
+        }
+    }
+    
+    private CompletableFuture<String> execute(URL address, String request, int timeout) {
+        if (executor instanceof AsyncRpcRequestExecutor)
+            return ((AsyncRpcRequestExecutor)executor).submitAsync(address, request, timeout);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return executor.submit(address, request, timeout);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, getAsyncExecutor());
+    }
+    
+    /**
+     * Selects the cheaper of two random available nodes which have not already been attempted, or returns null if no
+     * such nodes are available. Ejected nodes which are due to be probed are probed in the background.
+     */
+    private Endpoint select(BitSet attempted) {
+        long now = System.nanoTime();
+        int available = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejected) {
+                endpoint.probeIfDue(now);
+            } else if (attempted == null || !attempted.get(endpoint.index)) {
+                available++;
+            }
+        }
+        if (available <= 1) {
+            for (Endpoint endpoint : endpoints) {
+                if (!endpoint.ejected && (attempted == null || !attempted.get(endpoint.index)))
+                    return endpoint;
+            }
+            return null;
+        }
+        
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(available), b = random.nextInt(available - 1);
+        if (b >= a) b++;
+        Endpoint first = null, second = null;
+        int i = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejected || (attempted != null && attempted.get(endpoint.index))) continue;
+            if (i == a) first = endpoint;
+            if (i == b) second = endpoint;
+            i++;
+        }
+        if (first == null || second == null) // Ejected concurrently
+            return first != null ? first : second;
+        return first.cost(now) <= second.cost(now) ? first : second;
+    }
+    
+    private boolean isReadOnly(String action) {
+        return action != null && readOnlyActions.contains(action);
+    }
+    
+    private Endpoint getEndpoint(URL address) {
+        if (address == null)
+            throw new IllegalArgumentException("Address cannot be null.");
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.address.toString().equals(address.toString()))
+                return endpoint;
+        }
+        throw new IllegalArgumentException("Address is not a node of this executor.");
+    }
+    
+    private ExecutorService getAsyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    asyncExecutor = executor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = new Thread(r, "jnano-load-balancer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+    
+    
+    /** A single request, which may be sent to multiple nodes through failover or hedging. */
+    private final class Exchange {
+        final String request;
+        final int timeout, maxAttempts;
+        final LatencyTracker tracker;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final BitSet attempted = new BitSet(); // Following fields are guarded by the instance lock
+        final List<CompletableFuture<String>> calls = new ArrayList<>(2);
+        int attempts, inFlight;
+        boolean hedged;
+        
+        Exchange(String request, int timeout, int maxAttempts, LatencyTracker tracker) {
+            this.request = request;
+            this.timeout = timeout;
+            this.maxAttempts = maxAttempts;
+            this.tracker = tracker;
+            result.whenComplete((r, ex) -> cancelCalls());
+        }
+        
+        /** Cancels the outstanding calls to all nodes. */
+        synchronized void cancelCalls() {
+            for (CompletableFuture<String> call : calls)
+                call.cancel(true);
+        }
+        
+        void start(Endpoint endpoint, boolean hedge) {
+            synchronized (this) {
+                if (!hedge) attempts++;
+                inFlight++;
+                attempted.set(endpoint.index);
+            }
+            long start = endpoint.begin();
+            CompletableFuture<String> call = execute(endpoint.address, request, timeout);
+            synchronized (this) {
+                calls.add(call);
+            }
+            if (result.isDone()) call.cancel(true);
+            call.whenComplete((response, ex) -> complete(endpoint, start, response, ex));
+        }
+        
+        void hedge() {
+            if (result.isDone()) return;
+            Endpoint endpoint;
+            synchronized (this) {
+                if (hedged || inFlight != 1) return;
+                endpoint = select(attempted);
+                if (endpoint == null || !hedgeBudget.withdraw()) return;
+                hedged = true;
+            }
+            hedges.increment();
+            start(endpoint, true);
+        }
+        
+        void complete(Endpoint endpoint, long start, String response, Throwable ex) {
+            synchronized (this) {
+                inFlight--;
+            }
+            if (ex == null) {
+                endpoint.end(start, true);
+                if (tracker != null) tracker.record(System.nanoTime() - start);
+                cancelCalls(); // Cancel the losing call before the response is observed
+                result.complete(response);
+                return;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (!(cause instanceof IOException)) {
+                endpoint.release(); // Cancelled or unhandled, not a node failure
+                if (!(cause instanceof CancellationException)) // Calls are only cancelled once the result is known
+                    result.completeExceptionally(cause);
+                return;
+            }
+            endpoint.end(start, false);
+            Endpoint retry = null;
+            synchronized (this) {
+                if (result.isDone()) return;
+                if (attempts < maxAttempts) retry = select(attempted);
+                if (retry == null && inFlight > 0) return; // Wait for the other call
+            }
+            if (retry != null) {
+                start(retry, false);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        }
+    }
+    
+    /** A ring buffer of the recent latencies of a single action. */
+    private static final class LatencyTracker {
+        final long[] samples = new long[LATENCY_SAMPLES], sorted = new long[LATENCY_SAMPLES];
+        int count, next, sinceUpdate;
+        double percentile;
+        long value = -1;
+        
+        synchronized void record(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+            sinceUpdate++;
+        }
+        
+        /** Returns the latency at the given percentile in nanoseconds, or -1 if there are too few samples. */
+        synchronized long percentile(double percentile) {
+            if (count < MIN_LATENCY_SAMPLES) return -1;
+            if (value < 0 || sinceUpdate >= PERCENTILE_INTERVAL || percentile != this.percentile) {
+                System.arraycopy(samples, 0, sorted, 0, count);
+                Arrays.sort(sorted, 0, count);
+                value = sorted[Math.min(count - 1, (int)(percentile / 100 * count))];
+                this.percentile = percentile;
+                sinceUpdate = 0;
+            }
+            return value;
+        }
+    }
+    
+    /** Limits hedged requests to a fraction of all read-only requests. */
+    private static final class HedgeBudget {
+        double tokens;
+        
+        synchronized void deposit(double amount) {
+            tokens = Math.min(tokens + amount, HEDGE_BURST);
+        }
+        
+        synchronized boolean withdraw() {
+            if (tokens < 1) return false;
+            tokens--;
+            return true;
+        }
+    }
+    
+    /** The state of a single node. Latency and failure fields are guarded by the instance lock. */
+    private final class Endpoint {
+        final URL address;
+        final int index;
+        final AtomicInteger pending = new AtomicInteger();
+        volatile boolean ejected;
+        double latency; // Peak-EWMA in nanoseconds
+        long lastUpdate = System.nanoTime();
+        int failures;
+        long ejectionTime, probeAt;
+        boolean probing;
+        
+        Endpoint(URL address, int index) {
+            this.address = address;
+            this.index = index;
+        }
+        
+        long begin() {
+            pending.incrementAndGet();
+            return System.nanoTime();
+        }
+        
+        /** Releases a request which was cancelled or failed for reasons unrelated to the node. */
+        void release() {
+            pending.decrementAndGet();
+        }
+        
+        void end(long start, boolean success) {
+            pending.decrementAndGet();
+            long now = System.nanoTime();
+            synchronized (this) {
+                if (success) {
+                    failures = 0;
+                    observe(now, now - start);
+                } else if (++failures >= failureThreshold && !ejected) {
+                    eject(now, minEjectionTime);
+                }
+            }
+        }
+        
+        /** Returns the expected cost of a new request, decaying the latency since it was last observed. */
+        synchronized double cost(long now) {
+            observe(now, 0);
+            int outstanding = pending.get();
+            if (latency == 0 && outstanding > 0)
+                return PENALTY + outstanding;
+            return latency * (outstanding + 1);
+        }
+        
+        void observe(long now, double rtt) {
+            long elapsed = Math.max(now - lastUpdate, 0);
+            lastUpdate = now;
+            if (rtt > latency) {
+                latency = rtt; // Peak sensitivity, react to latency spikes immediately
+            } else {
+                double weight = Math.exp(-(double)elapsed / decayTime);
+                latency = latency * weight + rtt * (1 - weight);
+            }
+        }
+        
+        void eject(long now, long period) {
+            ejected = true;
+            ejectionTime = period;
+            probeAt = now + period;
+        }
+        
+        void probeIfDue(long now) {
+            synchronized (this) {
+                if (probing || !ejected || now - probeAt < 0) return;
+                probing = true;
+            }
+            long start = System.nanoTime();
+            execute(address, PROBE_REQUEST, PROBE_TIMEOUT).whenComplete((response, ex) -> {
+                long end = System.nanoTime();
+                synchronized (this) {
+                    probing = false;
+                    if (ex == null) {
+                        failures = 0;
+                        latency = end - start;
+                        lastUpdate = end;
+                        ejected = false;
+                    } else {
+                        eject(end, Math.min(Math.max(ejectionTime * 2, 1), maxEjectionTime));
+                    }
+                }
+            });
+        }
+    }
+    
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * <p>An implementation of {@link RpcRequestExecutor} which submits requests through a shared {@link HttpClient}
+ * instance, re-using persistent (keep-alive) connections between requests. Requests may also be submitted
+ * asynchronously through {@link #submitAsync(URL, String, int)}, which uses non-blocking I/O and does not occupy a
+ * thread while waiting for the response.</p>
+ *
+ * <p>Unlike {@link HttpRequestExecutor}, this class limits the number of concurrent connections opened to each node
+ * endpoint. Requests which exceed this limit will be queued until an existing connection becomes available, up to the
+ * specified request timeout. The timeout also applies to reading the response body, so responses are only streamed
+ * through {@link #submitStream(URL, String, int)} when no timeout is specified. Response bodies are read as raw bytes
+ * and decoded as UTF-8.</p>
+ *
+ * <p>Instances of this class are thread-safe, and should be shared between requests (and nodes) so that connections
+ * may be re-used. The idle lifetime of pooled connections is governed by the {@code jdk.httpclient.keepalive.timeout}
+ * system property.</p>
+ */
+public class PooledHttpRequestExecutor implements AsyncRpcRequestExecutor {
+    
+    /** The default maximum number of concurrent connections per node endpoint. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    
+    private final HttpClient client;
+    private final int maxConnections;
+    private final Map<String, EndpointLimiter> connectionLimits = new ConcurrentHashMap<>();
+    
+    
+    /**
+     * Constructs a new executor with up to {@value #DEFAULT_MAX_CONNECTIONS} connections per node endpoint.
+     */
+    public PooledHttpRequestExecutor() {
+        this(DEFAULT_MAX_CONNECTIONS);
+    }
+    
+    /**
+     * Constructs a new executor with the given connection limit.
+     * @param maxConnections the maximum number of concurrent connections per node endpoint
+     */
+    public PooledHttpRequestExecutor(int maxConnections) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build(), maxConnections);
+    }
+    
+    /**
+     * Constructs a new executor from an existing {@link HttpClient} with the given connection limit.
+     * @param client         the HTTP client used to submit requests
+     * @param maxConnections the maximum number of concurrent connections per node endpoint
+     */
+    public PooledHttpRequestExecutor(HttpClient client, int maxConnections) {
+        if (client == null)
+            throw new IllegalArgumentException("HTTP client cannot be null.");
+        if (maxConnections < 1)
+            throw new IllegalArgumentException("Maximum connections must be at least 1.");
+        
+        this.client = client;
+        this.maxConnections = maxConnections;
+    }
+    
+    
+    /**
+     * @return the HTTP client used to submit requests
+     */
+    public final HttpClient getClient() {
+        return client;
+    }
+    
+    /**
+     * @return the maximum number of concurrent connections per node endpoint
+     */
+    public final int getMaxConnections() {
+        return maxConnections;
+    }
+    
+    
+    @Override
+    public String submit(URL address, String request, int timeout) throws IOException {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be positive or zero.");
+        HttpRequest.Builder httpRequest = buildRequest(address, request);
+        EndpointLimiter limiter = getLimiter(address);
+        
+        long startTime = System.nanoTime();
+        acquirePermit(limiter, timeout);
+        
+        // Submit request
+        try {
+            CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(
+                    withTimeout(httpRequest, startTime, timeout), HttpResponse.BodyHandlers.ofByteArray());
+            return readResponse(awaitResponse(exchange, startTime, timeout));
+        } finally {
+            limiter.release();
+        }
+    }
+    
+    @Override
+    public Reader submitStream(URL address, String request, int timeout) throws IOException {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be positive or zero.");
+        if (timeout > 0) {
+            // The HttpClient timeout only covers the response headers, so buffer the body within the deadline
+            return new StringReader(submit(address, request, timeout));
+        }
+        HttpRequest.Builder httpRequest = buildRequest(address, request);
+        EndpointLimiter limiter = getLimiter(address);
+        acquirePermit(limiter, 0);
+        
+        // Submit request (permit is released once the response stream is closed)
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(httpRequest.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            limiter.release();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response.");
+        } catch (IOException | RuntimeException e) {
+            limiter.release();
+            throw e;
+        }
+        InputStream body = new FilterInputStream(response.body()) {
+            private boolean closed = false;
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        limiter.release();
+                    }
+                }
+            }
+        };
+        if (response.statusCode() >= 400) {
+            body.close();
+            throw new IOException("Server returned HTTP response code: " + response.statusCode());
+        }
+        return new InputStreamReader(body, StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public CompletableFuture<String> submitAsync(URL address, String request, int timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be positive or zero.");
+        HttpRequest.Builder httpRequest = buildRequest(address, request);
+        EndpointLimiter limiter = getLimiter(address);
+        
+        // Acquire connection permit
+        long startTime = System.nanoTime();
+        CompletableFuture<Void> permit = limiter.acquire();
+        if (timeout > 0 && !permit.isDone()) {
+            permit.orTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        
+        // Submit request once a permit has been granted
+        CompletableFuture<String> result = new CompletableFuture<>();
+        permit.whenComplete((v, permitEx) -> {
+            if (permitEx != null) {
+                result.completeExceptionally(permitEx instanceof TimeoutException
+                        ? new HttpTimeoutException("Timed out waiting for an available connection.") : permitEx);
+                return;
+            }
+            if (result.isDone()) { // Cancelled while queued
+                limiter.release();
+                return;
+            }
+            CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(
+                    withTimeout(httpRequest, startTime, timeout), HttpResponse.BodyHandlers.ofByteArray());
+            if (timeout > 0) {
+                // Enforce the deadline on the response body, which isn't covered by the HttpClient timeout
+                CompletableFuture.delayedExecutor(remainingTimeout(startTime, timeout).toNanos(),
+                        TimeUnit.NANOSECONDS).execute(() -> {
+                    if (!exchange.isDone() && result.completeExceptionally(
+                            new HttpTimeoutException("Timed out waiting for the response.")))
+                        exchange.cancel(true);
+                });
+            }
+            exchange.whenComplete((response, ex) -> {
+                limiter.release();
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    result.completeExceptionally(cause instanceof IOException ? cause : new IOException(cause));
+                } else {
+                    try {
+                        result.complete(readResponse(response));
+                    } catch (IOException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+            result.whenComplete((r, ex) -> {
+                if (result.isCancelled()) exchange.cancel(true);
+            });
+        });
+        result.whenComplete((r, ex) -> {
+            if (result.isCancelled()) permit.cancel(false);
+        });
+        return result;
+    }
+    
+    /**
+     * Constructs the HTTP request sent to the node. May be overridden to add custom headers.
+     * @param address the network address of the node
+     * @param body    the request body
+     * @return the HTTP request builder
+     */
+    protected HttpRequest.Builder buildRequest(URL address, String body) {
+        if (address == null)
+            throw new IllegalArgumentException("Address cannot be null.");
+        if (!address.getProtocol().equalsIgnoreCase("http") && !address.getProtocol().equalsIgnoreCase("https"))
+            throw new IllegalArgumentException(
+                    "PooledHttpRequestExecutor only supports the 'HTTP' and 'HTTPS' protocols.");
+        if (body == null)
+            throw new IllegalArgumentException("Request body cannot be null.");
+        
+        try {
+            return HttpRequest.newBuilder(address.toURI())
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Address is not a valid URI.", e);
+        }
+    }
+    
+    
+    /** Returns the connection limiter for the given node endpoint. */
+    EndpointLimiter getLimiter(URL address) {
+        String key = address.getProtocol().toLowerCase() + "://" + address.getAuthority();
+        return connectionLimits.computeIfAbsent(key, k -> new EndpointLimiter(maxConnections));
+    }
+    
+    /** Blocks until a connection permit has been acquired from the limiter. */
+    static void acquirePermit(EndpointLimiter limiter, int timeout) throws IOException {
+        CompletableFuture<Void> permit = limiter.acquire();
+        try {
+            if (timeout > 0) {
+                permit.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                permit.get();
+            }
+        } catch (TimeoutException e) {
+            if (permit.cancel(false))
+                throw new HttpTimeoutException("Timed out waiting for an available connection.");
+        } catch (InterruptedException e) {
+            if (permit.cancel(false)) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an available connection.");
+            }
+            Thread.currentThread().interrupt(); // Permit was granted concurrently, so continue
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e); // Shouldn't happen
+        }
+    }
+    
+    /** Applies the remaining timeout to the request, and builds it. */
+    static HttpRequest withTimeout(HttpRequest.Builder httpRequest, long startNanos, int timeout) {
+        if (timeout > 0)
+            httpRequest.timeout(remainingTimeout(startNanos, timeout));
+        return httpRequest.build();
+    }
+    
+    /**
+     * Blocks until the full response has been received. Unlike the timeout of the HttpClient (which only applies
+     * until the response headers are received), the deadline also applies to reading the response body.
+     */
+    static <T> HttpResponse<T> awaitResponse(CompletableFuture<HttpResponse<T>> exchange, long startNanos,
+                                             int timeout) throws IOException {
+        try {
+            return timeout > 0
+                    ? exchange.get(remainingTimeout(startNanos, timeout).toNanos(), TimeUnit.NANOSECONDS)
+                    : exchange.get();
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            throw new HttpTimeoutException("Timed out waiting for the response.");
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException)cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new IOException(cause);
+        }
+    }
+    
+    /** Returns the time remaining from the original timeout, after waiting for a connection. */
+    static Duration remainingTimeout(long startNanos, int timeout) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - startNanos);
+        return Duration.ofNanos(Math.max(remaining, TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+    
+    /** Validates the status code and decodes the response body. */
+    static String readResponse(HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() >= 400)
+            throw new IOException("Server returned HTTP response code: " + response.statusCode());
+        return new String(response.body(), StandardCharsets.UTF_8);
+    }
+    
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.exception.RpcInvalidResponseException;
+import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
+import uk.oczadly.karl.jnano.rpc.request.node.*;
+import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * <p>This class coalesces concurrent single-entity requests into their equivalent multi-entity request, reducing the
+ * number of round trips made to the node. Batching is enabled by assigning an instance of this class through
+ * {@link RpcQueryNode.Builder#setRequestBatcher(RequestBatcher)}, and requires no changes to existing call sites.</p>
+ *
+ * <p>Requests are collected for up to the configured time window (starting from the first request of a batch), or
+ * until the maximum batch size is reached, and are then submitted as a single request. The results are distributed
+ * back to the future of each individual request. The following requests are currently supported:</p>
+ * <table summary="Supported requests">
+ *     <thead><tr><th>Request</th><th>Batched as</th></tr></thead>
+ *     <tbody>
+ *         <tr><td>{@link RequestAccountBalance}</td><td>{@link RequestMultiAccountBalances}</td></tr>
+ *         <tr><td>{@link RequestPending}</td><td>{@link RequestMultiAccountsPending}</td></tr>
+ *         <tr><td>{@link RequestBlockInfo}</td><td>{@link RequestMultiBlocksInfo}</td></tr>
+ *     </tbody>
+ * </table>
+ *
+ * <p>Requests of other types are processed as normal. If the node returns an error for the batched request (or omits
+ * an entity from the results), then the affected requests are re-submitted individually, so that each request
+ * receives its own response or error.</p>
+ */
+public final class RequestBatcher {
+    
+    /** The default maximum number of requests per batch. */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    
+    /** The default time window in milliseconds to collect requests for. */
+    public static final int DEFAULT_WINDOW = 2;
+    
+    private final int maxBatchSize, window;
+    private final Map<BatchKey, Batch> pending = new HashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+    
+    
+    /**
+     * Constructs a request batcher with the default batch size ({@value #DEFAULT_MAX_BATCH_SIZE}) and time window
+     * ({@value #DEFAULT_WINDOW} milliseconds).
+     */
+    public RequestBatcher() {
+        this(DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW);
+    }
+    
+    /**
+     * @param maxBatchSize the maximum number of requests per batch
+     * @param window       the time window in milliseconds to collect requests for
+     */
+    public RequestBatcher(int maxBatchSize, int window) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Maximum batch size must be at least 1.");
+        if (window < 0)
+            throw new IllegalArgumentException("Time window must be positive or zero.");
+        
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+    }
+    
+    
+    /**
+     * @return the maximum number of requests per batch
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+    
+    /**
+     * @return the time window in milliseconds which requests are collected for
+     */
+    public int getWindow() {
+        return window;
+    }
+    
+    
+    /**
+     * Queues the request to be submitted in a batch.
+     * @return the future of the request, or null if the request cannot be batched
+     */
+    <R extends RpcResponse> CompletableFuture<R> submit(RpcQueryNode node, RpcRequest<R> request, int timeout) {
+        Coalescer coalescer = Coalescer.forRequest(request);
+        if (coalescer == null) return null;
+        String entity = coalescer.entity(request);
+        if (entity == null) return null; // Let the node report invalid parameters
+        
+        BatchKey key = new BatchKey(node, coalescer, coalescer.params(request), timeout);
+        Entry<R> entry = new Entry<>(entity, request);
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                pending.put(key, batch = new Batch(key, request));
+                if (maxBatchSize > 1) {
+                    Batch newBatch = batch;
+                    getScheduler().schedule(() -> flush(newBatch), window, TimeUnit.MILLISECONDS);
+                }
+            }
+            batch.entries.add(entry);
+            if (batch.entries.size() >= maxBatchSize) {
+                pending.remove(key);
+                full = batch;
+            }
+        }
+        if (full != null)
+            dispatch(full);
+        return entry.future;
+    }
+    
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (!pending.remove(batch.key, batch))
+                return; // Already dispatched
+        }
+        dispatch(batch);
+    }
+    
+    private void dispatch(Batch batch) {
+        RpcQueryNode node = batch.key.node;
+        if (batch.entries.size() == 1) {
+            submitIndividually(node, batch.entries.get(0), batch.key.timeout);
+            return;
+        }
+        
+        // Submit combined request (measured as a single request of the combined action)
+        Set<String> entities = new LinkedHashSet<>();
+        for (Entry<?> entry : batch.entries)
+            entities.add(entry.entity);
+        RpcMetricsSink metrics = node.getMetricsSink();
+        long start = System.nanoTime(), serialized = start;
+        String action = null, requestJson = null;
+        CompletableFuture<String> exchange;
+        try {
+            RpcRequest<?> multiRequest = batch.key.coalescer.combine(batch.sample, entities);
+            action = multiRequest.getActionCommand();
+            if (metrics != null) metrics.requestStarted(action);
+            requestJson = node.getRequestSerializer().serialize(multiRequest);
+            serialized = System.nanoTime();
+            exchange = node.processRequestRawAsync(requestJson, batch.key.timeout);
+        } catch (RuntimeException ex) {
+            RpcException rpcEx = new RpcException("An unhandled exception occured.", ex);
+            if (metrics != null && action != null) {
+                metrics.requestCompleted(action, System.nanoTime() - start, 0, 0,
+                        requestJson != null ? requestJson.length() : -1, -1, rpcEx);
+            }
+            completeAll(batch, rpcEx);
+            return;
+        }
+        String measuredAction = action;
+        long serializeTime = serialized - start, sent = serialized;
+        int requestSize = requestJson.length();
+        
+        exchange.whenComplete((response, ex) -> {
+            long received = System.nanoTime();
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (metrics != null) {
+                    metrics.requestCompleted(measuredAction, serializeTime, received - sent, 0,
+                            requestSize, -1, cause);
+                }
+                completeAll(batch, cause);
+                return;
+            }
+            
+            // Parse combined response
+            Map<String, JsonElement> results;
+            Throwable error = null;
+            try {
+                JsonObject json = JsonParser.parseString(response).getAsJsonObject();
+                JsonElement errorElement = json.get("error");
+                if (errorElement != null) {
+                    results = null;
+                    error = JsonResponseDeserializer.createException(
+                            errorElement.isJsonPrimitive() ? errorElement.getAsString() : errorElement.toString());
+                } else {
+                    results = batch.key.coalescer.split(json);
+                }
+            } catch (JsonParseException | IllegalStateException e) {
+                RpcException rpcEx = new RpcInvalidResponseException(response,
+                        e instanceof JsonParseException ? (JsonParseException)e : new JsonParseException(e));
+                if (metrics != null) {
+                    metrics.requestCompleted(measuredAction, serializeTime, received - sent,
+                            System.nanoTime() - received, requestSize, response.length(), rpcEx);
+                }
+                completeAll(batch, rpcEx);
+                return;
+            }
+            if (metrics != null) {
+                metrics.requestCompleted(measuredAction, serializeTime, received - sent,
+                        System.nanoTime() - received, requestSize, response.length(), error);
+            }
+            
+            // Distribute results
+            for (Entry<?> entry : batch.entries) {
+                JsonElement result = results != null ? batch.key.coalescer.extract(results, entry.entity) : null;
+                if (result != null) {
+                    complete(node, entry, result);
+                } else {
+                    submitIndividually(node, entry, batch.key.timeout); // Error or missing, resolve individually
+                }
+            }
+        });
+    }
+    
+    private static <R extends RpcResponse> void complete(RpcQueryNode node, Entry<R> entry, JsonElement result) {
+        try {
+            entry.future.complete(node.deserializeResponse(result.toString(), entry.request.getResponseClass()));
+        } catch (RpcException e) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+    
+    private static <R extends RpcResponse> void submitIndividually(RpcQueryNode node, Entry<R> entry, int timeout) {
+        node.submitAsync(entry.request, timeout).whenComplete((r, ex) -> {
+            if (ex != null) {
+                entry.future.completeExceptionally(
+                        ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                entry.future.complete(r);
+            }
+        });
+    }
+    
+    private static void completeAll(Batch batch, Throwable ex) {
+        for (Entry<?> entry : batch.entries)
+            entry.future.completeExceptionally(ex);
+    }
+    
+    private ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                scheduler = this.scheduler;
+                if (scheduler == null) {
+                    this.scheduler = scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "jnano-request-batcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+    
+    
+    /**
+     * Waits for the result of a future, unwrapping any exceptions thrown.
+     */
+    static <R> R await(CompletableFuture<R> future) throws IOException, RpcException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException)cause;
+            if (cause instanceof RpcException) throw (RpcException)cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new RpcException("An unhandled exception occured.", cause);
+        }
+    }
+    
+    
+    /** Defines how requests of a single-entity type are combined, and how the results are distributed. */
+    private enum Coalescer {
+        ACCOUNT_BALANCE {
+            @Override
+            String entity(RpcRequest<?> request) {
+                return accountKey(((RequestAccountBalance)request).getAccount());
+            }
+            
+            @Override
+            RpcRequest<?> combine(RpcRequest<?> sample, Collection<String> entities) {
+                return new RequestMultiAccountBalances(entities.toArray(new String[0]));
+            }
+            
+            @Override
+            Map<String, JsonElement> split(JsonObject response) {
+                return splitByAccount(response.get("balances"));
+            }
+        },
+        
+        PENDING {
+            @Override
+            String entity(RpcRequest<?> request) {
+                return accountKey(((RequestPending)request).getAccount());
+            }
+            
+            @Override
+            String params(RpcRequest<?> request) {
+                RequestPending req = (RequestPending)request;
+                return req.getCount() + "," + req.getThreshold() + "," + req.getIncludeActive() + ","
+                        + req.getSorting() + "," + req.getIncludeOnlyConfirmed();
+            }
+            
+            @Override
+            RpcRequest<?> combine(RpcRequest<?> sample, Collection<String> entities) {
+                RequestPending req = (RequestPending)sample;
+                return new RequestMultiAccountsPending(entities.toArray(new String[0]), req.getCount(),
+                        req.getThreshold(), req.getIncludeActive(), req.getSorting(), req.getIncludeOnlyConfirmed());
+            }
+            
+            @Override
+            Map<String, JsonElement> split(JsonObject response) {
+                return splitByAccount(response.get("blocks"));
+            }
+            
+            @Override
+            JsonElement extract(Map<String, JsonElement> results, String entity) {
+                JsonObject single = new JsonObject();
+                JsonElement blocks = results.get(entity);
+                single.addProperty("blocks", ""); // Omitted accounts have no pending blocks
+                if (blocks != null)
+                    single.add("blocks", blocks);
+                return single;
+            }
+        },
+        
+        BLOCK_INFO {
+            @Override
+            String entity(RpcRequest<?> request) {
+                String hash = ((RequestBlockInfo)request).getBlockHash();
+                return hash != null && JNH.isValidHex(hash, 64) ? hash.toUpperCase() : null;
+            }
+            
+            @Override
+            RpcRequest<?> combine(RpcRequest<?> sample, Collection<String> entities) {
+                return new RequestMultiBlocksInfo(true, entities.toArray(new String[0]));
+            }
+            
+            @Override
+            Map<String, JsonElement> split(JsonObject response) {
+                Map<String, JsonElement> results = new HashMap<>();
+                JsonElement blocks = response.get("blocks");
+                if (blocks != null && blocks.isJsonObject()) {
+                    for (Map.Entry<String, JsonElement> block : blocks.getAsJsonObject().entrySet())
+                        results.put(block.getKey().toUpperCase(), block.getValue());
+                }
+                return results;
+            }
+        };
+        
+        
+        /** @return the normalized entity identifier, or null if invalid */
+        abstract String entity(RpcRequest<?> request);
+        
+        /** @return the additional parameters which must match for requests to be combined */
+        String params(RpcRequest<?> request) {
+            return "";
+        }
+        
+        /** @return the multi-entity request for the given entities */
+        abstract RpcRequest<?> combine(RpcRequest<?> sample, Collection<String> entities);
+        
+        /** @return the per-entity results of the combined response */
+        abstract Map<String, JsonElement> split(JsonObject response);
+        
+        /** @return the single-entity response JSON, or null if not present */
+        JsonElement extract(Map<String, JsonElement> results, String entity) {
+            return results.get(entity);
+        }
+        
+        
+        static Coalescer forRequest(RpcRequest<?> request) {
+            // Exact class matches only, as subclasses may specify additional parameters
+            if (request.getClass() == RequestAccountBalance.class) return ACCOUNT_BALANCE;
+            if (request.getClass() == RequestPending.class) return PENDING;
+            if (request.getClass() == RequestBlockInfo.class) return BLOCK_INFO;
+            return null;
+        }
+        
+        static String accountKey(String account) {
+            if (account == null) return null;
+            try {
+                return NanoAccount.parse(account).toPublicKey();
+            } catch (NanoAccount.AddressFormatException e) {
+                return null;
+            }
+        }
+        
+        static Map<String, JsonElement> splitByAccount(JsonElement element) {
+            Map<String, JsonElement> results = new HashMap<>();
+            if (element != null && element.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> account : element.getAsJsonObject().entrySet()) {
+                    String key = accountKey(account.getKey());
+                    if (key != null)
+                        results.put(key, account.getValue());
+                }
+            }
+            return results;
+        }
+    }
+    
+    private static final class BatchKey {
+        final RpcQueryNode node;
+        final Coalescer coalescer;
+        final String params;
+        final int timeout;
+        
+        BatchKey(RpcQueryNode node, Coalescer coalescer, String params, int timeout) {
+            this.node = node;
+            this.coalescer = coalescer;
+            this.params = params;
+            this.timeout = timeout;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BatchKey)) return false;
+            BatchKey that = (BatchKey)o;
+            return node == that.node && timeout == that.timeout && coalescer == that.coalescer
+                    && params.equals(that.params);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(node), coalescer, params, timeout);
+        }
+    }
+    
+    private static final class Batch {
+        final BatchKey key;
+        final RpcRequest<?> sample;
+        final List<Entry<?>> entries = new ArrayList<>();
+        
+        Batch(BatchKey key, RpcRequest<?> sample) {
+            this.key = key;
+            this.sample = sample;
+        }
+    }
+    
+    private static final class Entry<R extends RpcResponse> {
+        final String entity;
+        final RpcRequest<R> request;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        
+        Entry(String entity, RpcRequest<R> request) {
+            this.entity = entity;
+            this.request = request;
+        }
+    }
+    
+}
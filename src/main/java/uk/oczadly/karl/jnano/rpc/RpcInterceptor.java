@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
+import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * <p>Intercepts the requests processed by an {@link RpcQueryNode}. Interceptors are registered through
+ * {@link RpcQueryNode.Builder#addInterceptor(RpcInterceptor)}, and are invoked in the order they were added, with each
+ * interceptor wrapping the remainder of the chain. The end of the chain batches (if enabled), serializes, executes
+ * and deserializes the request.</p>
+ *
+ * <p>An interceptor may pass the request (or a replacement request with the same response type) to the rest of the
+ * chain through {@link Chain#proceed(RpcRequest, int)}, return a response without proceeding (such as a cached
+ * response), proceed multiple times (such as to retry failed requests), or inspect the request, response and timing
+ * of the call. The chain objects are created once per query node, so interceptors don't cause any allocations beyond
+ * their own.</p>
+ *
+ * <p>Below is an example of an interceptor which retries requests once after a connection error:</p>
+ * <pre>{@code
+ *  public class RetryInterceptor implements RpcInterceptor {
+ *      @Override
+ *      public <R extends RpcResponse> R intercept(RpcRequest<R> request, int timeout, Chain chain)
+ *              throws IOException, RpcException {
+ *          try {
+ *              return chain.proceed(request, timeout);
+ *          } catch (IOException e) {
+ *              return chain.proceed(request, timeout);
+ *          }
+ *      }
+ *  }
+ * }</pre>
+ *
+ * <p>Implementations must be thread-safe.</p>
+ */
+public interface RpcInterceptor {
+    
+    /**
+     * Intercepts a request which is being processed synchronously.
+     *
+     * @param request the request
+     * @param timeout the timeout for the request in milliseconds, or zero for infinite
+     * @param chain   the remainder of the chain
+     * @param <R>     the response type
+     * @return the response to the request
+     *
+     * @throws IOException  if an error occurs with the connection to the node
+     * @throws RpcException if the node returns a non-successful response
+     */
+    <R extends RpcResponse> R intercept(RpcRequest<R> request, int timeout, Chain chain)
+            throws IOException, RpcException;
+    
+    /**
+     * Intercepts a request which is being processed asynchronously. The returned future should be completed
+     * exceptionally with any {@link IOException} or {@link RpcException} exceptions.
+     *
+     * <p>The default implementation calls {@link #intercept(RpcRequest, int, Chain)} on a dedicated thread pool of the
+     * query node, separate from its executor service so that blocking interceptors cannot starve the tasks they wait
+     * on. Interceptors should override this method to avoid blocking a thread for each request, for example by
+     * returning {@code chain.proceedAsync(request, timeout)} with any additional stages.</p>
+     *
+     * @param request the request
+     * @param timeout the timeout for the request in milliseconds, or zero for infinite
+     * @param chain   the remainder of the chain
+     * @param <R>     the response type
+     * @return a future which will be completed with the response to the request
+     */
+    default <R extends RpcResponse> CompletableFuture<R> interceptAsync(RpcRequest<R> request, int timeout,
+                                                                          Chain chain) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return intercept(request, timeout, chain);
+            } catch (IOException | RpcException e) {
+                throw new CompletionException(e);
+            }
+        }, chain.getNode().getInterceptorExecutor());
+    }
+    
+    
+    /**
+     * The remainder of an interceptor chain, which is passed to each interceptor.
+     */
+    interface Chain {
+        /**
+         * @return the query node which is processing the request
+         */
+        RpcQueryNode getNode();
+        
+        /**
+         * Passes the request to the next interceptor, or processes the request if this is the end of the chain.
+         *
+         * @param request the request, which may differ from the intercepted request
+         * @param timeout the timeout for the request in milliseconds, or zero for infinite
+         * @param <R>     the response type
+         * @return the response to the request
+         *
+         * @throws IOException  if an error occurs with the connection to the node
+         * @throws RpcException if the node returns a non-successful response
+         */
+        <R extends RpcResponse> R proceed(RpcRequest<R> request, int timeout) throws IOException, RpcException;
+        
+        /**
+         * Passes the request to the next interceptor asynchronously, or processes the request if this is the end of
+         * the chain.
+         *
+         * @param request the request, which may differ from the intercepted request
+         * @param timeout the timeout for the request in milliseconds, or zero for infinite
+         * @param <R>     the response type
+         * @return a future which will be completed with the response to the request
+         */
+        <R extends RpcResponse> CompletableFuture<R> proceedAsync(RpcRequest<R> request, int timeout);
+    }
+    
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>An in-memory implementation of {@link RpcMetricsSink}, which aggregates the measurements of each action into
+ * latency histograms for the serialize, transport and deserialize phases, along with request and response sizes,
+ * in-flight requests and error counts for each exception class.</p>
+ *
+ * <p>Measurements are recorded without locking, using log-linear histograms with a relative precision of 12.5%.
+ * Values are cumulative from when the instance was created, and {@link #getSnapshot()} returns an immutable copy
+ * which is cheap enough to poll frequently (for example, to export the difference between successive snapshots to
+ * a monitoring system).</p>
+ *
+ * <p>Below is an example which prints the 99th percentile transport latency of each action:</p>
+ * <pre>{@code
+ *  RpcMetrics metrics = new RpcMetrics();
+ *  RpcQueryNode node = new RpcQueryNode.Builder().setMetricsSink(metrics).build();
+ *  // ...
+ *  for (RpcMetrics.ActionSnapshot action : metrics.getSnapshot().values())
+ *      System.out.println(action.getAction() + ": " + action.getTransportLatency().getPercentile(99) + "ns");
+ * }</pre>
+ */
+public class RpcMetrics implements RpcMetricsSink {
+    
+    private static final int SUB_BUCKET_BITS = 3, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // Values above 2^41 nanoseconds (~36 minutes) are clamped
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    
+    private final ConcurrentMap<String, ActionMetrics> actions = new ConcurrentHashMap<>();
+    
+    
+    @Override
+    public void requestStarted(String action) {
+        getMetrics(action).inFlight.increment();
+    }
+    
+    @Override
+    public void requestCompleted(String action, long serializeNanos, long transportNanos, long deserializeNanos,
+                                 long requestSize, long responseSize, Throwable error) {
+        ActionMetrics metrics = getMetrics(action);
+        metrics.inFlight.decrement();
+        metrics.serialize.record(serializeNanos);
+        metrics.transport.record(transportNanos);
+        metrics.deserialize.record(deserializeNanos);
+        if (requestSize > 0) metrics.requestSize.add(requestSize);
+        if (responseSize > 0) metrics.responseSize.add(responseSize);
+        if (error != null)
+            metrics.errors.computeIfAbsent(error.getClass(), k -> new LongAdder()).increment();
+    }
+    
+    
+    /**
+     * @return an immutable snapshot of the metrics of each measured action, sorted by action name
+     */
+    public Map<String, ActionSnapshot> getSnapshot() {
+        Map<String, ActionSnapshot> snapshot = new TreeMap<>();
+        for (ActionMetrics metrics : actions.values())
+            snapshot.put(metrics.action, metrics.snapshot());
+        return Collections.unmodifiableMap(snapshot);
+    }
+    
+    /**
+     * @param action the action name
+     * @return an immutable snapshot of the metrics of the action, or null if the action hasn't been requested
+     */
+    public ActionSnapshot getSnapshot(String action) {
+        if (action == null)
+            throw new IllegalArgumentException("Action cannot be null.");
+        ActionMetrics metrics = actions.get(action);
+        return metrics != null ? metrics.snapshot() : null;
+    }
+    
+    /**
+     * Removes all recorded measurements. The in-flight gauges are retained, as they reflect the requests which are
+     * currently being processed rather than past measurements.
+     */
+    public void clear() {
+        actions.replaceAll((action, metrics) -> new ActionMetrics(action, metrics.inFlight));
+    }
+    
+    
+    private ActionMetrics getMetrics(String action) {
+        ActionMetrics metrics = actions.get(action);
+        return metrics != null ? metrics : actions.computeIfAbsent(action, ActionMetrics::new);
+    }
+    
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int)Math.max(value, 0);
+        value = Math.min(value, MAX_VALUE);
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long)(SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+    
+    
+    /** An immutable snapshot of the metrics of a single action. */
+    public static final class ActionSnapshot {
+        private final String action;
+        private final long inFlight, requestSize, responseSize;
+        private final Histogram serialize, transport, deserialize;
+        private final Map<Class<? extends Throwable>, Long> errors;
+        
+        private ActionSnapshot(String action, long inFlight, long requestSize, long responseSize,
+                               Histogram serialize, Histogram transport, Histogram deserialize,
+                               Map<Class<? extends Throwable>, Long> errors) {
+            this.action = action;
+            this.inFlight = inFlight;
+            this.requestSize = requestSize;
+            this.responseSize = responseSize;
+            this.serialize = serialize;
+            this.transport = transport;
+            this.deserialize = deserialize;
+            this.errors = errors;
+        }
+        
+        /** @return the action name */
+        public String getAction() {
+            return action;
+        }
+        
+        /** @return the number of completed requests, including failed requests */
+        public long getCount() {
+            return transport.getCount();
+        }
+        
+        /** @return the number of requests which are currently being processed */
+        public long getInFlight() {
+            return inFlight;
+        }
+        
+        /** @return the total length of the serialized requests, in characters */
+        public long getRequestSize() {
+            return requestSize;
+        }
+        
+        /** @return the total length of the received responses, in characters */
+        public long getResponseSize() {
+            return responseSize;
+        }
+        
+        /** @return the latencies of serializing the requests */
+        public Histogram getSerializeLatency() {
+            return serialize;
+        }
+        
+        /** @return the latencies of submitting the requests and waiting for the responses */
+        public Histogram getTransportLatency() {
+            return transport;
+        }
+        
+        /** @return the latencies of reading and deserializing the responses */
+        public Histogram getDeserializeLatency() {
+            return deserialize;
+        }
+        
+        /** @return the total number of failed requests */
+        public long getErrorCount() {
+            long count = 0;
+            for (long c : errors.values())
+                count += c;
+            return count;
+        }
+        
+        /** @return the number of failed requests for each exception class (such as {@code RpcException} subclasses) */
+        public Map<Class<? extends Throwable>, Long> getErrors() {
+            return errors;
+        }
+        
+        @Override
+        public String toString() {
+            return "ActionSnapshot{action='" + action + "', count=" + getCount() + ", inFlight=" + inFlight
+                    + ", errors=" + getErrorCount() + ", transportP99=" + transport.getPercentile(99) + "ns}";
+        }
+    }
+    
+    /** An immutable snapshot of a latency histogram, with values measured in nanoseconds. */
+    public static final class Histogram {
+        private final long[] counts;
+        private final long count, sum, max;
+        
+        private Histogram(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+        
+        /** @return the number of recorded values */
+        public long getCount() {
+            return count;
+        }
+        
+        /** @return the sum of the recorded values */
+        public long getSum() {
+            return sum;
+        }
+        
+        /** @return the largest recorded value, or zero if no values were recorded */
+        public long getMax() {
+            return max;
+        }
+        
+        /** @return the mean of the recorded values, or zero if no values were recorded */
+        public double getMean() {
+            return count == 0 ? 0 : (double)sum / count;
+        }
+        
+        /**
+         * Returns the value below which the given percentage of the recorded values fall. The returned value is the
+         * upper bound of the histogram bucket, so may over-estimate the actual value by up to 12.5%.
+         * @param percentile the percentile, between 0 and 100
+         * @return the value at the percentile, or zero if no values were recorded
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count)), seen = 0;
+            for (int i=0; i<counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(max, bucketLowerBound(i + 1) - 1);
+            }
+            return max;
+        }
+    }
+    
+    
+    private static final class ActionMetrics {
+        final String action;
+        final LongAdder inFlight, requestSize = new LongAdder(), responseSize = new LongAdder();
+        final HistogramRecorder serialize = new HistogramRecorder(), transport = new HistogramRecorder(),
+                deserialize = new HistogramRecorder();
+        final ConcurrentMap<Class<? extends Throwable>, LongAdder> errors = new ConcurrentHashMap<>();
+        
+        ActionMetrics(String action) {
+            this(action, new LongAdder());
+        }
+        
+        ActionMetrics(String action, LongAdder inFlight) {
+            this.action = action;
+            this.inFlight = inFlight;
+        }
+        
+        ActionSnapshot snapshot() {
+            Map<Class<? extends Throwable>, Long> errorCounts = new HashMap<>();
+            errors.forEach((type, count) -> errorCounts.put(type, count.sum()));
+            return new ActionSnapshot(action, inFlight.sum(), requestSize.sum(), responseSize.sum(),
+                    serialize.snapshot(), transport.snapshot(), deserialize.snapshot(),
+                    Collections.unmodifiableMap(errorCounts));
+        }
+    }
+    
+    private static final class HistogramRecorder {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final LongAdder count = new LongAdder(), sum = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        
+        void record(long value) {
+            value = Math.max(value, 0);
+            counts.incrementAndGet(bucketIndex(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+        
+        Histogram snapshot() {
+            int length = counts.length();
+            while (length > 0 && counts.get(length - 1) == 0) length--; // Trim unused buckets
+            long[] snapshot = new long[length];
+            long total = 0;
+            for (int i=0; i<length; i++)
+                total += snapshot[i] = counts.get(i);
+            return new Histogram(snapshot, total, sum.sum(), max.get());
+        }
+    }
+    
+}
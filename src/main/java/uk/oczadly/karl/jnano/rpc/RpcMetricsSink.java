@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+/**
+ * <p>Receives measurements of the requests processed by an {@link RpcQueryNode}. A sink can be assigned through
+ * {@link RpcQueryNode.Builder#setMetricsSink(RpcMetricsSink)}, and {@link RpcMetrics} provides an in-memory
+ * implementation which aggregates the measurements into histograms.</p>
+ *
+ * <p>Methods are invoked synchronously on the threads which process the requests, so implementations must be
+ * thread-safe and should return quickly. Only requests submitted through the {@code processRequest} methods are
+ * measured; raw JSON requests are not. Requests combined by a {@link RequestBatcher} are measured once under the
+ * action of the combined request (such as {@code accounts_balances}), and any requests which are re-submitted
+ * individually are measured separately.</p>
+ */
+public interface RpcMetricsSink {
+    
+    /**
+     * Called when a request is submitted, before it is serialized.
+     * @param action the action of the request
+     */
+    void requestStarted(String action);
+    
+    /**
+     * Called once a request has completed, either successfully or with an error.
+     *
+     * <p>The transport phase spans from submitting the request to the node until the response has been received. If
+     * the configured executor streams the response, the time spent waiting for the response body while it is being
+     * read is also counted towards the transport phase, so the deserialize phase only measures parsing.</p>
+     *
+     * @param action           the action of the request
+     * @param serializeNanos   the time spent serializing the request, in nanoseconds
+     * @param transportNanos   the time spent submitting the request and waiting for the response, in nanoseconds
+     * @param deserializeNanos the time spent reading and deserializing the response, in nanoseconds
+     * @param requestSize      the length of the request JSON in characters, or -1 if serialization failed
+     * @param responseSize     the length of the response JSON in characters, or -1 if no response was received
+     * @param error            the exception which caused the request to fail, or null if the request was successful
+     */
+    void requestCompleted(String action, long serializeNanos, long transportNanos, long deserializeNanos,
+                          long requestSize, long responseSize, Throwable error);
+    
+}
@@ -10,12 +10,15 @@ import uk.oczadly.karl.jnano.rpc.exception.RpcException;
 import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
 import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
 
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * <p>This class represents a connection to a specified Nano node endpoint, with the main purpose of sending and
@@ -28,8 +31,10 @@ import java.util.concurrent.Future;
  * the response data.</p>
  *
  * <p>The asynchronous processing methods ({@code processRequestAsync}) support the options to take a callback object
- * ({@link QueryCallback}) as a parameter, or to return a {@link Future} object. Asynchronous requests will be
- * processed on threads issued by the {@link ExecutorService} specified within this class.</p>
+ * ({@link QueryCallback}) as a parameter, or to return a {@link CompletableFuture} object. If the configured request
+ * executor implements {@link AsyncRpcRequestExecutor} (such as {@link PooledHttpRequestExecutor}), asynchronous
+ * requests are submitted using non-blocking I/O. Otherwise, requests will be processed on threads issued by the
+ * {@link ExecutorService} specified within this class.</p>
  *
  * <p>Below is an example of a synchronous query which creates a new account from a provided wallet ID:</p>
  * <pre>{@code
@@ -55,12 +60,19 @@ import java.util.concurrent.Future;
  */
 public class RpcQueryNode {
     
+    private static final long NOT_REACHED = Long.MIN_VALUE;
+    
     private final URL address;
     private final int defaultTimeout;
     private final RpcRequestSerializer requestSerializer;
     private final RpcResponseDeserializer responseDeserializer;
     private final RpcRequestExecutor requestExecutor;
-    private final ExecutorService executorService;
+    private final RequestBatcher batcher;
+    private final boolean virtualThreads;
+    private final RpcMetricsSink metricsSink;
+    private final List<RpcInterceptor> interceptors;
+    private final InterceptorChain[] chains;
+    private volatile ExecutorService executorService, interceptorExecutor;
     
     
     /**
@@ -106,12 +118,13 @@ public class RpcQueryNode {
      * @see Builder
      */
     public RpcQueryNode(URL address) {
-        this(address, 0, null, null, null, null);
+        this(address, 0, null, null, null, null, false, null, null, null);
     }
     
     private RpcQueryNode(URL address, int defaultTimeout, RpcRequestSerializer serializer,
                          RpcResponseDeserializer deserializer, RpcRequestExecutor executor,
-                         ExecutorService executorService) {
+                         ExecutorService executorService, boolean virtualThreads, RequestBatcher batcher,
+                         RpcMetricsSink metricsSink, List<RpcInterceptor> interceptors) {
         if (address == null)
             throw new IllegalArgumentException("Address argument cannot be null.");
         if (defaultTimeout < 0)
@@ -122,7 +135,14 @@ public class RpcQueryNode {
         this.requestSerializer = serializer != null ? serializer : new JsonRequestSerializer();
         this.responseDeserializer = deserializer != null ? deserializer : new JsonResponseDeserializer();
         this.requestExecutor = executor != null ? executor : new HttpRequestExecutor();
-        this.executorService = executorService != null ? executorService : Executors.newFixedThreadPool(250);
+        this.executorService = executorService;
+        this.virtualThreads = virtualThreads;
+        this.batcher = batcher;
+        this.metricsSink = metricsSink;
+        this.interceptors = interceptors != null ? List.copyOf(interceptors) : Collections.emptyList();
+        this.chains = new InterceptorChain[this.interceptors.size() + 1];
+        for (int i=0; i<chains.length; i++)
+            chains[i] = new InterceptorChain(i);
     }
     
     
@@ -163,12 +183,73 @@ public class RpcQueryNode {
     }
     
     /**
+     * Returns the executor service used to process asynchronous queries. If no executor service was specified, then
+     * a default thread pool will be created on the first call to this method.
+     *
      * @return the executor service used to process asynchronous queries
      */
     public final ExecutorService getExecutorService() {
+        ExecutorService executorService = this.executorService;
+        if (executorService == null) {
+            synchronized (this) {
+                executorService = this.executorService;
+                if (executorService == null)
+                    this.executorService = executorService = JNH.newThreadPool(250, virtualThreads);
+            }
+        }
         return executorService;
     }
     
+    /**
+     * Returns the executor used to run blocking interceptors for asynchronous queries. This is kept separate from the
+     * {@link #getExecutorService() executor service}, as an interceptor may block waiting on a task (such as a batch
+     * flush) which requires a thread from that executor.
+     */
+    ExecutorService getInterceptorExecutor() {
+        ExecutorService executor = this.interceptorExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.interceptorExecutor;
+                if (executor == null) {
+                    this.interceptorExecutor = executor = Executors.newCachedThreadPool(r -> {
+                        Thread thread = new Thread(r, "jnano-interceptor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * @return the batcher which coalesces single-entity requests, or null if batching is disabled
+     */
+    public final RequestBatcher getRequestBatcher() {
+        return batcher;
+    }
+    
+    /**
+     * @return true if the default executor service uses virtual threads (where supported by the runtime)
+     */
+    public final boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /**
+     * @return the sink which receives request measurements, or null if metrics are disabled
+     */
+    public final RpcMetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+    
+    /**
+     * @return an unmodifiable list of the interceptors which requests are passed through, in order of invocation
+     */
+    public final List<RpcInterceptor> getInterceptors() {
+        return interceptors;
+    }
+    
     
     /**
      * Sends a query request to the node via RPC with the default timeout.
@@ -211,14 +292,64 @@ public class RpcQueryNode {
         if (timeout < 0)
             throw new IllegalArgumentException("Timeout period must be zero or greater.");
         
+        return chains[0].proceed(request, timeout);
+    }
+    
+    /** Processes the request at the end of the interceptor chain. */
+    private <R extends RpcResponse> R processRequestDirect(RpcRequest<R> request, int timeout)
+            throws IOException, RpcException {
+        if (batcher != null) {
+            CompletableFuture<R> future = batcher.submit(this, request, timeout);
+            if (future != null)
+                return RequestBatcher.await(future);
+        }
+        return processRequestUnbatched(request, timeout);
+    }
+    
+    private <R extends RpcResponse> R processRequestUnbatched(RpcRequest<R> request, int timeout)
+            throws IOException, RpcException {
+        if (metricsSink != null)
+            return processRequestMeasured(request, timeout);
         String requestJsonStr = this.requestSerializer.serialize(request); // Serialise the request into JSON
         return this.processRequestRaw(requestJsonStr, timeout, request.getResponseClass());
     }
     
+    private <R extends RpcResponse> R processRequestMeasured(RpcRequest<R> request, int timeout)
+            throws IOException, RpcException {
+        String action = request.getActionCommand();
+        metricsSink.requestStarted(action);
+        long start = System.nanoTime(), serialized = NOT_REACHED, received = NOT_REACHED;
+        long requestSize = -1;
+        CountingReader responseReader = null;
+        Throwable error = null;
+        try {
+            String requestJson = this.requestSerializer.serialize(request);
+            serialized = System.nanoTime();
+            requestSize = requestJson.length();
+            try (CountingReader reader = new CountingReader(
+                    requestExecutor.submitStream(address, requestJson, timeout))) {
+                responseReader = reader;
+                received = System.nanoTime();
+                return deserializeResponse(reader, request.getResponseClass());
+            }
+        } catch (IOException | RpcException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            if (serialized == NOT_REACHED) serialized = end;
+            if (received == NOT_REACHED) received = end;
+            // Time spent reading the response body is attributed to the transport phase
+            long readTime = responseReader != null ? responseReader.readNanos : 0;
+            metricsSink.requestCompleted(action, serialized - start, received - serialized + readTime,
+                    end - received - readTime, requestSize, responseReader != null ? responseReader.count : -1, error);
+        }
+    }
+    
     
     /**
      * Sends an asynchronous query request to the node via RPC with the default timeout. This method is non-blocking,
-     * and will queue the request up to be processed in a separate worker thread. The returned {@link Future} object
+     * and will queue the request up to be processed asynchronously. The returned {@link CompletableFuture} object
      * should be used to retrieve the status or result of the request at a later time, and will encapsulate any
      * {@link IOException} or {@link RpcException} exceptions thrown during the process.
      *
@@ -230,13 +361,13 @@ public class RpcQueryNode {
      * @see <a href="https://github.com/koczadly/jNano/wiki/Query-requests#command-lookup-table">See the GitHub wiki
      * for a list of supported request operations.</a>
      */
-    public <Q extends RpcRequest<R>, R extends RpcResponse> Future<R> processRequestAsync(Q request) {
+    public <Q extends RpcRequest<R>, R extends RpcResponse> CompletableFuture<R> processRequestAsync(Q request) {
         return this.processRequestAsync(request, defaultTimeout, null);
     }
     
     /**
      * Sends an asynchronous query request to the node via RPC with the specified timeout. This method is non-blocking,
-     * and will queue the request up to be processed in a separate worker thread. The returned {@link Future} object
+     * and will queue the request up to be processed asynchronously. The returned {@link CompletableFuture} object
      * should be used to retrieve the status or result of the request at a later time, and will encapsulate any
      * {@link IOException} or {@link RpcException} exceptions thrown during the process.
      *
@@ -249,15 +380,16 @@ public class RpcQueryNode {
      * @see <a href="https://github.com/koczadly/jNano/wiki/Query-requests#command-lookup-table">See the GitHub wiki
      * for a list of supported request operations.</a>
      */
-    public <Q extends RpcRequest<R>, R extends RpcResponse> Future<R> processRequestAsync(Q request, int timeout) {
+    public <Q extends RpcRequest<R>, R extends RpcResponse> CompletableFuture<R> processRequestAsync(Q request,
+            int timeout) {
         return this.processRequestAsync(request, timeout, null);
     }
     
     
     /**
      * Sends an asynchronous query request to the node via RPC with the default timeout. This method is non-blocking,
-     * and will queue the request up to be processed in a separate worker thread. In conjunction with the
-     * receiving callback instance, the returned {@link Future} object may be used to retrieve the status or result of
+     * and will queue the request up to be processed asynchronously. In conjunction with the receiving callback
+     * instance, the returned {@link CompletableFuture} object may be used to retrieve the status or result of
      * the request at a later time, and will encapsulate any {@link IOException} or {@link RpcException} exceptions
      * thrown during the process.
      *
@@ -270,15 +402,15 @@ public class RpcQueryNode {
      * @see <a href="https://github.com/koczadly/jNano/wiki/Query-requests#command-lookup-table">See the GitHub wiki
      * for a list of supported request operations.</a>
      */
-    public <Q extends RpcRequest<R>, R extends RpcResponse> Future<R> processRequestAsync(Q request,
+    public <Q extends RpcRequest<R>, R extends RpcResponse> CompletableFuture<R> processRequestAsync(Q request,
             QueryCallback<Q, R> callback) {
         return this.processRequestAsync(request, defaultTimeout, callback);
     }
     
     /**
      * Sends an asynchronous query request to the node via RPC with the specified timeout. This method is non-blocking,
-     * and will queue the request up to be processed in a separate worker thread. In conjunction with the
-     * receiving callback instance, the returned {@link Future} object may be used to retrieve the status or result of
+     * and will queue the request up to be processed asynchronously. In conjunction with the receiving callback
+     * instance, the returned {@link CompletableFuture} object may be used to retrieve the status or result of
      * the request at a later time, and will encapsulate any {@link IOException} or {@link RpcException} exceptions
      * thrown during the process.
      *
@@ -292,32 +424,105 @@ public class RpcQueryNode {
      * @see <a href="https://github.com/koczadly/jNano/wiki/Query-requests#command-lookup-table">See the GitHub wiki
      * for a list of supported request operations.</a>
      */
-    public <Q extends RpcRequest<R>, R extends RpcResponse> Future<R> processRequestAsync(Q request, int timeout,
-            QueryCallback<Q, R> callback) {
+    public <Q extends RpcRequest<R>, R extends RpcResponse> CompletableFuture<R> processRequestAsync(Q request,
+            int timeout, QueryCallback<Q, R> callback) {
         if (request == null)
             throw new IllegalArgumentException("Request argument must not be null.");
         if (timeout < 0)
             throw new IllegalArgumentException("Timeout period must be zero or greater.");
         
-        return this.executorService.submit(() -> {
-            try {
-                R response = RpcQueryNode.this.processRequest(request, timeout);
-                if (callback != null)
+        CompletableFuture<R> future = chains[0].proceedAsync(request, timeout);
+        
+        if (callback != null) {
+            future.whenComplete((response, ex) -> {
+                if (ex == null) {
                     callback.onResponse(response, request);
-                return response; // Return for Future object
-            } catch (RpcException ex) {
-                if (callback != null)
-                    callback.onFailure(ex, request);
-                throw ex; // Re-throw for Future object
-            } catch (IOException ex) {
-                if (callback != null)
-                    callback.onFailure(ex, request);
-                throw ex; // Re-throw for Future object
-            } catch (Exception ex) { // Shouldn't happen!
-                ex.printStackTrace();
-                throw ex;
+                    return;
+                }
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof RpcException) {
+                    callback.onFailure((RpcException)cause, request);
+                } else if (cause instanceof IOException) {
+                    callback.onFailure((IOException)cause, request);
+                } else if (!(cause instanceof CancellationException)) { // Shouldn't happen!
+                    cause.printStackTrace();
+                }
+            });
+        }
+        return future;
+    }
+    
+    /** Processes the request asynchronously at the end of the interceptor chain. */
+    private <R extends RpcResponse> CompletableFuture<R> processRequestAsyncDirect(RpcRequest<R> request,
+            int timeout) {
+        CompletableFuture<R> future = batcher != null ? batcher.submit(this, request, timeout) : null;
+        return future != null ? future : submitAsync(request, timeout);
+    }
+    
+    /** Submits the request asynchronously, bypassing the request batcher. */
+    <R extends RpcResponse> CompletableFuture<R> submitAsync(RpcRequest<R> request, int timeout) {
+        if (!(requestExecutor instanceof AsyncRpcRequestExecutor)) {
+            // Submit blocking request to a worker thread
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return processRequestUnbatched(request, timeout);
+                } catch (IOException | RpcException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, getExecutorService());
+        }
+        
+        // Submit using non-blocking executor
+        RpcMetricsSink metrics = this.metricsSink;
+        String action = metrics != null ? request.getActionCommand() : null;
+        if (metrics != null) metrics.requestStarted(action);
+        long start = System.nanoTime();
+        CompletableFuture<String> exchange;
+        String requestJson;
+        try {
+            requestJson = this.requestSerializer.serialize(request);
+        } catch (RuntimeException ex) {
+            RpcException rpcEx = new RpcException("An unhandled exception occured.", ex);
+            if (metrics != null)
+                metrics.requestCompleted(action, System.nanoTime() - start, 0, 0, -1, -1, rpcEx);
+            return CompletableFuture.failedFuture(rpcEx);
+        }
+        long serialized = System.nanoTime();
+        try {
+            exchange = processRequestRawAsync(requestJson, timeout);
+        } catch (RuntimeException ex) {
+            RpcException rpcEx = new RpcException("An unhandled exception occured.", ex);
+            if (metrics != null)
+                metrics.requestCompleted(action, serialized - start, System.nanoTime() - serialized, 0,
+                        requestJson.length(), -1, rpcEx);
+            return CompletableFuture.failedFuture(rpcEx);
+        }
+        CompletableFuture<R> future = exchange.handle((responseJson, ex) -> {
+            long received = System.nanoTime();
+            if (ex != null) {
+                if (metrics != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    metrics.requestCompleted(action, serialized - start, received - serialized, 0,
+                            requestJson.length(), -1, cause);
+                }
+                throw ex instanceof CompletionException ? (CompletionException)ex : new CompletionException(ex);
+            }
+            RpcException error = null;
+            try {
+                return deserializeResponse(responseJson, request.getResponseClass());
+            } catch (RpcException rpcEx) {
+                error = rpcEx;
+                throw new CompletionException(rpcEx);
+            } finally {
+                if (metrics != null)
+                    metrics.requestCompleted(action, serialized - start, received - serialized,
+                            System.nanoTime() - received, requestJson.length(), responseJson.length(), error);
             }
         });
+        future.whenComplete((r, ex) -> {
+            if (future.isCancelled()) exchange.cancel(true);
+        });
+        return future;
     }
     
     
@@ -340,10 +545,19 @@ public class RpcQueryNode {
             throw new IllegalArgumentException("JSON request cannot be null.");
         if (responseClass == null)
             throw new IllegalArgumentException("Response class argument cannot be null.");
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be zero or greater.");
         
+        // Send the request to the node, and deserialize directly from the response stream
+        try (Reader responseReader = requestExecutor.submitStream(address, jsonRequest, timeout)) {
+            return deserializeResponse(responseReader, responseClass);
+        }
+    }
+    
+    private <R extends RpcResponse> R deserializeResponse(Reader responseReader, Class<R> responseClass)
+            throws IOException, RpcException {
         try {
-            String responseJson = this.processRequestRaw(jsonRequest, timeout); // Send the request to the node
-            return this.responseDeserializer.deserialize(responseJson, responseClass);
+            return this.responseDeserializer.deserialize(responseReader, responseClass);
         } catch (IOException | RpcException e) {
             throw e;
         } catch (Exception e) {
@@ -351,6 +565,17 @@ public class RpcQueryNode {
         }
     }
     
+    <R extends RpcResponse> R deserializeResponse(String responseJson, Class<R> responseClass)
+            throws RpcException {
+        try {
+            return this.responseDeserializer.deserialize(responseJson, responseClass);
+        } catch (RpcException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RpcException("An unhandled exception occured.", e);
+        }
+    }
+    
     /**
      * <p>Sends a raw JSON query to the RPC server, and then returns the raw JSON response.</p>
      * <p>Note that this method will not deserialize the resulting JSON, or parse it for errors reported by the node.
@@ -372,6 +597,104 @@ public class RpcQueryNode {
         return requestExecutor.submit(address, jsonRequest, timeout);
     }
     
+    /**
+     * <p>Sends a raw JSON query to the RPC server asynchronously, and then returns a future containing the raw JSON
+     * response.</p>
+     * <p>Note that this method will not deserialize the resulting JSON, or parse it for errors reported by the node.
+     * If the configured request executor implements {@link AsyncRpcRequestExecutor}, the request will be submitted
+     * using non-blocking I/O; otherwise, the request will be executed on a thread of the executor service.</p>
+     *
+     * @param jsonRequest the JSON query to send to the node
+     * @param timeout     the timeout for the request in milliseconds, or zero for infinite
+     * @return a future which will be completed with the JSON response received from the node
+     */
+    public CompletableFuture<String> processRequestRawAsync(String jsonRequest, int timeout) {
+        if (jsonRequest == null)
+            throw new IllegalArgumentException("JSON request cannot be null.");
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout period must be zero or greater.");
+        
+        if (requestExecutor instanceof AsyncRpcRequestExecutor)
+            return ((AsyncRpcRequestExecutor)requestExecutor).submitAsync(address, jsonRequest, timeout);
+        
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return requestExecutor.submit(address, jsonRequest, timeout);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, getExecutorService());
+    }
+    
+    
+    /** A position within the interceptor chain. Instances are created once, and are shared between requests. */
+    private final class InterceptorChain implements RpcInterceptor.Chain {
+        private final int index;
+        
+        InterceptorChain(int index) {
+            this.index = index;
+        }
+        
+        @Override
+        public RpcQueryNode getNode() {
+            return RpcQueryNode.this;
+        }
+        
+        @Override
+        public <R extends RpcResponse> R proceed(RpcRequest<R> request, int timeout)
+                throws IOException, RpcException {
+            if (request == null)
+                throw new IllegalArgumentException("Request argument must not be null.");
+            if (index == interceptors.size())
+                return processRequestDirect(request, timeout);
+            return interceptors.get(index).intercept(request, timeout, chains[index + 1]);
+        }
+        
+        @Override
+        public <R extends RpcResponse> CompletableFuture<R> proceedAsync(RpcRequest<R> request, int timeout) {
+            if (request == null)
+                throw new IllegalArgumentException("Request argument must not be null.");
+            if (index == interceptors.size())
+                return processRequestAsyncDirect(request, timeout);
+            try {
+                CompletableFuture<R> future = interceptors.get(index).interceptAsync(request, timeout,
+                        chains[index + 1]);
+                if (future == null)
+                    throw new NullPointerException("Interceptor returned a null future.");
+                return future;
+            } catch (RuntimeException ex) {
+                return CompletableFuture.failedFuture(new RpcException("An unhandled exception occured.", ex));
+            }
+        }
+    }
+    
+    /** Counts the characters read from the response, and the time spent waiting for the underlying reader. */
+    private static final class CountingReader extends FilterReader {
+        long count, readNanos;
+        
+        CountingReader(Reader in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int c = super.read();
+            readNanos += System.nanoTime() - start;
+            if (c >= 0) count++;
+            return c;
+        }
+        
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(cbuf, off, len);
+            readNanos += System.nanoTime() - start;
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+    
     
     /**
      * This builder class allows you to customize and create new instances of the {@link RpcQueryNode} class.
@@ -385,7 +708,11 @@ public class RpcQueryNode {
      *         <tr><td>Response deserializer</td>   <td>{@link JsonResponseDeserializer}</td></tr>
      *         <tr><td>Request executor</td>        <td>{@link HttpRequestExecutor}</td></tr>
      *         <tr><td>Thread executor service</td> <td>{@link Executors#newFixedThreadPool(int)} with up to 250
-     *         threads</td></tr>
+     *         threads, created on first use</td></tr>
+     *         <tr><td>Virtual threads</td>         <td>Disabled ({@code false})</td></tr>
+     *         <tr><td>Request batcher</td>         <td>Disabled ({@code null})</td></tr>
+     *         <tr><td>Metrics sink</td>            <td>Disabled ({@code null})</td></tr>
+     *         <tr><td>Interceptors</td>            <td>None</td></tr>
      *     </tbody>
      * </table>
      */
@@ -396,6 +723,10 @@ public class RpcQueryNode {
         private RpcResponseDeserializer deserializer;
         private RpcRequestExecutor requestExecutor;
         private ExecutorService executorService;
+        private boolean virtualThreads = false;
+        private RequestBatcher batcher;
+        private RpcMetricsSink metricsSink;
+        private final List<RpcInterceptor> interceptors = new ArrayList<>();
     
     
         /**
@@ -539,6 +870,83 @@ public class RpcQueryNode {
             return this;
         }
     
+        /**
+         * @return true if the default executor service will use virtual threads (where supported)
+         */
+        public boolean isUsingVirtualThreads() {
+            return virtualThreads;
+        }
+    
+        /**
+         * Sets whether the default executor service should use a virtual-thread-per-task executor instead of a pool of
+         * platform threads. If the runtime does not support virtual threads, the standard thread pool will be used.
+         * This option has no effect if an executor service is specified through
+         * {@link #setAsyncExecutorService(ExecutorService)}.
+         * @param virtualThreads true to use virtual threads
+         * @return this builder
+         */
+        public Builder setUseVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+    
+        /**
+         * @return the batcher used to coalesce single-entity requests, or null if batching is disabled
+         */
+        public RequestBatcher getRequestBatcher() {
+            return batcher;
+        }
+    
+        /**
+         * Sets the {@link RequestBatcher} which coalesces concurrent single-entity requests (such as
+         * {@link uk.oczadly.karl.jnano.rpc.request.node.RequestAccountBalance}) into their equivalent multi-entity
+         * requests. Batching is disabled by default.
+         * @param batcher the request batcher, or null to disable batching
+         * @return this builder
+         */
+        public Builder setRequestBatcher(RequestBatcher batcher) {
+            this.batcher = batcher;
+            return this;
+        }
+    
+        /**
+         * @return the sink which receives request measurements, or null if metrics are disabled
+         */
+        public RpcMetricsSink getMetricsSink() {
+            return metricsSink;
+        }
+    
+        /**
+         * Sets the {@link RpcMetricsSink} which receives the latency, size and error measurements of each request,
+         * such as an instance of {@link RpcMetrics}. Metrics are disabled by default.
+         * @param metricsSink the metrics sink, or null to disable metrics
+         * @return this builder
+         */
+        public Builder setMetricsSink(RpcMetricsSink metricsSink) {
+            this.metricsSink = metricsSink;
+            return this;
+        }
+    
+        /**
+         * @return the list of interceptors which requests are passed through, in order of invocation
+         */
+        public List<RpcInterceptor> getInterceptors() {
+            return interceptors;
+        }
+    
+        /**
+         * Adds an {@link RpcInterceptor} to the end of the interceptor chain. Interceptors are invoked in the order
+         * they are added, so the first interceptor wraps all of the others.
+         * @param interceptor the interceptor
+         * @return this builder
+         */
+        public Builder addInterceptor(RpcInterceptor interceptor) {
+            if (interceptor == null)
+                throw new IllegalArgumentException("Interceptor cannot be null.");
+            this.interceptors.add(interceptor);
+            return this;
+        }
+    
     
         /**
          * Creates a new {@link RpcQueryNode} object from the configured parameters.
@@ -546,7 +954,7 @@ public class RpcQueryNode {
          */
         public RpcQueryNode build() {
             return new RpcQueryNode(address, defaultTimeout, serializer, deserializer, requestExecutor,
-                    executorService);
+                    executorService, virtualThreads, batcher, metricsSink, interceptors);
         }
     }
     
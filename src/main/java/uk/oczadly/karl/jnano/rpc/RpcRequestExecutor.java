@@ -6,6 +6,8 @@
 package uk.oczadly.karl.jnano.rpc;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
 
 /**
@@ -24,4 +26,22 @@ public interface RpcRequestExecutor {
      */
     String submit(URL address, String request, int timeout) throws IOException;
     
+    /**
+     * Submits a raw RPC request to the specified external node address, and returns a reader over the response data.
+     * The returned reader must be closed by the caller once the response has been consumed.
+     *
+     * <p>The default implementation of this method reads the full response through
+     * {@link #submit(URL, String, int)}. Implementations should override this method if the response can be read
+     * directly from the underlying connection.</p>
+     *
+     * @param address   the network address of the local or external node
+     * @param request   the raw request data
+     * @param timeout   the timeout value in milliseconds, or 0 for infinite
+     * @return a reader over the response data
+     * @throws IOException if an exception occurs with the remote connection
+     */
+    default Reader submitStream(URL address, String request, int timeout) throws IOException {
+        return new StringReader(submit(address, request, timeout));
+    }
+    
 }
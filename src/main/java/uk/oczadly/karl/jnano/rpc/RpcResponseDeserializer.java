@@ -8,6 +8,9 @@ package uk.oczadly.karl.jnano.rpc;
 import uk.oczadly.karl.jnano.rpc.exception.RpcException;
 import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
 
+import java.io.IOException;
+import java.io.Reader;
+
 /**
  * Classes which implement this interface are responsible for converting the response from the node into the
  * {@link RpcResponse} class, as well as parsing the appropriate {@link RpcException}.
@@ -25,5 +28,30 @@ public interface RpcResponseDeserializer {
      * @throws RpcException if an exception occurs during parsing, or if an error is returned by the node
      */
     <R extends RpcResponse> R deserialize(String response, Class<R> responseClass) throws RpcException;
+    
+    /**
+     * Deserializes the response data read from the given reader into the appropriate {@link RpcResponse} object, or
+     * throws the relevant {@link RpcException} exception if an error is returned. The reader will not be closed by
+     * this method.
+     *
+     * <p>The default implementation of this method reads the full response into a string, and passes it to
+     * {@link #deserialize(String, Class)}.</p>
+     *
+     * @param response      the reader supplying the raw response data sent from the node
+     * @param responseClass the expected response class to populate the data into
+     * @param <R>           the response class
+     * @return the parsed response object
+     * @throws RpcException if an exception occurs during parsing, or if an error is returned by the node
+     * @throws IOException  if an exception occurs while reading the response
+     */
+    default <R extends RpcResponse> R deserialize(Reader response, Class<R> responseClass)
+            throws RpcException, IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = response.read(buffer)) != -1)
+            sb.append(buffer, 0, read);
+        return deserialize(sb.toString(), responseClass);
+    }
 
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestLedger;
+import uk.oczadly.karl.jnano.rpc.response.ResponseLedger;
+import uk.oczadly.karl.jnano.rpc.response.ResponseLedger.AccountInfo;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>An iterator which traverses the accounts of the ledger, automatically requesting subsequent pages from the node
+ * through {@link RequestLedger}. Only the current page and the next (pre-fetched) page are held in memory at any one
+ * time; the next page is requested asynchronously as soon as the current page has been received.</p>
+ *
+ * <p>As the {@link Iterator} interface does not permit checked exceptions, any {@link IOException} or
+ * {@link RpcException} thrown while retrieving a page will be wrapped in a {@link CompletionException}.</p>
+ *
+ * <p>Below is an example which counts the number of accounts with a balance of at least 1 Nano:</p>
+ * <pre>{@code
+ *  RpcQueryNode node = new RpcQueryNode();
+ *  long count = new LedgerIterator(node, null, 1000, null, NanoUnit.BASE_UNIT.getRawValue()).stream().count();
+ * }</pre>
+ */
+public class LedgerIterator implements Iterator<Map.Entry<NanoAccount, AccountInfo>> {
+    
+    private final RpcQueryNode node;
+    private final int pageSize;
+    private final Integer modifiedSince;
+    private final BigInteger threshold;
+    
+    private Iterator<Map.Entry<NanoAccount, AccountInfo>> current = Collections.emptyIterator();
+    private CompletableFuture<ResponseLedger> nextPage;
+    
+    
+    /**
+     * Constructs an iterator over the entire ledger.
+     * @param node     the node to request the ledger from
+     * @param pageSize the number of accounts to request per page
+     */
+    public LedgerIterator(RpcQueryNode node, int pageSize) {
+        this(node, null, pageSize, null, null);
+    }
+    
+    /**
+     * Constructs an iterator over the ledger, with the specified filters.
+     * @param node          the node to request the ledger from
+     * @param start         the first account to retrieve, or null to begin from the zeroth account
+     * @param pageSize      the number of accounts to request per page
+     * @param modifiedSince (optional) filter accounts modified after the specified UNIX timestamp
+     * @param threshold     (optional) the minimum balance (in raw) for listed accounts
+     */
+    public LedgerIterator(RpcQueryNode node, NanoAccount start, int pageSize, Integer modifiedSince,
+                          BigInteger threshold) {
+        if (node == null)
+            throw new IllegalArgumentException("Node cannot be null.");
+        if (pageSize < 1)
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        
+        this.node = node;
+        this.pageSize = pageSize;
+        this.modifiedSince = modifiedSince;
+        this.threshold = threshold;
+        this.nextPage = requestPage(start != null ? start : NanoAccount.ZERO_ACCOUNT);
+    }
+    
+    
+    /**
+     * @return the number of accounts requested per page
+     */
+    public final int getPageSize() {
+        return pageSize;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (nextPage == null)
+                return false; // No more pages
+            
+            // Wait for the next page, and begin fetching the following one
+            Map<NanoAccount, AccountInfo> accounts = awaitPage(nextPage).getAccounts();
+            nextPage = null;
+            if (accounts == null || accounts.isEmpty())
+                return false;
+            if (accounts.size() >= pageSize) {
+                NanoAccount last = null;
+                for (NanoAccount account : accounts.keySet())
+                    last = account;
+                BigInteger lastIndex = last.getAccountIndex();
+                if (lastIndex.compareTo(JNH.BIGINT_MAX_256) < 0)
+                    nextPage = requestPage(new NanoAccount(lastIndex.add(BigInteger.ONE), last.getPrefix()));
+            }
+            current = accounts.entrySet().iterator();
+        }
+        return true;
+    }
+    
+    @Override
+    public Map.Entry<NanoAccount, AccountInfo> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current.next();
+    }
+    
+    /**
+     * Returns a sequential {@link Stream} over the remaining accounts of this iterator. Closing the stream will cancel
+     * any pending page request.
+     * @return a stream of the remaining ledger accounts
+     */
+    public Stream<Map.Entry<NanoAccount, AccountInfo>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(this::cancel);
+    }
+    
+    /**
+     * Cancels any pending page request, and ends the iteration after the current page.
+     */
+    public void cancel() {
+        CompletableFuture<ResponseLedger> pending = nextPage;
+        nextPage = null;
+        if (pending != null)
+            pending.cancel(true);
+    }
+    
+    
+    private CompletableFuture<ResponseLedger> requestPage(NanoAccount start) {
+        return node.processRequestAsync(
+                new RequestLedger(start.toAddress(), pageSize, modifiedSince, null, threshold));
+    }
+    
+    private static ResponseLedger awaitPage(CompletableFuture<ResponseLedger> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+    
+}
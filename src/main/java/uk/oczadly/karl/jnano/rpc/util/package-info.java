@@ -0,0 +1,12 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+/**
+ * This package provides higher-level utilities built on top of {@link uk.oczadly.karl.jnano.rpc.RpcQueryNode}, which
+ * combine or manage the submission of multiple RPC requests.
+ *
+ * @author Karl Oczadly
+ */
+package uk.oczadly.karl.jnano.rpc.util;
\ No newline at end of file
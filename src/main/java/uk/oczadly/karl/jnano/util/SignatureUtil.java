@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.Ed25519;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.block.Block;
+
+/**
+ * Provides utilities for signing and verifying block hashes, using the ed25519-blake2b signature scheme of the Nano
+ * protocol. All computations are performed locally, so private keys are never sent to a node.
+ */
+public final class SignatureUtil {
+    private SignatureUtil() {}
+    
+    
+    /**
+     * Signs the given block hash using the private key.
+     * @param hash       the block hash, represented as a 64-character hex string
+     * @param privateKey the private key, represented as a 64-character hex string
+     * @return a 128-character hex string representing the signature
+     */
+    public static String sign(String hash, String privateKey) {
+        if (hash == null)
+            throw new IllegalArgumentException("Hash cannot be null.");
+        if (!JNH.isValidHex(hash, 64))
+            throw new IllegalArgumentException("Hash must be a 64-character hex string.");
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        if (!JNH.isValidHex(privateKey, 64))
+            throw new IllegalArgumentException("Private key must be a 64-character hex string.");
+        
+        return JNH.ENC_16.encode(Ed25519.sign(decodeHex(hash), decodeHex(privateKey)));
+    }
+    
+    /**
+     * Signs the given message using the private key.
+     * @param message    the message (usually a block hash)
+     * @param privateKey the private key, represented as a 32-element byte array
+     * @return a 64-element byte array representing the signature
+     */
+    public static byte[] sign(byte[] message, byte[] privateKey) {
+        if (message == null)
+            throw new IllegalArgumentException("Message cannot be null.");
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        if (privateKey.length != Ed25519.KEY_LENGTH)
+            throw new IllegalArgumentException("Private key array must contain 32 bytes.");
+        
+        return Ed25519.sign(message, privateKey);
+    }
+    
+    
+    /**
+     * Verifies that the signature of the given block hash was created by the account.
+     * @param hash      the block hash, represented as a 64-character hex string
+     * @param signature the signature, represented as a 128-character hex string
+     * @param account   the account which signed the hash
+     * @return true if the signature is valid
+     */
+    public static boolean verify(String hash, String signature, NanoAccount account) {
+        if (hash == null)
+            throw new IllegalArgumentException("Hash cannot be null.");
+        if (!JNH.isValidHex(hash, 64))
+            throw new IllegalArgumentException("Hash must be a 64-character hex string.");
+        if (signature == null)
+            throw new IllegalArgumentException("Signature cannot be null.");
+        if (account == null)
+            throw new IllegalArgumentException("Account cannot be null.");
+        if (!JNH.isValidHex(signature, 128))
+            return false;
+        
+        return Ed25519.verify(decodeHex(hash), decodeHex(signature), account.getPublicKeyBytes());
+    }
+    
+    /**
+     * Verifies that the signature of the given block was created by the account. Blocks without a signature are
+     * considered invalid.
+     * @param block   the block
+     * @param account the account which signed the block
+     * @return true if the signature is valid
+     */
+    public static boolean verify(Block block, NanoAccount account) {
+        if (block == null)
+            throw new IllegalArgumentException("Block cannot be null.");
+        if (account == null)
+            throw new IllegalArgumentException("Account cannot be null.");
+        
+        String signature = block.getSignature();
+        if (signature == null || !JNH.isValidHex(signature, 128))
+            return false;
+        return Ed25519.verify(block.getHashBytes(), decodeHex(signature), account.getPublicKeyBytes());
+    }
+    
+    /**
+     * Verifies that the signature of the given message was created by the public key.
+     * @param message   the message (usually a block hash)
+     * @param signature the signature, represented as a 64-element byte array
+     * @param publicKey the public key, represented as a 32-element byte array
+     * @return true if the signature is valid
+     */
+    public static boolean verify(byte[] message, byte[] signature, byte[] publicKey) {
+        if (message == null)
+            throw new IllegalArgumentException("Message cannot be null.");
+        if (signature == null)
+            throw new IllegalArgumentException("Signature cannot be null.");
+        if (publicKey == null)
+            throw new IllegalArgumentException("Public key cannot be null.");
+        if (publicKey.length != Ed25519.KEY_LENGTH)
+            throw new IllegalArgumentException("Public key array must contain 32 bytes.");
+        if (signature.length != Ed25519.SIGNATURE_LENGTH)
+            return false;
+        
+        return Ed25519.verify(message, signature, publicKey);
+    }
+    
+    
+    private static byte[] decodeHex(String hex) {
+        return JNH.ENC_16.decode(hex.toUpperCase());
+    }
+    
+}
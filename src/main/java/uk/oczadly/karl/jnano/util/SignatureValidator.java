@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.Ed25519;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.interfaces.IBlockAccount;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageVote;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Verifies the signatures of many blocks, votes or messages in bulk. Items are split into batches which are
+ * verified in parallel on the common fork-join pool. Each batch is first checked through a single randomized batch
+ * verification equation; if the batch fails, each of its items is verified individually to identify the invalid
+ * entries. Valid batches are therefore several times faster to verify than individual signatures, while invalid
+ * entries only slow down their own batch.</p>
+ *
+ * <p>Results are returned as a {@link BitSet}, where the bit at each index is set if the item at the same index has a
+ * valid signature. Malformed items (such as missing signatures or accounts) are considered invalid.</p>
+ */
+public final class SignatureValidator {
+    
+    private static final int BATCH_SIZE = 64; // Multiple of 64, so that batches never share a bitset word
+    private static final byte[] VOTE_PREFIX = "vote ".getBytes(StandardCharsets.US_ASCII);
+    
+    private SignatureValidator() {}
+    
+    
+    /**
+     * Verifies the signatures of the given messages.
+     * @param messages   the signed messages (usually 32-byte block hashes)
+     * @param signatures the 64-byte signatures
+     * @param publicKeys the 32-byte public keys of the signers
+     * @return a bitset containing the indexes of the valid signatures
+     */
+    public static BitSet verify(byte[][] messages, byte[][] signatures, byte[][] publicKeys) {
+        if (messages == null) throw new IllegalArgumentException("Messages array cannot be null.");
+        if (signatures == null) throw new IllegalArgumentException("Signatures array cannot be null.");
+        if (publicKeys == null) throw new IllegalArgumentException("Public keys array cannot be null.");
+        if (messages.length != signatures.length || messages.length != publicKeys.length)
+            throw new IllegalArgumentException("Messages, signatures and public keys arrays must be the same length.");
+        
+        return verify(messages.length, (i, entries) -> {
+            if (messages[i] == null || signatures[i] == null || publicKeys[i] == null
+                    || signatures[i].length != Ed25519.SIGNATURE_LENGTH || publicKeys[i].length != Ed25519.KEY_LENGTH)
+                return false;
+            entries.set(messages[i], signatures[i], publicKeys[i]);
+            return true;
+        });
+    }
+    
+    /**
+     * Verifies the signatures of the given blocks, using the account contained within each block. Legacy blocks
+     * which do not contain an account field (send, receive and change blocks) are considered invalid.
+     * @param blocks the blocks to verify
+     * @return a bitset containing the indexes of the blocks with valid signatures
+     * @see #verifyBlocks(List, List)
+     */
+    public static BitSet verifyBlocks(List<? extends Block> blocks) {
+        if (blocks == null) throw new IllegalArgumentException("Blocks list cannot be null.");
+        
+        return verify(blocks.size(), (i, entries) -> {
+            Block block = blocks.get(i);
+            return block instanceof IBlockAccount
+                    && setBlock(entries, block, ((IBlockAccount)block).getAccount());
+        });
+    }
+    
+    /**
+     * Verifies the signatures of the given blocks, against the account at the same index of the accounts list. If an
+     * account is null, then the account contained within the block is used (if present).
+     * @param blocks   the blocks to verify
+     * @param accounts the accounts which signed each block
+     * @return a bitset containing the indexes of the blocks with valid signatures
+     */
+    public static BitSet verifyBlocks(List<? extends Block> blocks, List<NanoAccount> accounts) {
+        if (blocks == null) throw new IllegalArgumentException("Blocks list cannot be null.");
+        if (accounts == null) throw new IllegalArgumentException("Accounts list cannot be null.");
+        if (blocks.size() != accounts.size())
+            throw new IllegalArgumentException("Blocks and accounts lists must be the same length.");
+        
+        return verify(blocks.size(), (i, entries) -> {
+            Block block = blocks.get(i);
+            NanoAccount account = accounts.get(i);
+            if (account == null && block instanceof IBlockAccount)
+                account = ((IBlockAccount)block).getAccount();
+            return setBlock(entries, block, account);
+        });
+    }
+    
+    /**
+     * Verifies the signatures of the given votes, as received from the {@code votes} websocket topic. The signed vote
+     * hash is computed from the voted block hashes and sequence number, as defined by the node protocol.
+     * @param votes the votes to verify
+     * @return a bitset containing the indexes of the votes with valid signatures
+     */
+    public static BitSet verifyVotes(List<TopicMessageVote> votes) {
+        if (votes == null) throw new IllegalArgumentException("Votes list cannot be null.");
+        
+        return verify(votes.size(), (i, entries) -> {
+            TopicMessageVote vote = votes.get(i);
+            if (vote == null || vote.getBlockHashes() == null || vote.getBlockHashes().isEmpty()
+                    || vote.getAccount() == null || vote.getSignature() == null
+                    || !JNH.isValidHex(vote.getSignature(), 128))
+                return false;
+            byte[][] hashables = new byte[vote.getBlockHashes().size() + 2][];
+            hashables[0] = VOTE_PREFIX;
+            for (int j=0; j<vote.getBlockHashes().size(); j++) {
+                String hash = vote.getBlockHashes().get(j);
+                if (hash == null || !JNH.isValidHex(hash, 64)) return false;
+                hashables[j + 1] = decodeHex(hash);
+            }
+            long sequence = vote.getSequence();
+            byte[] sequenceBytes = new byte[8]; // Little-endian
+            for (int j=0; j<8; j++)
+                sequenceBytes[j] = (byte)(sequence >>> (j * 8));
+            hashables[hashables.length - 1] = sequenceBytes;
+            NanoAccount account;
+            try {
+                account = NanoAccount.parse(vote.getAccount());
+            } catch (IllegalArgumentException e) {
+                return false; // Malformed account
+            }
+            entries.set(JNH.blake2b(32, hashables), decodeHex(vote.getSignature()), account.getPublicKeyBytes());
+            return true;
+        });
+    }
+    
+    
+    private static boolean setBlock(Entries entries, Block block, NanoAccount account) {
+        if (block == null || account == null || block.getSignature() == null
+                || !JNH.isValidHex(block.getSignature(), 128))
+            return false;
+        entries.set(block.getHashBytes(), decodeHex(block.getSignature()), account.getPublicKeyBytes());
+        return true;
+    }
+    
+    private static BitSet verify(int count, EntryReader reader) {
+        long[] words = new long[(count + 63) >>> 6];
+        int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+        IntStream range = IntStream.range(0, batches);
+        (batches > 1 ? range.parallel() : range).forEach(batch -> {
+            int start = batch * BATCH_SIZE, end = Math.min(count, start + BATCH_SIZE);
+            Entries entries = new Entries(end - start);
+            for (int i=start; i<end; i++) {
+                entries.index[entries.size] = i;
+                if (reader.read(i, entries)) entries.size++;
+            }
+            if (entries.size > 1 && entries.verifyBatch()) {
+                for (int j=0; j<entries.size; j++)
+                    words[entries.index[j] >>> 6] |= 1L << entries.index[j];
+            } else {
+                // Fall back to verifying each signature individually
+                for (int j=0; j<entries.size; j++) {
+                    if (Ed25519.verify(entries.messages[j], entries.signatures[j], entries.publicKeys[j]))
+                        words[entries.index[j] >>> 6] |= 1L << entries.index[j];
+                }
+            }
+        });
+        return BitSet.valueOf(words);
+    }
+    
+    private static byte[] decodeHex(String hex) {
+        return JNH.ENC_16.decode(hex.toUpperCase());
+    }
+    
+    
+    /** The well-formed entries of a single batch. */
+    private static final class Entries {
+        final int[] index;
+        final byte[][] messages, signatures, publicKeys;
+        int size;
+        
+        Entries(int capacity) {
+            index = new int[capacity];
+            messages = new byte[capacity][];
+            signatures = new byte[capacity][];
+            publicKeys = new byte[capacity][];
+        }
+        
+        void set(byte[] message, byte[] signature, byte[] publicKey) {
+            messages[size] = message;
+            signatures[size] = signature;
+            publicKeys[size] = publicKey;
+        }
+        
+        boolean verifyBatch() {
+            if (size == messages.length)
+                return Ed25519.verifyBatch(messages, signatures, publicKeys);
+            return Ed25519.verifyBatch(Arrays.copyOf(messages, size), Arrays.copyOf(signatures, size),
+                    Arrays.copyOf(publicKeys, size));
+        }
+    }
+    
+    private interface EntryReader {
+        /** Reads the item at the given index into the entries, returning false if the item is malformed. */
+        boolean read(int index, Entries entries);
+    }
+    
+}
@@ -5,15 +5,24 @@
 
 package uk.oczadly.karl.jnano.util;
 
+import com.rfksystems.blake2b.Blake2b;
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.Ed25519;
+import uk.oczadly.karl.jnano.model.NanoAccount;
 
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public final class WalletUtil {
     private WalletUtil() {}
     
     public static final long MAX_SEED_INDEX = 4294967295L;
     
+    private static final ThreadLocal<Blake2b> SEED_DIGEST =
+            ThreadLocal.withInitial(() -> new Blake2b(null, 32, null, null));
+    
     
     /**
      * Generates and returns a new randomly created seed (or private key).
@@ -77,8 +86,162 @@ public final class WalletUtil {
         if (index < 0 || index > MAX_SEED_INDEX)
             throw new IllegalArgumentException("Seed index is out of bounds.");
         
-        byte[] indexBytes = JNH.leftPadByteArray(JNH.longToBytes(index), 4, true);
-        return JNH.blake2b(32, seed, indexBytes);
+        return deriveKey(seed, index);
+    }
+    
+    /** Derives a private key without validating the arguments, reusing the thread's digest instance. */
+    private static byte[] deriveKey(byte[] seed, long index) {
+        Blake2b digest = SEED_DIGEST.get();
+        digest.reset();
+        digest.update(seed, 0, 32);
+        for (int i=24; i>=0; i-=8)
+            digest.update((byte)(index >>> i)); // 32-bit big-endian index
+        byte[] key = new byte[32];
+        digest.digest(key, 0);
+        return key;
+    }
+    
+    
+    /**
+     * <p>Derives the private keys and accounts of a range of indexes from the given seed. Each account is derived
+     * locally when the stream is consumed, in parallel using the common fork-join pool (call
+     * {@link Stream#sequential()} on the returned stream to derive on the calling thread only). The encounter order of
+     * the stream is ascending by index.</p>
+     *
+     * <p>Deriving an account takes roughly 0.1 milliseconds per core, so large ranges should be consumed
+     * incrementally rather than collected.</p>
+     *
+     * @param seed       the seed, represented as a 64-character hex string
+     * @param startIndex the first index to derive (inclusive)
+     * @param endIndex   the last index to derive (exclusive), up to {@code MAX_SEED_INDEX + 1}
+     * @return a parallel stream of the derived accounts
+     */
+    public static Stream<DerivedAccount> deriveAccounts(String seed, long startIndex, long endIndex) {
+        byte[] seedBytes = parseSeedRange(seed, startIndex, endIndex);
+        return LongStream.range(startIndex, endIndex).parallel()
+                .mapToObj(i -> {
+                    byte[] key = deriveKey(seedBytes, i);
+                    return new DerivedAccount(i, key, Ed25519.derivePublicKey(key));
+                });
+    }
+    
+    /**
+     * Searches a range of indexes of the given seed for the index of an account. The search is performed locally and
+     * in parallel using the common fork-join pool, and stops once the account has been found.
+     *
+     * @param seed       the seed, represented as a 64-character hex string
+     * @param account    the account to search for
+     * @param startIndex the first index to search (inclusive)
+     * @param endIndex   the last index to search (exclusive), up to {@code MAX_SEED_INDEX + 1}
+     * @return the index of the account, or -1 if the account was not found within the range
+     */
+    public static long findAccountIndex(String seed, NanoAccount account, long startIndex, long endIndex) {
+        if (account == null)
+            throw new IllegalArgumentException("Account cannot be null.");
+        byte[] seedBytes = parseSeedRange(seed, startIndex, endIndex);
+        byte[] publicKey = account.getPublicKeyBytes();
+        return LongStream.range(startIndex, endIndex).parallel()
+                .filter(i -> Arrays.equals(publicKey, Ed25519.derivePublicKey(deriveKey(seedBytes, i))))
+                .findAny()
+                .orElse(-1);
+    }
+    
+    private static byte[] parseSeedRange(String seed, long startIndex, long endIndex) {
+        if (seed == null)
+            throw new IllegalArgumentException("Seed cannot be null.");
+        if (!JNH.isValidHex(seed, 64))
+            throw new IllegalArgumentException("Seed must be a 64-character hex string.");
+        if (startIndex < 0 || endIndex > MAX_SEED_INDEX + 1)
+            throw new IllegalArgumentException("Seed index range is out of bounds.");
+        if (startIndex > endIndex)
+            throw new IllegalArgumentException("Start index cannot be greater than the end index.");
+        return JNH.ENC_16.decode(seed.toUpperCase());
+    }
+    
+    
+    /**
+     * Derives the account (public key) of the given private key. This computation is performed locally.
+     * @param privateKey the private key, represented as a 64-character hex string
+     * @return the account of the private key
+     */
+    public static NanoAccount deriveAccountFromKey(String privateKey) {
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        if (!JNH.isValidHex(privateKey, 64))
+            throw new IllegalArgumentException("Private key must be a 64-character hex string.");
+        
+        return new NanoAccount(derivePublicKey(JNH.ENC_16.decode(privateKey.toUpperCase())));
+    }
+    
+    /**
+     * Derives the account of the given seed and index. This is equivalent to deriving the private key through
+     * {@link #deriveKeyFromSeed(String, long)}, followed by {@link #deriveAccountFromKey(String)}.
+     * @param seed  the seed, represented as a 64-character hex string
+     * @param index the index of the account
+     * @return the account at the given index
+     */
+    public static NanoAccount deriveAccountFromSeed(String seed, long index) {
+        return deriveAccountFromKey(deriveKeyFromSeed(seed, index));
+    }
+    
+    /**
+     * Derives the public key of the given private key. This computation is performed locally.
+     * @param privateKey the private key, represented as a 32-element byte array
+     * @return a 32-element byte array representing the public key
+     */
+    public static byte[] derivePublicKey(byte[] privateKey) {
+        if (privateKey == null)
+            throw new IllegalArgumentException("Private key cannot be null.");
+        if (privateKey.length != 32)
+            throw new IllegalArgumentException("Private key array must contain 32 bytes.");
+        
+        return Ed25519.derivePublicKey(privateKey);
+    }
+    
+    
+    /**
+     * An account derived from a seed, along with its index and private key.
+     *
+     * @see #deriveAccounts(String, long, long)
+     */
+    public static final class DerivedAccount {
+        private final long index;
+        private final byte[] privateKey;
+        private final NanoAccount account;
+        
+        private DerivedAccount(long index, byte[] privateKey, byte[] publicKey) {
+            this.index = index;
+            this.privateKey = privateKey;
+            this.account = new NanoAccount(publicKey);
+        }
+        
+        /**
+         * @return the index of the account within the seed
+         */
+        public long getIndex() {
+            return index;
+        }
+        
+        /**
+         * @return a 64-character hex string representing the private key
+         */
+        public String getPrivateKey() {
+            return JNH.ENC_16.encode(privateKey);
+        }
+        
+        /**
+         * @return a 32-element byte array representing the private key
+         */
+        public byte[] getPrivateKeyBytes() {
+            return Arrays.copyOf(privateKey, privateKey.length);
+        }
+        
+        /**
+         * @return the account
+         */
+        public NanoAccount getAccount() {
+            return account;
+        }
     }
     
 }
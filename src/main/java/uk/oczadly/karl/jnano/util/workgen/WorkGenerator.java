@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.internal.utils.WorkKernel;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.work.HashRateMeter;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.NanoConstants;
+import uk.oczadly.karl.jnano.util.NetworkConstants;
+
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A CPU-based work generation service, which queues work requests and computes them on a fixed set of worker
+ * threads. Unlike {@link WorkSolution#generateMultiThreaded(String, WorkDifficulty)}, concurrent requests do not
+ * compete with each other for CPU time.</p>
+ *
+ * <p>Requests are processed in order of their priority, followed by the difficulty threshold (so that send blocks are
+ * computed before receive blocks when using {@link #generate(Block)}), and then in order of submission. Each worker
+ * thread takes the next queued request; when the queue is empty, idle workers assist with requests which are already
+ * in progress. If a request of a higher priority is queued, workers will suspend their current request (retaining any
+ * progress) and process the higher priority request first.</p>
+ *
+ * <p>Requests for a root which is already queued or in progress are combined into the existing request. If the new
+ * request specifies a higher difficulty threshold, then the existing request is upgraded. Each returned future may be
+ * cancelled independently; once all of the futures for a root have been cancelled, the request is removed.</p>
+ *
+ * <p>Instances of this class should be shut down through {@link #shutdown()} once no longer required.</p>
+ */
+public final class WorkGenerator implements AutoCloseable {
+    
+    /** The default priority of requests. */
+    public static final int DEFAULT_PRIORITY = 0;
+    
+    private static final int BATCH_SIZE = 4096; // Hashes computed between checks
+    private static final Comparator<Job> JOB_ORDER = Comparator
+            .comparingInt((Job j) -> j.priority).reversed()
+            .thenComparing((Job j) -> j.threshold, Comparator.reverseOrder())
+            .thenComparingLong(j -> j.sequence);
+    
+    private final NetworkConstants.WorkDifficulties difficulties;
+    private final Thread[] workers;
+    private final HashRateMeter hashRate = new HashRateMeter();
+    private final Random random = new SecureRandom();
+    private final AtomicLong sequence = new AtomicLong();
+    // Guarded by this
+    private final PriorityQueue<Job> queue = new PriorityQueue<>(JOB_ORDER);
+    private final List<Job> active = new ArrayList<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+    private boolean shutdown = false;
+    
+    
+    /**
+     * Constructs a work generator using all available processors, and the difficulty thresholds of the live Nano
+     * network.
+     */
+    public WorkGenerator() {
+        this(NanoConstants.NANO_LIVE_NET.getWorkDifficulties(), Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param difficulties the difficulty thresholds used when generating work for blocks
+     * @param threads      the number of worker threads
+     */
+    public WorkGenerator(NetworkConstants.WorkDifficulties difficulties, int threads) {
+        if (difficulties == null)
+            throw new IllegalArgumentException("Work difficulties cannot be null.");
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        
+        this.difficulties = difficulties;
+        this.workers = new Thread[threads];
+        for (int i=0; i<threads; i++) {
+            workers[i] = new Thread(this::runWorker, "jnano-workgen-" + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.MIN_PRIORITY);
+            workers[i].start();
+        }
+    }
+    
+    
+    /**
+     * @return the difficulty thresholds used when generating work for blocks
+     */
+    public NetworkConstants.WorkDifficulties getDifficulties() {
+        return difficulties;
+    }
+    
+    /**
+     * @return the number of worker threads
+     */
+    public int getThreadCount() {
+        return workers.length;
+    }
+    
+    /**
+     * @return the meter which records the hashes computed by this generator
+     */
+    public HashRateMeter getHashRateMeter() {
+        return hashRate;
+    }
+    
+    /**
+     * @return the number of requests waiting to be processed (excluding those in progress)
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /**
+     * @return the number of requests currently being processed
+     */
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+    
+    
+    /**
+     * Generates work for the given block, using the block's root and the difficulty threshold for its type.
+     * @param block the block to generate work for
+     * @return a future representing the generated work solution
+     * @see NetworkConstants.WorkDifficulties#getForBlock(Block)
+     */
+    public CompletableFuture<WorkSolution> generate(Block block) {
+        return generate(WorkSolution.getRoot(block), difficulties.getForBlock(block), DEFAULT_PRIORITY);
+    }
+    
+    /**
+     * Generates work for the given root and difficulty threshold, with the default priority.
+     * @param root      the root hash (64 character hex string)
+     * @param threshold the minimum difficulty threshold
+     * @return a future representing the generated work solution
+     */
+    public CompletableFuture<WorkSolution> generate(String root, WorkDifficulty threshold) {
+        return generate(root, threshold, DEFAULT_PRIORITY);
+    }
+    
+    /**
+     * Generates work for the given root and difficulty threshold.
+     * @param root      the root hash (64 character hex string)
+     * @param threshold the minimum difficulty threshold
+     * @param priority  the priority of the request (higher values are processed first)
+     * @return a future representing the generated work solution
+     */
+    public CompletableFuture<WorkSolution> generate(String root, WorkDifficulty threshold, int priority) {
+        if (root == null) throw new IllegalArgumentException("Root argument cannot be null.");
+        if (!JNH.isValidHex(root, 64))
+            throw new IllegalArgumentException("Root argument must be a 64-character hex string.");
+        if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
+        
+        String key = root.toUpperCase();
+        CompletableFuture<WorkSolution> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (shutdown)
+                throw new IllegalStateException("Work generator has been shut down.");
+            
+            Job job = jobs.get(key);
+            if (job == null) {
+                job = new Job(key, JNH.ENC_16.decode(key), threshold, priority);
+                jobs.put(key, job);
+                queue.add(job);
+                notifyAll();
+            } else if (threshold.compareTo(job.threshold) > 0 || priority > job.priority) {
+                reprioritize(job, JNH.max(threshold, job.threshold), Math.max(priority, job.priority));
+            }
+            job.subscribers.add(future);
+        }
+        future.whenComplete((r, ex) -> {
+            if (future.isCancelled()) unsubscribe(key, future);
+        });
+        return future;
+    }
+    
+    /**
+     * Increases the difficulty threshold of a queued or in-progress request.
+     * @param root      the root hash
+     * @param threshold the new difficulty threshold
+     * @return true if the request was found and upgraded, false if not present or the threshold was already higher
+     */
+    public synchronized boolean upgrade(String root, WorkDifficulty threshold) {
+        if (root == null) throw new IllegalArgumentException("Root argument cannot be null.");
+        if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
+        
+        Job job = jobs.get(root.toUpperCase());
+        if (job == null || threshold.compareTo(job.threshold) <= 0)
+            return false;
+        reprioritize(job, threshold, job.priority);
+        return true;
+    }
+    
+    /**
+     * Cancels the queued or in-progress request for the given root, including all of its futures.
+     * @param root the root hash
+     * @return true if the request was found and cancelled
+     */
+    public boolean cancel(String root) {
+        if (root == null) throw new IllegalArgumentException("Root argument cannot be null.");
+        Job job;
+        synchronized (this) {
+            job = jobs.get(root.toUpperCase());
+            if (job == null) return false;
+            remove(job);
+        }
+        job.fail(new CancellationException("Work generation was cancelled."));
+        return true;
+    }
+    
+    /**
+     * Stops all of the worker threads, and cancels any queued or in-progress requests.
+     */
+    public void shutdown() {
+        List<Job> cancelled;
+        synchronized (this) {
+            if (shutdown) return;
+            shutdown = true;
+            cancelled = new ArrayList<>(jobs.values());
+            for (Job job : cancelled)
+                job.done = true; // Signal workers to stop hashing
+            jobs.clear();
+            queue.clear();
+            active.clear();
+            notifyAll();
+        }
+        for (Job job : cancelled)
+            job.fail(new CancellationException("Work generator has been shut down."));
+        for (Thread worker : workers)
+            worker.interrupt();
+    }
+    
+    /**
+     * Equivalent to calling {@link #shutdown()}.
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+    
+    
+    /** Updates the ordering parameters of a job, re-inserting it into the queue if necessary. */
+    private void reprioritize(Job job, WorkDifficulty threshold, int priority) {
+        boolean queued = queue.remove(job);
+        job.threshold = threshold;
+        job.priority = priority;
+        if (queued) queue.add(job);
+        notifyAll(); // Workers may need to pre-empt their current job
+    }
+    
+    private void unsubscribe(String key, CompletableFuture<WorkSolution> future) {
+        synchronized (this) {
+            Job job = jobs.get(key);
+            if (job == null) return;
+            job.subscribers.remove(future);
+            if (job.subscribers.isEmpty())
+                remove(job);
+        }
+    }
+    
+    /** Removes a job from all collections, and signals workers to stop. Must be called while holding the lock. */
+    private void remove(Job job) {
+        job.done = true;
+        jobs.remove(job.key, job);
+        queue.remove(job);
+        active.remove(job);
+    }
+    
+    /** Blocks until a job is available, and registers the calling worker against it. */
+    private synchronized Job takeJob() throws InterruptedException {
+        while (!shutdown) {
+            Job job = queue.poll();
+            if (job != null) {
+                active.add(job);
+            } else if (!active.isEmpty()) {
+                job = active.get(0); // Assist with an in-progress job
+                for (Job j : active) {
+                    if (JOB_ORDER.compare(j, job) < 0) job = j;
+                }
+            }
+            if (job != null) {
+                job.workers++;
+                return job;
+            }
+            wait();
+        }
+        throw new InterruptedException();
+    }
+    
+    /** Unregisters the worker from a job, returning it to the queue if it is incomplete and abandoned. */
+    private synchronized void releaseJob(Job job) {
+        if (--job.workers == 0 && !job.done) {
+            active.remove(job);
+            queue.add(job);
+        }
+    }
+    
+    /** Returns true if a queued job should pre-empt the given job. */
+    private synchronized boolean shouldPreempt(Job job) {
+        Job next = queue.peek();
+        return next != null && JOB_ORDER.compare(next, job) < 0;
+    }
+    
+    private synchronized boolean tryComplete(Job job, long difficulty) {
+        if (job.done || Long.compareUnsigned(difficulty, job.threshold.getAsLong()) < 0)
+            return false; // Already completed, or upgraded concurrently
+        remove(job);
+        return true;
+    }
+    
+    private void runWorker() {
+        try {
+            while (true) {
+                Job job = takeJob();
+                try {
+                    WorkKernel kernel = new WorkKernel(job.root);
+                    while (!job.done) {
+                        long start = job.nonce.getAndAdd(BATCH_SIZE);
+                        long threshold = job.threshold.getAsLong();
+                        int offset = kernel.search(start, BATCH_SIZE, threshold);
+                        hashRate.record(offset < BATCH_SIZE ? offset + 1 : BATCH_SIZE);
+                        if (offset < BATCH_SIZE) {
+                            long work = start + offset;
+                            if (tryComplete(job, kernel.difficulty(work)))
+                                job.complete(new WorkSolution(work));
+                        } else if (shouldPreempt(job)) {
+                            break;
+                        }
+                    }
+                } finally {
+                    releaseJob(job);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Shut down
+        }
+    }
+    
+    
+    private final class Job {
+        final String key;
+        final byte[] root;
+        final long sequence = WorkGenerator.this.sequence.getAndIncrement();
+        final AtomicLong nonce = new AtomicLong(random.nextLong());
+        final List<CompletableFuture<WorkSolution>> subscribers = new ArrayList<>(1);
+        volatile WorkDifficulty threshold;
+        volatile boolean done;
+        int priority, workers;
+        
+        Job(String key, byte[] root, WorkDifficulty threshold, int priority) {
+            this.key = key;
+            this.root = root;
+            this.threshold = threshold;
+            this.priority = priority;
+        }
+        
+        void complete(WorkSolution solution) {
+            for (CompletableFuture<WorkSolution> future : subscribers())
+                future.complete(solution);
+        }
+        
+        void fail(Throwable ex) {
+            for (CompletableFuture<WorkSolution> future : subscribers())
+                future.completeExceptionally(ex);
+        }
+        
+        private List<CompletableFuture<WorkSolution>> subscribers() {
+            synchronized (WorkGenerator.this) {
+                return new ArrayList<>(subscribers);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.websocket.TopicListener;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>Pre-computes work for the frontiers of a set of tracked accounts, so that work for the next block of an account
+ * is available as soon as it is required.</p>
+ *
+ * <p>The listener returned by {@link #getConfirmationListener()} should be registered to a
+ * {@link uk.oczadly.karl.jnano.websocket.topic.TopicConfirmation} topic which is subscribed to the tracked accounts.
+ * When a block of a tracked account is confirmed, work is computed in the background for the new frontier hash, and
+ * any work held for the previous frontier is discarded. Work is computed at the base difficulty threshold of the
+ * generator, so the solution is valid for any block type.</p>
+ *
+ * <p>Computed solutions are held in a cache keyed by the root hash, which is bounded to the given capacity. Users of
+ * {@link uk.oczadly.karl.jnano.model.block.StateBlockBuilder} can retrieve the work for the previous block hash
+ * through {@link #getWork(String)} or {@link #getIfReady(String)}. Instances of this class are thread-safe.</p>
+ */
+public final class WorkPrecache {
+    
+    /** The default maximum number of cached roots. */
+    public static final int DEFAULT_CAPACITY = 1000;
+    
+    private final WorkGenerator generator;
+    private final WorkDifficulty threshold;
+    private final int capacity;
+    // Guarded by this
+    private final Map<NanoAccount, String> frontiers = new HashMap<>();
+    private final LinkedHashMap<String, CompletableFuture<WorkSolution>> cache;
+    
+    
+    /**
+     * Constructs a precache with the default capacity, computing work at the base difficulty of the generator.
+     * @param generator the work generator
+     */
+    public WorkPrecache(WorkGenerator generator) {
+        this(generator, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Constructs a precache which computes work at the base difficulty of the generator.
+     * @param generator the work generator
+     * @param capacity  the maximum number of cached roots
+     */
+    public WorkPrecache(WorkGenerator generator, int capacity) {
+        this(generator, generator != null ? generator.getDifficulties().getBase() : null, capacity);
+    }
+    
+    /**
+     * @param generator the work generator
+     * @param threshold the difficulty threshold of computed work
+     * @param capacity  the maximum number of cached roots
+     */
+    public WorkPrecache(WorkGenerator generator, WorkDifficulty threshold, int capacity) {
+        if (generator == null) throw new IllegalArgumentException("Work generator cannot be null.");
+        if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1.");
+        this.generator = generator;
+        this.threshold = threshold;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<WorkSolution>> eldest) {
+                if (size() > WorkPrecache.this.capacity) {
+                    eldest.getValue().cancel(true);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    
+    /**
+     * @return the work generator
+     */
+    public WorkGenerator getGenerator() {
+        return generator;
+    }
+    
+    /**
+     * @return the difficulty threshold of computed work
+     */
+    public WorkDifficulty getThreshold() {
+        return threshold;
+    }
+    
+    /**
+     * @return the maximum number of cached roots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * @return the number of cached roots (including those still being computed)
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+    
+    /**
+     * @return a copy of the set of tracked accounts
+     */
+    public synchronized Set<NanoAccount> getAccounts() {
+        return new HashSet<>(frontiers.keySet());
+    }
+    
+    
+    /**
+     * Begins tracking an account. Work will be computed once a block of the account is confirmed.
+     * @param account the account
+     */
+    public synchronized void addAccount(NanoAccount account) {
+        if (account == null) throw new IllegalArgumentException("Account cannot be null.");
+        frontiers.putIfAbsent(account, null);
+    }
+    
+    /**
+     * Begins tracking an account, and immediately computes work for its current frontier. For unopened accounts, the
+     * public key of the account should be given as the frontier.
+     * @param account  the account
+     * @param frontier the current frontier hash of the account
+     */
+    public void addAccount(NanoAccount account, String frontier) {
+        if (account == null) throw new IllegalArgumentException("Account cannot be null.");
+        updateFrontier(account, frontier);
+    }
+    
+    /**
+     * Stops tracking an account, and discards any work held for its frontier.
+     * @param account the account
+     * @return true if the account was tracked
+     */
+    public synchronized boolean removeAccount(NanoAccount account) {
+        if (!frontiers.containsKey(account)) return false;
+        String frontier = frontiers.remove(account);
+        if (frontier != null) discard(frontier);
+        return true;
+    }
+    
+    /**
+     * Sets the frontier of a tracked account, discarding the work for its previous frontier and computing work for
+     * the new frontier. This is called automatically by the confirmation listener, but may also be called after
+     * publishing a block.
+     * @param account  the account
+     * @param frontier the new frontier hash
+     */
+    public synchronized void updateFrontier(NanoAccount account, String frontier) {
+        if (account == null) throw new IllegalArgumentException("Account cannot be null.");
+        if (frontier == null) throw new IllegalArgumentException("Frontier cannot be null.");
+        if (!JNH.isValidHex(frontier, 64))
+            throw new IllegalArgumentException("Frontier must be a 64-character hex string.");
+        
+        String root = frontier.toUpperCase();
+        String previous = frontiers.put(account, root);
+        if (root.equals(previous)) return;
+        if (previous != null) discard(previous);
+        if (!cache.containsKey(root))
+            cache.put(root, generator.generate(root, threshold));
+    }
+    
+    /**
+     * Returns the work for the given root if it has already been computed, without blocking.
+     * @param root the root hash
+     * @return the computed work, or null if not cached or still being computed
+     */
+    public synchronized WorkSolution getIfReady(String root) {
+        if (root == null) throw new IllegalArgumentException("Root cannot be null.");
+        CompletableFuture<WorkSolution> future = cache.get(root.toUpperCase());
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+    
+    /**
+     * Returns the work for the given root. If the root is cached, the returned future will be completed once the
+     * pre-computed work is available (immediately, if already complete). Otherwise, the work is requested from the
+     * generator without being cached.
+     * @param root the root hash
+     * @return a future representing the work solution
+     */
+    public CompletableFuture<WorkSolution> getWork(String root) {
+        if (root == null) throw new IllegalArgumentException("Root cannot be null.");
+        CompletableFuture<WorkSolution> future;
+        synchronized (this) {
+            future = cache.get(root.toUpperCase());
+        }
+        return future != null ? future.copy() : generator.generate(root, threshold);
+    }
+    
+    /**
+     * Discards all cached work.
+     */
+    public synchronized void clear() {
+        for (CompletableFuture<WorkSolution> future : cache.values())
+            future.cancel(true);
+        cache.clear();
+    }
+    
+    /**
+     * Returns a listener which updates the frontiers of tracked accounts as their blocks are confirmed. This should be
+     * registered to a {@link uk.oczadly.karl.jnano.websocket.topic.TopicConfirmation} topic.
+     * @return a confirmation listener for this precache
+     */
+    public TopicListener<TopicMessageConfirmation> getConfirmationListener() {
+        return (message, context) -> {
+            if (message.getAccount() == null || message.getHash() == null) return;
+            NanoAccount account = NanoAccount.parse(message.getAccount());
+            synchronized (this) {
+                if (frontiers.containsKey(account))
+                    updateFrontier(account, message.getHash());
+            }
+        };
+    }
+    
+    
+    private void discard(String root) {
+        CompletableFuture<WorkSolution> future = cache.remove(root);
+        if (future != null) future.cancel(true);
+    }
+    
+}
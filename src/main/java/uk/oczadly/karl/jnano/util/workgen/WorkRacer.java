@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestWorkCancel;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestWorkGenerate;
+import uk.oczadly.karl.jnano.util.NanoConstants;
+import uk.oczadly.karl.jnano.util.NetworkConstants;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Generates work by racing multiple work sources against each other, returning the first valid solution. Local
+ * work is computed through {@link WorkSolution#generateAsync(String, WorkDifficulty)}, and node work is
+ * requested through {@link RequestWorkGenerate} (which may be offloaded to the node's GPU work peers).</p>
+ *
+ * <p>Every solution is verified against the requested threshold before being accepted; invalid solutions are counted
+ * as a failure of that source. Once a solution is accepted, the remaining sources are cancelled, either through the
+ * local interrupt flag or by sending a {@link RequestWorkCancel} request to the node.</p>
+ *
+ * <p>The number of attempts, wins and failures, along with the latency of winning results, are recorded for each
+ * source through {@link #getStats(Source)}. Sources may be enabled and disabled at any time. Instances of this class
+ * are thread-safe.</p>
+ */
+public final class WorkRacer {
+    
+    private final RpcQueryNode node;
+    private final NetworkConstants.WorkDifficulties difficulties;
+    private final Map<Source, SourceStats> stats = new EnumMap<>(Source.class);
+    private final Map<Source, Boolean> enabled = new EnumMap<>(Source.class);
+    
+    
+    /**
+     * Constructs a racer with both sources enabled, using the difficulty thresholds of the live Nano network.
+     * @param node the node to request work from
+     */
+    public WorkRacer(RpcQueryNode node) {
+        this(node, NanoConstants.NANO_LIVE_NET.getWorkDifficulties());
+    }
+    
+    /**
+     * Constructs a racer with both sources enabled.
+     * @param node         the node to request work from
+     * @param difficulties the difficulty thresholds used when generating work for blocks
+     */
+    public WorkRacer(RpcQueryNode node, NetworkConstants.WorkDifficulties difficulties) {
+        if (node == null) throw new IllegalArgumentException("Node cannot be null.");
+        if (difficulties == null) throw new IllegalArgumentException("Work difficulties cannot be null.");
+        this.node = node;
+        this.difficulties = difficulties;
+        for (Source source : Source.values()) {
+            stats.put(source, new SourceStats());
+            enabled.put(source, true);
+        }
+    }
+    
+    
+    /**
+     * @param source the work source
+     * @return true if the source is enabled
+     */
+    public synchronized boolean isEnabled(Source source) {
+        return enabled.get(source);
+    }
+    
+    /**
+     * Enables or disables a work source. At least one source must remain enabled.
+     * @param source  the work source
+     * @param enabled whether the source should be used
+     * @return this racer
+     */
+    public synchronized WorkRacer setEnabled(Source source, boolean enabled) {
+        if (source == null) throw new IllegalArgumentException("Source cannot be null.");
+        if (!enabled && this.enabled.entrySet().stream().noneMatch(e -> e.getKey() != source && e.getValue()))
+            throw new IllegalArgumentException("At least one work source must be enabled.");
+        this.enabled.put(source, enabled);
+        return this;
+    }
+    
+    /**
+     * @param source the work source
+     * @return the recorded statistics of the source
+     */
+    public SourceStats getStats(Source source) {
+        if (source == null) throw new IllegalArgumentException("Source cannot be null.");
+        return stats.get(source);
+    }
+    
+    
+    /**
+     * Generates work for the given block, using the block's root and the difficulty threshold for its type.
+     * @param block the block to generate work for
+     * @return a future representing the first valid work solution
+     * @see NetworkConstants.WorkDifficulties#getForBlock(Block)
+     */
+    public CompletableFuture<WorkSolution> generate(Block block) {
+        return generate(WorkSolution.getRoot(block), difficulties.getForBlock(block));
+    }
+    
+    /**
+     * Generates work for the given root, racing all of the enabled sources. Cancelling the returned future will
+     * cancel all of the sources.
+     * @param root      the root hash (64 character hex string)
+     * @param threshold the minimum difficulty threshold
+     * @return a future representing the first valid work solution
+     */
+    public CompletableFuture<WorkSolution> generate(String root, WorkDifficulty threshold) {
+        if (root == null) throw new IllegalArgumentException("Root argument cannot be null.");
+        if (!JNH.isValidHex(root, 64))
+            throw new IllegalArgumentException("Root argument must be a 64-character hex string.");
+        if (threshold == null) throw new IllegalArgumentException("Difficulty threshold cannot be null.");
+        
+        boolean useLocal, useNode;
+        synchronized (this) { // Snapshot the enabled sources, so the count matches the started sources
+            useLocal = enabled.get(Source.LOCAL);
+            useNode = enabled.get(Source.NODE);
+        }
+        Race race = new Race(root, threshold, (useLocal ? 1 : 0) + (useNode ? 1 : 0));
+        if (useLocal) {
+            CompletableFuture<WorkSolution> local = WorkSolution.generateAsync(root, threshold);
+            race.local = local;
+            race.track(Source.LOCAL, local);
+        }
+        if (useNode) {
+            race.track(Source.NODE, node.processRequestAsync(
+                    new RequestWorkGenerate.Builder(root).setDifficulty(threshold).build())
+                    .thenApply(r -> r.getWorkSolution()));
+        }
+        return race.result;
+    }
+    
+    
+    /** A single work request, shared between each of the sources. */
+    private final class Race {
+        final String root;
+        final WorkDifficulty threshold;
+        final long start = System.nanoTime();
+        final CompletableFuture<WorkSolution> result = new CompletableFuture<>();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicBoolean won = new AtomicBoolean();
+        volatile Future<WorkSolution> local;
+        volatile boolean nodePending;
+        final int sources;
+        
+        Race(String root, WorkDifficulty threshold, int sources) {
+            this.root = root;
+            this.threshold = threshold;
+            this.sources = sources;
+            result.whenComplete((r, ex) -> cancelRemaining());
+        }
+        
+        void track(Source source, CompletableFuture<WorkSolution> future) {
+            SourceStats stat = stats.get(source);
+            stat.attempts.increment();
+            if (source == Source.NODE) nodePending = true;
+            future.whenComplete((work, ex) -> {
+                if (source == Source.NODE) nodePending = false;
+                if (result.isDone()) return; // Lost the race, or cancelled
+                if (ex == null && work != null && work.calculateDifficulty(root).isValid(threshold)) {
+                    if (won.compareAndSet(false, true)) {
+                        stat.wins.increment(); // Recorded before completion, so visible to the caller
+                        stat.winLatency.add(System.nanoTime() - start);
+                        result.complete(work);
+                    }
+                } else {
+                    stat.failures.increment();
+                    if (failed.incrementAndGet() == sources) {
+                        result.completeExceptionally(ex != null ? ex
+                                : new IllegalStateException("No work source returned a valid solution."));
+                    }
+                }
+            });
+            if (result.isDone())
+                cancelRemaining(); // Completed before this source was started
+        }
+        
+        void cancelRemaining() {
+            Future<WorkSolution> local = this.local;
+            if (local != null) local.cancel(true);
+            if (nodePending)
+                node.processRequestAsync(new RequestWorkCancel(root)); // Result ignored
+        }
+    }
+    
+    
+    /** The available work sources. */
+    public enum Source {
+        /** Work computed on the local CPU. */
+        LOCAL,
+        /** Work requested from the node through RPC. */
+        NODE
+    }
+    
+    /**
+     * The recorded statistics of a work source.
+     */
+    public static final class SourceStats {
+        private final LongAdder attempts = new LongAdder(), wins = new LongAdder(), failures = new LongAdder(),
+                winLatency = new LongAdder();
+        
+        /**
+         * @return the number of requests the source has participated in
+         */
+        public long getAttempts() {
+            return attempts.sum();
+        }
+        
+        /**
+         * @return the number of requests where this source returned the first valid solution
+         */
+        public long getWins() {
+            return wins.sum();
+        }
+        
+        /**
+         * @return the number of requests where this source returned an error or an invalid solution
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+        
+        /**
+         * @return the fraction of attempts which were won by this source, between 0 and 1
+         */
+        public double getWinRate() {
+            long attempts = getAttempts();
+            return attempts == 0 ? 0 : (double)getWins() / attempts;
+        }
+        
+        /**
+         * @param unit the time unit to return
+         * @return the average time taken to return a winning solution, or 0 if the source has not won
+         */
+        public long getAverageWinLatency(TimeUnit unit) {
+            long wins = getWins();
+            return wins == 0 ? 0 : unit.convert(winLatency.sum() / wins, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * <p>An embeddable HTTP work server, which implements the {@code work_generate}, {@code work_cancel} and
+ * {@code work_validate} actions of the work peer protocol used by the Nano node. Work is computed by the given
+ * {@link WorkGenerator}, so concurrent requests for the same root are combined and processed in order of difficulty.
+ * </p>
+ *
+ * <p>Requests are parsed on a bounded pool of handler threads, and generation requests are responded to
+ * asynchronously once complete (also from the handler pool), so long-running requests do not occupy a handler thread
+ * and slow clients do not hold up the work generator's threads. A {@code work_cancel}
+ * request cancels the pending {@code work_generate} requests for the root which were received by this server, and
+ * they are responded to with an error. Generation of the root continues if it was also requested through another
+ * route (such as a {@link WorkPrecache} sharing the generator).</p>
+ *
+ * <p>To use this server from a node, register it as a work peer (see
+ * {@link uk.oczadly.karl.jnano.rpc.request.node.RequestWorkPeerAdd}). The latency of each request may be monitored
+ * by registering a {@link RequestListener}.</p>
+ *
+ * <p>This class uses the {@code jdk.httpserver} module, which is an optional dependency of this library. Modular
+ * applications which use this class must declare {@code requires jdk.httpserver;} in their module descriptor,
+ * otherwise a {@link NoClassDefFoundError} will be thrown at runtime.</p>
+ */
+public final class WorkServer {
+    
+    /** The default number of request handler threads. */
+    public static final int DEFAULT_HANDLER_THREADS = 4;
+    
+    private static final int MAX_BODY_LENGTH = 65536;
+    
+    private final WorkGenerator generator;
+    private final HttpServer server;
+    private final ExecutorService handlerPool;
+    private final Set<RequestListener> listeners = new CopyOnWriteArraySet<>();
+    private final ConcurrentMap<String, Set<CompletableFuture<WorkSolution>>> pending = new ConcurrentHashMap<>();
+    
+    
+    /**
+     * Constructs a work server listening on the given port of all interfaces.
+     * @param generator the work generator
+     * @param port      the port to listen on
+     * @throws IOException if the port could not be bound
+     */
+    public WorkServer(WorkGenerator generator, int port) throws IOException {
+        this(generator, new InetSocketAddress(port), DEFAULT_HANDLER_THREADS);
+    }
+    
+    /**
+     * @param generator      the work generator
+     * @param address        the address to listen on
+     * @param handlerThreads the maximum number of threads used to parse and respond to requests
+     * @throws IOException if the address could not be bound
+     */
+    public WorkServer(WorkGenerator generator, InetSocketAddress address, int handlerThreads) throws IOException {
+        if (generator == null) throw new IllegalArgumentException("Work generator cannot be null.");
+        if (address == null) throw new IllegalArgumentException("Address cannot be null.");
+        if (handlerThreads < 1) throw new IllegalArgumentException("Handler thread count must be at least 1.");
+        
+        this.generator = generator;
+        this.handlerPool = Executors.newFixedThreadPool(handlerThreads, r -> {
+            Thread thread = new Thread(r, "jnano-workserver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(handlerPool);
+        this.server.createContext("/", this::handle);
+    }
+    
+    
+    /**
+     * @return the work generator
+     */
+    public WorkGenerator getGenerator() {
+        return generator;
+    }
+    
+    /**
+     * @return the address the server is bound to
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+    
+    /**
+     * Registers a listener which is notified once each request has been responded to.
+     * @param listener the listener
+     */
+    public void registerListener(RequestListener listener) {
+        if (listener == null) throw new IllegalArgumentException("Listener cannot be null.");
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a previously registered request listener.
+     * @param listener the listener
+     * @return whether the listener was previously registered
+     */
+    public boolean unregisterListener(RequestListener listener) {
+        return listeners.remove(listener);
+    }
+    
+    /**
+     * Starts accepting requests. This is a non-blocking operation.
+     */
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Stops accepting requests and frees the network port. The work generator is not shut down.
+     */
+    public void stop() {
+        server.stop(0);
+        handlerPool.shutdown();
+    }
+    
+    
+    private void handle(HttpExchange exchange) {
+        long start = System.nanoTime();
+        String action = null, hash = null;
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            JsonObject request = JsonParser.parseString(readBody(exchange)).getAsJsonObject();
+            action = request.has("action") ? request.get("action").getAsString() : null;
+            hash = request.has("hash") ? request.get("hash").getAsString() : null;
+            if (action == null) {
+                respond(exchange, error("Missing action"), start, null, hash);
+            } else if (hash == null || !JNH.isValidHex(hash, 64)) {
+                respond(exchange, error("Bad block hash"), start, action, hash);
+            } else {
+                switch (action) {
+                    case "work_generate":
+                        handleGenerate(exchange, request, hash, start);
+                        break;
+                    case "work_cancel":
+                        cancelPending(hash);
+                        respond(exchange, new JsonObject(), start, action, hash);
+                        break;
+                    case "work_validate":
+                        respond(exchange, handleValidate(request, hash), start, action, hash);
+                        break;
+                    default:
+                        respond(exchange, error("Unknown action"), start, action, hash);
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException
+                | UnsupportedOperationException e) {
+            respond(exchange, error("Unable to parse request"), start, action, hash);
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+    
+    private void handleGenerate(HttpExchange exchange, JsonObject request, String hash, long start) {
+        WorkDifficulty base = generator.getDifficulties().getBase();
+        WorkDifficulty threshold = base;
+        if (request.has("difficulty")) {
+            threshold = new WorkDifficulty(request.get("difficulty").getAsString());
+        } else if (request.has("multiplier")) {
+            threshold = base.multiply(request.get("multiplier").getAsDouble());
+        }
+        String key = hash.toUpperCase();
+        CompletableFuture<WorkSolution> future = generator.generate(hash, threshold);
+        pending.compute(key, (k, futures) -> {
+            if (futures == null) futures = new HashSet<>();
+            futures.add(future);
+            return futures;
+        });
+        future.whenCompleteAsync((work, ex) -> {
+            pending.computeIfPresent(key, (k, futures) -> {
+                futures.remove(future);
+                return futures.isEmpty() ? null : futures;
+            });
+            JsonObject response;
+            if (ex == null) {
+                WorkDifficulty difficulty = work.calculateDifficulty(hash);
+                response = new JsonObject();
+                response.addProperty("work", work.getAsHexadecimal());
+                response.addProperty("difficulty", difficulty.getAsHexadecimal());
+                response.addProperty("multiplier", Double.toString(difficulty.calculateMultiplier(base)));
+                response.addProperty("hash", hash);
+            } else {
+                response = error(ex instanceof CancellationException || ex.getCause() instanceof CancellationException
+                        ? "Cancelled" : "Work generation failed");
+            }
+            respond(exchange, response, start, "work_generate", hash);
+        });
+    }
+    
+    /** Cancels the generate requests for the root received by this server, leaving any other subscribers. */
+    private void cancelPending(String hash) {
+        Set<CompletableFuture<WorkSolution>> futures = pending.remove(hash.toUpperCase());
+        if (futures != null) {
+            for (CompletableFuture<WorkSolution> future : futures)
+                future.cancel(true);
+        }
+    }
+    
+    private JsonObject handleValidate(JsonObject request, String hash) {
+        if (!request.has("work"))
+            return error("Bad work");
+        WorkSolution work = new WorkSolution(request.get("work").getAsString());
+        WorkDifficulty difficulty = work.calculateDifficulty(hash);
+        WorkDifficulty base = generator.getDifficulties().getBase();
+        WorkDifficulty receive = generator.getDifficulties().getForType(StateBlockSubType.RECEIVE);
+        
+        JsonObject response = new JsonObject();
+        if (request.has("difficulty")) {
+            WorkDifficulty threshold = new WorkDifficulty(request.get("difficulty").getAsString());
+            response.addProperty("valid", difficulty.isValid(threshold) ? "1" : "0");
+        }
+        response.addProperty("valid_all", difficulty.isValid(base) ? "1" : "0");
+        response.addProperty("valid_receive", difficulty.isValid(receive) ? "1" : "0");
+        response.addProperty("difficulty", difficulty.getAsHexadecimal());
+        response.addProperty("multiplier", Double.toString(difficulty.calculateMultiplier(base)));
+        return response;
+    }
+    
+    private void respond(HttpExchange exchange, JsonObject response, long start, String action, String hash) {
+        boolean success = !response.has("error");
+        try {
+            byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        } catch (IOException e) {
+            success = false; // Client disconnected
+        } finally {
+            exchange.close();
+        }
+        long duration = System.nanoTime() - start;
+        for (RequestListener listener : listeners)
+            listener.onRequestCompleted(action, hash, duration, success);
+    }
+    
+    
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream is = exchange.getRequestBody()) {
+            byte[] body = is.readNBytes(MAX_BODY_LENGTH);
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+    
+    private static JsonObject error(String message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("error", message);
+        return json;
+    }
+    
+    
+    /**
+     * A listener which is notified once a request has been responded to.
+     */
+    public interface RequestListener {
+        /**
+         * Called once a response has been sent to the client.
+         * @param action        the requested action, or null if not specified
+         * @param hash          the requested root hash, or null if not specified
+         * @param durationNanos the time taken between receiving the request and sending the response, in nanoseconds
+         * @param success       true if the request was successful, false if an error was returned
+         */
+        void onRequestCompleted(String action, String hash, long durationNanos, boolean success);
+    }
+    
+}
@@ -0,0 +1,12 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+/**
+ * This package contains services for generating proof-of-work solutions, such as the queued CPU-based
+ * {@link uk.oczadly.karl.jnano.util.workgen.WorkGenerator}.
+ *
+ * @author Karl Oczadly
+ */
+package uk.oczadly.karl.jnano.util.workgen;
@@ -49,7 +49,8 @@ public final class NanoWebSocketClient {
     private final AtomicLong nextReqId = new AtomicLong(0);
     private final Map<Long, CountDownLatch> requestTrackers = new ConcurrentHashMap<>();
     private final Gson gson = JNH.GSON;
-    private final ExecutorService listenerExecutors = Executors.newFixedThreadPool(500);
+    private volatile ExecutorService listenerExecutors;
+    private volatile boolean virtualThreads = false;
     private final TopicRegistry topicRegistry = new TopicRegistry(this);
     
     
@@ -140,6 +141,27 @@ public final class NanoWebSocketClient {
         return wsObserver;
     }
     
+    /**
+     * Sets whether topic listeners and observers should be notified using virtual threads (where supported by the
+     * runtime) instead of a pool of platform threads. This method will only work before the WebSocket has first been
+     * connected.
+     * @param virtualThreads true to use virtual threads
+     * @throws IllegalStateException if the listener threads have already been created
+     */
+    public void setUseVirtualThreads(boolean virtualThreads) {
+        if (listenerExecutors != null)
+            throw new IllegalStateException("The listener executor has already been created.");
+        
+        this.virtualThreads = virtualThreads;
+    }
+    
+    /**
+     * @return true if virtual threads are used to notify listeners (where supported by the runtime)
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+    
     /**
      * Returns the topic registry, which contains all the available topics which can be subscribed to.
      * @return the topic registry
@@ -154,7 +176,15 @@ public final class NanoWebSocketClient {
     }
     
     ExecutorService getListenerExecutor() {
-        return listenerExecutors;
+        ExecutorService executor = listenerExecutors;
+        if (executor == null) {
+            synchronized (this) {
+                executor = listenerExecutors;
+                if (executor == null)
+                    listenerExecutors = executor = JNH.newThreadPool(500, virtualThreads);
+            }
+        }
+        return executor;
     }
     
     protected void processRequest(JsonObject json) {
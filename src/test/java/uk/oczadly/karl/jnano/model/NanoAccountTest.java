@@ -106,6 +106,18 @@ public class NanoAccountTest {
         assertTrue(NanoAccount.isValidNano(NanoAccount.parseAddress(ACC_1_ADDR).withPrefix("xrb").toAddress()));
         assertTrue(NanoAccount.isValidNano(ACC_2_ADDR));
         assertFalse(NanoAccount.isValidNano(ACC_1_ADDR));
+        assertFalse(NanoAccount.isValidNano(INVALID_ADDR)); // Bad checksum
+        assertTrue(NanoAccount.isValidNano(ACC_2_ADDR.toUpperCase()));
+        assertFalse(NanoAccount.isValidNano(ACC_2_ADDR.replace('q', '0'))); // Illegal character
+        assertFalse(NanoAccount.isValidNano(ACC_2_ADDR.substring(1)));
+    }
+    
+    @Test
+    public void testParseUpperCase() {
+        NanoAccount addr = NanoAccount.parseAddress(ACC_2_ADDR.toUpperCase());
+        assertEquals(ACC_2_PUBKEY, addr.toPublicKey());
+        assertEquals("NANO_" + ACC_2_ADDR.substring(5), addr.toAddress());
+        assertEquals(ACC_1_ADDRSEG, NanoAccount.parseAddressSegment(ACC_1_ADDRSEG.toUpperCase()).getAddressSegment());
     }
     
     @Test
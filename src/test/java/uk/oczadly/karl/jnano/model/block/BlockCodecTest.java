@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.util.NanoConstants;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class BlockCodecTest {
+    
+    private static List<Block> testBlocks() {
+        return List.of(
+                TestConstants.randSendBlock(),
+                TestConstants.randReceiveBlock(),
+                TestConstants.randOpenBlock(),
+                TestConstants.randChangeBlock(),
+                TestConstants.randStateBlock().setSubtype(null).build(),
+                NanoConstants.NANO_LIVE_NET.getGenesisBlock());
+    }
+    
+    
+    @Test
+    public void testRoundTrip() {
+        for (Block block : testBlocks()) {
+            byte[] encoded = BlockCodec.encode(block);
+            assertEquals(BlockCodec.getLength(block.getType()) + 1, encoded.length);
+            assertEquals(BlockCodec.getTypeId(block.getType()), encoded[0]);
+            
+            Block decoded = BlockCodec.decode(encoded);
+            assertSame(block.getClass(), decoded.getClass());
+            assertBlockEquals(block, decoded);
+        }
+    }
+    
+    @Test
+    public void testBuffers() {
+        List<Block> blocks = testBlocks();
+        for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(2048), ByteBuffer.allocateDirect(2048)}) {
+            buffer.position(3); // Unaligned
+            for (Block block : blocks)
+                BlockCodec.encode(block, buffer);
+            buffer.flip().position(3);
+            for (Block block : blocks) {
+                int pos = buffer.position();
+                assertArrayEquals(block.getHashBytes(), BlockCodec.hash(buffer));
+                assertEquals(pos, buffer.position());
+                assertBlockEquals(block, BlockCodec.decode(buffer));
+            }
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+    
+    @Test
+    public void testBody() {
+        StateBlock block = TestConstants.randStateBlock().setSubtype(null).build();
+        ByteBuffer buffer = ByteBuffer.allocate(216);
+        BlockCodec.encodeBody(block, buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        assertArrayEquals(block.getHashBytes(), BlockCodec.hashBody(buffer, BlockType.STATE));
+        assertBlockEquals(block, BlockCodec.decodeBody(buffer, BlockType.STATE));
+    }
+    
+    @Test
+    public void testWireFormat() {
+        OpenBlock genesis = NanoConstants.NANO_LIVE_NET.getGenesisBlock();
+        byte[] encoded = BlockCodec.encode(genesis);
+        assertEquals(4, encoded[0]);
+        assertEquals(genesis.getSourceBlockHash(), JNH.ENC_16.encode(Arrays.copyOfRange(encoded, 1, 33)));
+        // Legacy work is little-endian
+        assertEquals("91B63FDD1754F062", JNH.ENC_16.encode(Arrays.copyOfRange(encoded, 161, 169)));
+        
+        // State work is big-endian
+        StateBlock state = TestConstants.randStateBlock().build();
+        byte[] stateEncoded = BlockCodec.encode(state);
+        assertEquals(6, stateEncoded[0]);
+        assertEquals(state.getWorkSolution().getAsHexadecimal().toUpperCase(),
+                JNH.ENC_16.encode(Arrays.copyOfRange(stateEncoded, 209, 217)));
+    }
+    
+    @Test
+    public void testErrors() {
+        try {
+            BlockCodec.encode(TestConstants.randStateBlock().build(), ByteBuffer.allocate(216));
+            fail();
+        } catch (BufferOverflowException ignored) {}
+        try {
+            BlockCodec.encode(TestConstants.randStateBlock().setSignature(null).build());
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+        try {
+            BlockCodec.decode(new byte[] {1});
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+    }
+    
+    
+    private static void assertBlockEquals(Block expected, Block actual) {
+        assertEquals(expected.getHash(), actual.getHash()); // Also includes the hash in the JSON
+        assertEquals(expected.getJsonObject(), actual.getJsonObject());
+    }
+    
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.block;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAmount;
+import uk.oczadly.karl.jnano.util.NanoConstants;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class BlockTest {
+    
+    @Test
+    public void testHashMatchesHashables() {
+        List<Block> blocks = new ArrayList<>();
+        for (int i=0; i<20; i++) {
+            blocks.add(TestConstants.randSendBlock());
+            blocks.add(TestConstants.randReceiveBlock());
+            blocks.add(TestConstants.randOpenBlock());
+            blocks.add(TestConstants.randChangeBlock());
+            blocks.add(TestConstants.randStateBlock().build());
+        }
+        blocks.add(TestConstants.randStateBlock().setBalance(BigInteger.ZERO).build());
+        blocks.add(TestConstants.randStateBlock().setBalance(NanoAmount.MAX_VALUE).build());
+        blocks.add(TestConstants.randStateBlock().setBalance(BigInteger.ONE.shiftLeft(63)).build());
+        
+        for (Block block : blocks)
+            assertArrayEquals(JNH.blake2b(32, block.generateHashables()), block.calculateHashBytes());
+    }
+    
+    @Test
+    public void testHashAll() {
+        List<Block> blocks = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i=0; i<500; i++) {
+            Block block = TestConstants.randStateBlock().build();
+            blocks.add(block);
+            expected.add(JNH.ENC_16.encode(JNH.blake2b(32, block.generateHashables())));
+        }
+        blocks.add(NanoConstants.NANO_LIVE_NET.getGenesisBlock());
+        expected.add("991CF190094C00F0B68E2E5F75F6BEE95A2E0BD93CEAA4A6734DB9F19B728948");
+        
+        assertEquals(expected, Block.hashAll(blocks));
+        assertTrue(Block.hashAll(List.of()).isEmpty());
+    }
+    
+}
@@ -10,6 +10,7 @@ import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.model.NanoAccount;
 import uk.oczadly.karl.jnano.model.NanoAmount;
 import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.SignatureUtil;
 
 import java.math.BigInteger;
 
@@ -88,4 +89,29 @@ public class StateBlockBuilderTest {
         assertEquals(JNH.ZEROES_64, newBuilder().setLinkData(null).build().getLinkData());
     }
     
-}
\ No newline at end of file
+    @Test
+    public void testBuildAndSign() {
+        String key = "9F0E444C69F77A49BD0BE89DB92C38FE713E0963165CCA12FAF5712D7657120F";
+        NanoAccount account = NanoAccount.parsePublicKey(
+                "C008B814A7D269A1FA3C6528B19201A24D797912DB9996FF02A1FF356E45552B");
+        
+        // Account derived from key
+        StateBlockBuilder builder = new StateBlockBuilder()
+                .setSubtype(StateBlockSubType.OPEN)
+                .setRepresentativeAddress(ACCOUNT)
+                .setBalance(BigInteger.TEN)
+                .setLinkData(DATA)
+                .setHash("34F1B28DA06C9CA2466159428733B971068BF154DBA2AB10372510D52E86CC97"); // Ignored
+        StateBlock block = builder.buildAndSign(key);
+        assertEquals(account, block.getAccount());
+        assertEquals(builder.setHash(null).build().getHash(), block.getHash());
+        assertTrue(SignatureUtil.verify(block, account));
+        
+        // Mismatched account
+        try {
+            newBuilder().buildAndSign(key);
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+    }
+    
+}
@@ -7,10 +7,12 @@ package uk.oczadly.karl.jnano.model.work;
 
 import org.junit.Test;
 import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.model.block.*;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertThrows;
+import java.util.Random;
+
+import static org.junit.Assert.*;
 
 public class WorkSolutionTest {
 
@@ -21,6 +23,36 @@ public class WorkSolutionTest {
                 solution.calculateDifficulty("133D48F43EC826CF0B66C78B4B3DDF0D8E57550B0F6119186DB4CB1B5D8ACC35"));
     }
     
+    @Test
+    public void testDiffCalculationMatchesBlake2b() {
+        Random random = new Random(42);
+        for (int i=0; i<100; i++) {
+            byte[] root = new byte[32];
+            random.nextBytes(root);
+            long work = random.nextLong();
+            long expected = JNH.bytesToLong(JNH.reverseArray(
+                    JNH.blake2b(8, JNH.reverseArray(JNH.longToBytes(work)), root)));
+            assertEquals(expected, new WorkSolution(work).calculateDifficulty(root).getAsLong());
+        }
+    }
+    
+    @Test
+    public void testGenerate() throws Exception {
+        String root = TestConstants.randHex(64);
+        WorkDifficulty threshold = new WorkDifficulty("ffff000000000000");
+        long hashesBefore = WorkSolution.getHashRateMeter().getTotalHashes();
+        
+        WorkSolution work = WorkSolution.generate(root, threshold);
+        assertTrue(work.calculateDifficulty(root).isValid(threshold));
+        assertTrue(WorkSolution.getHashRateMeter().getTotalHashes() > hashesBefore);
+        
+        WorkSolution workMulti = WorkSolution.generateMultiThreaded(root, threshold).get();
+        assertTrue(workMulti.calculateDifficulty(root).isValid(threshold));
+        
+        WorkSolution workAsync = WorkSolution.generateAsync(root, threshold).get();
+        assertTrue(workAsync.calculateDifficulty(root).isValid(threshold));
+    }
+    
     @Test
     public void testRootHash() {
         // Previous
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.model.work;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.block.Block;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class WorkValidatorTest {
+    
+    static final String ROOT = "133D48F43EC826CF0B66C78B4B3DDF0D8E57550B0F6119186DB4CB1B5D8ACC35";
+    static final WorkSolution WORK = new WorkSolution("6277aa854f897e6f"); // Difficulty of fffffff4bc8f0cbf
+    
+    
+    @Test
+    public void testMatchesCalculateDifficulty() {
+        Random random = new Random(42);
+        int count = 1000; // Spans multiple chunks
+        String[] roots = new String[count];
+        WorkSolution[] work = new WorkSolution[count];
+        WorkDifficulty threshold = new WorkDifficulty("c000000000000000");
+        BitSet expected = new BitSet();
+        for (int i=0; i<count; i++) {
+            String root = TestConstants.randHex(64);
+            roots[i] = i % 2 == 0 ? root.toLowerCase() : root;
+            work[i] = new WorkSolution(random.nextLong());
+            if (work[i].calculateDifficulty(root).isValid(threshold))
+                expected.set(i);
+        }
+        assertEquals(expected, WorkValidator.validate(roots, work, threshold));
+    }
+    
+    @Test
+    public void testInvalidItems() {
+        String[] roots = {ROOT, null, "XYZ", ROOT, ROOT};
+        WorkSolution[] work = {WORK, WORK, WORK, null, new WorkSolution(0)};
+        WorkDifficulty threshold = new WorkDifficulty("fffffff000000000");
+        
+        BitSet result = WorkValidator.validate(roots, work, threshold);
+        assertEquals(1, result.cardinality());
+        assertTrue(result.get(0));
+        
+        result = WorkValidator.validate(new String[] {ROOT, ROOT}, new WorkSolution[] {WORK, WORK},
+                new WorkDifficulty[] {threshold, WorkDifficulty.MAX_VALUE});
+        assertTrue(result.get(0));
+        assertFalse(result.get(1));
+    }
+    
+    @Test
+    public void testBlocks() {
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(TestConstants.randStateBlock().setPreviousBlockHash(ROOT).setWorkSolution(WORK).build());
+        blocks.add(TestConstants.randStateBlock().setPreviousBlockHash(ROOT).setWorkSolution(new WorkSolution(0))
+                .build());
+        
+        BitSet result = WorkValidator.validate(blocks, () -> new WorkDifficulty("fffffff000000000"));
+        assertTrue(result.get(0));
+        assertFalse(result.get(1));
+    }
+    
+}
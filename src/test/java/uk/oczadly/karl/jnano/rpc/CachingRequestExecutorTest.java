@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class CachingRequestExecutorTest {
+    
+    @Test
+    public void testImmutableCached() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CachingRequestExecutor executor = new CachingRequestExecutor((address, request, timeout) -> {
+            count.incrementAndGet();
+            return "{\"account\":\"nano_1\"}";
+        });
+        URL url = new URL("http://localhost:7076");
+        String request = "{\"action\":\"block_account\",\"hash\":\"ABC\"}";
+        
+        assertEquals("{\"account\":\"nano_1\"}", executor.submit(url, request, 0));
+        assertEquals("{\"account\":\"nano_1\"}", executor.submit(url, request, 0));
+        assertEquals("{\"account\":\"nano_1\"}", executor.submitAsync(url, request, 0).get());
+        assertEquals(1, count.get());
+        assertEquals(2, executor.getHitCount());
+        assertEquals(1, executor.getMissCount());
+        
+        executor.submit(new URL("http://localhost:7077"), request, 0); // Different node
+        assertEquals(2, count.get());
+    }
+    
+    @Test
+    public void testUnconfirmedAndErrorsNotCached() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CachingRequestExecutor executor = new CachingRequestExecutor((address, request, timeout) -> {
+            count.incrementAndGet();
+            return request.contains("block_info") ? "{\"confirmed\":\"false\"}" : "{\"error\":\"Block not found\"}";
+        });
+        URL url = new URL("http://localhost:7076");
+        
+        executor.submit(url, "{\"action\":\"block_info\",\"hash\":\"ABC\"}", 0);
+        executor.submit(url, "{\"action\":\"block_info\",\"hash\":\"ABC\"}", 0);
+        executor.submit(url, "{\"action\":\"block_hash\",\"block\":{}}", 0);
+        executor.submit(url, "{\"action\":\"block_hash\",\"block\":{}}", 0);
+        assertEquals(4, count.get());
+        assertEquals(0, executor.size());
+    }
+    
+    @Test
+    public void testBlocksInfoNotCached() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CachingRequestExecutor executor = new CachingRequestExecutor((address, request, timeout) -> {
+            count.incrementAndGet();
+            return "{\"blocks\":{\"ABC\":{\"confirmed\":\"true\",\"pending\":\"1\"}}}";
+        });
+        URL url = new URL("http://localhost:7076");
+        
+        executor.submit(url, "{\"action\":\"blocks_info\",\"pending\":true,\"hashes\":[\"ABC\"]}", 0);
+        executor.submit(url, "{\"action\":\"blocks_info\",\"pending\":true,\"hashes\":[\"ABC\"]}", 0);
+        assertEquals(2, count.get());
+        assertEquals(0, executor.getMissCount());
+    }
+    
+    @Test
+    public void testIsCacheable() {
+        assertTrue(CachingRequestExecutor.isCacheable("block_info", "{\"contents\":{},\"confirmed\":\"true\"}"));
+        assertTrue(CachingRequestExecutor.isCacheable("block_info", "{\"confirmed\":true}"));
+        assertFalse(CachingRequestExecutor.isCacheable("block_info", "{\"confirmed\":\"false\"}"));
+        assertFalse(CachingRequestExecutor.isCacheable("block_info", "{\"contents\":{}}"));
+        assertTrue(CachingRequestExecutor.isCacheable("block_hash", "{\"hash\":\"ABC\"}"));
+        assertFalse(CachingRequestExecutor.isCacheable("block_hash", "{\"error\":\"Block is invalid\"}"));
+        assertFalse(CachingRequestExecutor.isCacheable("block_hash", "not json"));
+    }
+    
+    @Test
+    public void testAccountInvalidation() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CachingRequestExecutor executor = new CachingRequestExecutor((address, request, timeout) -> {
+            count.incrementAndGet();
+            return "{\"balance\":\"1\",\"pending\":\"0\"}";
+        });
+        URL url = new URL("http://localhost:7076");
+        NanoAccount account = TestConstants.randAccount();
+        String request = "{\"account\":\"" + account.toAddress() + "\",\"action\":\"account_balance\"}";
+        
+        executor.submit(url, request, 0);
+        executor.submit(url, request, 0);
+        assertEquals(1, count.get());
+        
+        executor.invalidateAccount(account);
+        executor.submit(url, request, 0);
+        assertEquals(2, count.get());
+        
+        executor.setTimeToLive("account_balance", 0);
+        executor.clear();
+        executor.submit(url, request, 0);
+        executor.submit(url, request, 0);
+        assertEquals(4, count.get());
+    }
+    
+    @Test
+    public void testLruEviction() throws Exception {
+        CachingRequestExecutor executor = new CachingRequestExecutor((address, request, timeout) -> "{}", 2);
+        URL url = new URL("http://localhost:7076");
+        
+        for (int i=0; i<5; i++)
+            executor.submit(url, "{\"action\":\"account_key\",\"account\":\"" + i + "\"}", 0);
+        assertEquals(2, executor.size());
+        assertEquals(3, executor.getEvictionCount());
+    }
+    
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.rpc.ConcurrencyLimitingRequestExecutor.Priority;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class ConcurrencyLimitingRequestExecutorTest {
+    
+    private static final String REQUEST = "{\"action\":\"block_count\"}";
+    
+    
+    @Test
+    public void testQueueAndReject() throws Exception {
+        Queue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+        ConcurrencyLimitingRequestExecutor executor = new ConcurrencyLimitingRequestExecutor(
+                (AsyncRpcRequestExecutor)(address, request, timeout) -> {
+                    CompletableFuture<String> future = new CompletableFuture<>();
+                    pending.add(future);
+                    return future;
+                }, 2, 10, 2);
+        URL url = new URL("http://localhost:7076");
+        
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[5];
+        for (int i=0; i<5; i++)
+            futures[i] = executor.submitAsync(url, REQUEST, 0);
+        assertEquals(2, pending.size());
+        assertEquals(2, executor.getInFlight(Priority.INTERACTIVE));
+        assertEquals(2, executor.getQueueLength(Priority.INTERACTIVE));
+        assertEquals(1, executor.getRejectedCount(Priority.INTERACTIVE));
+        try {
+            futures[4].get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        
+        pending.poll().complete("{}");
+        assertEquals("{}", futures[0].get());
+        assertEquals(1, executor.getQueueLength(Priority.INTERACTIVE));
+        assertEquals(2, executor.getInFlight(Priority.INTERACTIVE));
+        
+        futures[3].cancel(true); // Withdraw from queue
+        assertEquals(0, executor.getQueueLength(Priority.INTERACTIVE));
+        while (!pending.isEmpty())
+            pending.poll().complete("{}");
+        assertEquals(0, executor.getInFlight(Priority.INTERACTIVE));
+    }
+    
+    @Test
+    public void testTimeoutsReduceLimit() throws Exception {
+        ConcurrencyLimitingRequestExecutor executor = new ConcurrencyLimitingRequestExecutor(
+                (address, request, timeout) -> {
+                    throw new SocketTimeoutException("Read timed out");
+                }, 20, 20, 0);
+        URL url = new URL("http://localhost:7076");
+        
+        for (int i=0; i<10; i++) {
+            try {
+                executor.submit(url, REQUEST, 1000);
+                fail();
+            } catch (SocketTimeoutException ignored) {}
+        }
+        assertTrue(executor.getLimit(Priority.INTERACTIVE) < 10);
+        assertEquals(20, executor.getLimit(Priority.BATCH));
+        assertEquals(0, executor.getInFlight(Priority.INTERACTIVE));
+    }
+    
+    @Test
+    public void testInternalErrorsReduceLimit() throws Exception {
+        ConcurrencyLimitingRequestExecutor executor = new ConcurrencyLimitingRequestExecutor(
+                (address, request, timeout) -> "{\"error\":\"Internal server error in RPC\"}", 20, 20, 0);
+        URL url = new URL("http://localhost:7076");
+        
+        for (int i=0; i<10; i++)
+            executor.submitAsync(url, REQUEST, 0).get();
+        assertTrue(executor.getLimit(Priority.INTERACTIVE) < 10);
+    }
+    
+    @Test
+    public void testPriorityPools() throws Exception {
+        Queue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+        ConcurrencyLimitingRequestExecutor executor = new ConcurrencyLimitingRequestExecutor(
+                (AsyncRpcRequestExecutor)(address, request, timeout) -> {
+                    CompletableFuture<String> future = new CompletableFuture<>();
+                    pending.add(future);
+                    return future;
+                }, 1, 1, 10);
+        executor.setPriority("blocks_info", Priority.BATCH);
+        URL url = new URL("http://localhost:7076");
+        
+        executor.submitAsync(url, "{\"action\":\"blocks_info\"}", 0);
+        executor.submitAsync(url, "{\"action\":\"blocks_info\"}", 0);
+        executor.withPriority(Priority.BATCH).submitAsync(url, REQUEST, 0);
+        assertEquals(2, executor.getQueueLength(Priority.BATCH));
+        
+        executor.submitAsync(url, REQUEST, 0);
+        assertEquals(0, executor.getQueueLength(Priority.INTERACTIVE));
+        assertEquals(1, executor.getInFlight(Priority.INTERACTIVE));
+        assertEquals(2, pending.size());
+    }
+    
+    @Test
+    public void testIsInternalError() {
+        assertTrue(ConcurrencyLimitingRequestExecutor.isInternalError("{\"error\":\"Internal server error in RPC\"}"));
+        assertTrue(ConcurrencyLimitingRequestExecutor.isInternalError("{\"error\":\"Empty response\"}"));
+        assertFalse(ConcurrencyLimitingRequestExecutor.isInternalError("{\"error\":\"Account not found\"}"));
+        assertFalse(ConcurrencyLimitingRequestExecutor.isInternalError("{\"count\":\"1\"}"));
+    }
+    
+}
@@ -15,6 +15,7 @@ import uk.oczadly.karl.jnano.rpc.response.ResponseSuccessful;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Karl Oczadly
@@ -33,6 +34,17 @@ public class JsonRequestSerializerTest {
         assertEquals(420, obj.get("val_b").getAsInt());
     }
     
+    @Test
+    public void testParseAction() {
+        assertEquals("test_command", JsonRequestSerializer.parseAction(
+                new JsonRequestSerializer().serialize(new TestRequest(1, 2))));
+        assertEquals("process", JsonRequestSerializer.parseAction(
+                "{\"block\":{\"action\":\"nested\"},\"action\":\"process\",\"json_block\":\"true\"}"));
+        assertNull(JsonRequestSerializer.parseAction("{\"action\":{}}"));
+        assertNull(JsonRequestSerializer.parseAction("{\"hash\":\"ABC\"}"));
+        assertNull(JsonRequestSerializer.parseAction("not json"));
+    }
+    
     
     static class TestRequest extends RpcRequest<ResponseSuccessful> {
         @Expose @SerializedName("val_a") private int a;
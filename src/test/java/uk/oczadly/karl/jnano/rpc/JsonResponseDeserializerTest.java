@@ -7,12 +7,16 @@ package uk.oczadly.karl.jnano.rpc;
 
 import org.junit.Assert;
 import org.junit.Test;
+import uk.oczadly.karl.jnano.internal.JNH;
 import uk.oczadly.karl.jnano.rpc.exception.*;
 import uk.oczadly.karl.jnano.rpc.response.ResponseBlockHash;
 import uk.oczadly.karl.jnano.rpc.response.ResponseSuccessful;
 
+import java.io.StringReader;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Karl Oczadly
@@ -20,6 +24,7 @@ import static org.junit.Assert.assertNotNull;
 public class JsonResponseDeserializerTest {
     
     JsonResponseDeserializer deserializer = new JsonResponseDeserializer();
+    JsonResponseDeserializer streamDeserializer = new JsonResponseDeserializer(JNH.GSON, false);
     
     
     @Test
@@ -32,6 +37,29 @@ public class JsonResponseDeserializerTest {
         assertNotNull(res.getRawResponseJson());
     }
     
+    @Test
+    public void testDeserializeStreaming() throws Exception {
+        String json = "{\"hash\": \"6AACA0D90E760840A3418F6C961423A15501DD693B96C9A7327CBD93D2B7D6EC\"}";
+        ResponseBlockHash res = streamDeserializer.deserialize(new StringReader(json), ResponseBlockHash.class);
+        
+        assertNotNull(res);
+        assertEquals(res.getBlockHash(),"6AACA0D90E760840A3418F6C961423A15501DD693B96C9A7327CBD93D2B7D6EC");
+        assertNull(res.getRawResponseJson());
+    }
+    
+    @Test
+    public void testDeserializeStreamingErrors() throws Exception {
+        assertNotNull(streamDeserializer.deserialize(errorJson("Empty response"), ResponseSuccessful.class));
+        Assert.assertThrows(RpcInvalidResponseException.class,
+                () -> streamDeserializer.deserialize("{420}", ResponseBlockHash.class));
+        Assert.assertThrows(RpcWalletLockedException.class,
+                () -> streamDeserializer.deserialize(new StringReader(errorJson("Wallet is locked")),
+                        ResponseBlockHash.class));
+        Assert.assertThrows(RpcEntityNotFoundException.class,
+                () -> streamDeserializer.deserialize("{\"blocks\": [], \"error\": \"Block not found\"}",
+                        ResponseBlockHash.class));
+    }
+    
     @Test
     public void testDeserializeEmptyResponse() throws Exception {
         String json = errorJson("Empty response");
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestBlockCount;
+import uk.oczadly.karl.jnano.rpc.response.ResponseBlockCount;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class LoadBalancingRequestExecutorTest {
+    
+    private static final String READ_REQUEST = "{\"action\":\"block_count\"}";
+    private static final String WALLET_REQUEST = "{\"action\":\"send\",\"wallet\":\"ABC\"}";
+    
+    
+    @Test
+    public void testReadOnlyDistributed() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor((address, request, timeout) -> {
+            counts.computeIfAbsent(address.getHost(), k -> new AtomicInteger()).incrementAndGet();
+            return "{}";
+        }, node1, node2);
+        
+        for (int i=0; i<200; i++)
+            executor.submit(node1, READ_REQUEST, 0);
+        assertTrue(counts.get("node1").get() > 0);
+        assertTrue(counts.get("node2").get() > 0);
+        assertEquals(0, executor.getOutstandingRequests(node1));
+    }
+    
+    @Test
+    public void testPinnedToPrimary() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        Set<String> hosts = ConcurrentHashMap.newKeySet();
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor((address, request, timeout) -> {
+            hosts.add(address.getHost());
+            return "{}";
+        }, node1, node2);
+        
+        for (int i=0; i<50; i++) {
+            executor.submit(node2, WALLET_REQUEST, 0);
+            executor.submitAsync(node2, WALLET_REQUEST, 0).get();
+            executor.submit(node2, "{\"malformed", 0);
+        }
+        assertEquals(Set.of("node1"), hosts);
+        
+        executor.setReadOnly("block_count", false);
+        for (int i=0; i<50; i++)
+            executor.submit(node2, READ_REQUEST, 0);
+        assertEquals(Set.of("node1"), hosts);
+    }
+    
+    @Test
+    public void testFailoverAndEjection() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        AtomicInteger failed = new AtomicInteger();
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor((address, request, timeout) -> {
+            if (address.getHost().equals("node2")) {
+                failed.incrementAndGet();
+                throw new IOException("Connection refused");
+            }
+            return "{\"ok\":true}";
+        }, node1, node2).setFailureThreshold(1).setEjectionTime(60000, 60000);
+        
+        for (int i=0; i<20; i++) {
+            assertEquals("{\"ok\":true}", executor.submit(node1, READ_REQUEST, 0));
+            assertEquals("{\"ok\":true}", executor.submitAsync(node1, READ_REQUEST, 0).get());
+        }
+        assertTrue(failed.get() <= 1); // Ejected after the first failure
+        assertTrue(executor.isAvailable(node1));
+        if (failed.get() == 1)
+            assertFalse(executor.isAvailable(node2));
+    }
+    
+    @Test
+    public void testProbeReadmitsNode() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        AtomicInteger probes = new AtomicInteger();
+        AtomicBoolean down = new AtomicBoolean(true);
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor((address, request, timeout) -> {
+            if (address.getHost().equals("node2")) {
+                if (request.contains("\"version\"")) probes.incrementAndGet();
+                if (down.get()) throw new IOException("Connection refused");
+            }
+            return "{}";
+        }, node1, node2).setFailureThreshold(1).setEjectionTime(0, 0);
+        
+        while (executor.isAvailable(node2))
+            executor.submit(node1, READ_REQUEST, 0);
+        down.set(false);
+        for (int i=0; i<1000 && !executor.isAvailable(node2); i++) {
+            executor.submit(node1, READ_REQUEST, 0);
+            Thread.sleep(1);
+        }
+        assertTrue(executor.isAvailable(node2));
+        assertTrue(probes.get() > 0);
+    }
+    
+    @Test
+    public void testNoFailoverForPinned() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        AtomicInteger count = new AtomicInteger();
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor((address, request, timeout) -> {
+            count.incrementAndGet();
+            throw new IOException("Connection refused");
+        }, node1, node2);
+        
+        try {
+            executor.submitAsync(node1, WALLET_REQUEST, 0).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(1, count.get());
+    }
+    
+    @Test
+    public void testHedging() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        AtomicBoolean stallNext = new AtomicBoolean(false);
+        Queue<CompletableFuture<String>> stalled = new ConcurrentLinkedQueue<>();
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor(
+                (AsyncRpcRequestExecutor)(address, request, timeout) -> {
+                    if (stallNext.getAndSet(false)) {
+                        CompletableFuture<String> future = new CompletableFuture<>();
+                        stalled.add(future);
+                        return future; // Never completes unless cancelled
+                    }
+                    return CompletableFuture.completedFuture(address.getHost());
+                }, node1, node2).setHedging(90, 1);
+        
+        for (int i=0; i<64; i++)
+            executor.submitAsync(node1, READ_REQUEST, 0).get();
+        assertEquals(0, executor.getHedgeCount());
+        
+        for (int i=0; i<10; i++) {
+            stallNext.set(true);
+            assertNotNull(executor.submit(node1, READ_REQUEST, 0));
+        }
+        assertEquals(10, stalled.size());
+        assertEquals(10, executor.getHedgeCount());
+        for (CompletableFuture<String> future : stalled)
+            assertTrue(future.isCancelled());
+        assertEquals(0, executor.getOutstandingRequests(node1));
+        assertEquals(0, executor.getOutstandingRequests(node2));
+    }
+    
+    @Test
+    public void testHedgeBudget() throws Exception {
+        URL node1 = new URL("http://node1:7076"), node2 = new URL("http://node2:7076");
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor(
+                (AsyncRpcRequestExecutor)(address, request, timeout) -> CompletableFuture.supplyAsync(() -> "{}",
+                        CompletableFuture.delayedExecutor(address.getHost().equals("node1") ? 5 : 0,
+                                TimeUnit.MILLISECONDS)), node1, node2).setHedging(1, 0);
+        
+        for (int i=0; i<100; i++)
+            executor.submit(node1, READ_REQUEST, 0);
+        assertEquals(0, executor.getHedgeCount());
+    }
+    
+    @Test
+    public void testQueryNode() throws Exception {
+        LoadBalancingRequestExecutor executor = new LoadBalancingRequestExecutor(
+                (address, request, timeout) -> "{\"count\":\"10\",\"unchecked\":\"2\",\"cemented\":\"5\"}",
+                new URL("http://node1:7076"), new URL("http://node2:7076"));
+        RpcQueryNode node = executor.newQueryNodeBuilder().build();
+        
+        assertSame(executor, node.getRequestExecutor());
+        assertEquals(executor.getPrimary(), node.getAddress());
+        ResponseBlockCount response = node.processRequest(new RequestBlockCount());
+        assertEquals(10, response.getProcessedBlocks());
+        assertEquals(10, node.processRequestAsync(new RequestBlockCount()).get().getProcessedBlocks());
+    }
+    
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.rpc.exception.RpcException;
+import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestAccountBalance;
+import uk.oczadly.karl.jnano.rpc.request.node.RequestBlockCount;
+import uk.oczadly.karl.jnano.rpc.response.ResponseBalance;
+import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class RequestBatcherTest {
+    
+    @Test
+    public void testCombinesRequests() throws Exception {
+        List<String> actions = new CopyOnWriteArrayList<>();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestBatcher(new RequestBatcher(5, 5000))
+                .setRequestExecutor((address, request, timeout) -> {
+                    JsonObject json = JsonParser.parseString(request).getAsJsonObject();
+                    actions.add(json.get("action").getAsString());
+                    JsonObject balances = new JsonObject();
+                    for (JsonElement acc : json.getAsJsonArray("accounts"))
+                        balances.add(acc.getAsString(), mockBalance(acc.getAsString()));
+                    JsonObject response = new JsonObject();
+                    response.add("balances", balances);
+                    return response.toString();
+                }).build();
+        
+        Map<NanoAccount, CompletableFuture<ResponseBalance>> futures = new HashMap<>();
+        for (int i=0; i<5; i++) {
+            NanoAccount account = TestConstants.randAccount();
+            futures.put(account, node.processRequestAsync(new RequestAccountBalance(account.toAddress())));
+        }
+        
+        for (Map.Entry<NanoAccount, CompletableFuture<ResponseBalance>> entry : futures.entrySet()) {
+            assertEquals(expectedBalance(entry.getKey().toAddress()),
+                    entry.getValue().get().getPocketed().getAsRaw());
+        }
+        assertEquals(Collections.singletonList("accounts_balances"), actions);
+    }
+    
+    @Test
+    public void testFallbackOnError() throws Exception {
+        List<String> actions = new CopyOnWriteArrayList<>();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestBatcher(new RequestBatcher(2, 5000))
+                .setRequestExecutor((address, request, timeout) -> {
+                    JsonObject json = JsonParser.parseString(request).getAsJsonObject();
+                    String action = json.get("action").getAsString();
+                    actions.add(action);
+                    if (action.equals("accounts_balances"))
+                        return "{\"error\":\"Bad account number\"}";
+                    return mockBalance(json.get("account").getAsString()).toString();
+                }).build();
+        
+        String acc1 = TestConstants.randAccount().toAddress(), acc2 = TestConstants.randAccount().toAddress();
+        CompletableFuture<ResponseBalance> f1 = node.processRequestAsync(new RequestAccountBalance(acc1));
+        CompletableFuture<ResponseBalance> f2 = node.processRequestAsync(new RequestAccountBalance(acc2));
+        
+        assertEquals(expectedBalance(acc1), f1.get().getPocketed().getAsRaw());
+        assertEquals(expectedBalance(acc2), f2.get().getPocketed().getAsRaw());
+        assertEquals(Arrays.asList("accounts_balances", "account_balance", "account_balance"), actions);
+    }
+    
+    @Test
+    public void testMetricsRecordCombinedRequest() throws Exception {
+        RpcMetrics metrics = new RpcMetrics();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestBatcher(new RequestBatcher(2, 5000))
+                .setMetricsSink(metrics)
+                .setRequestExecutor((address, request, timeout) -> {
+                    JsonObject balances = new JsonObject();
+                    for (JsonElement acc : JsonParser.parseString(request).getAsJsonObject().getAsJsonArray("accounts"))
+                        balances.add(acc.getAsString(), mockBalance(acc.getAsString()));
+                    JsonObject response = new JsonObject();
+                    response.add("balances", balances);
+                    return response.toString();
+                }).build();
+        
+        CompletableFuture<ResponseBalance> f1 = node.processRequestAsync(
+                new RequestAccountBalance(TestConstants.randAccount().toAddress()));
+        CompletableFuture<ResponseBalance> f2 = node.processRequestAsync(
+                new RequestAccountBalance(TestConstants.randAccount().toAddress()));
+        f1.get(5, TimeUnit.SECONDS);
+        f2.get(5, TimeUnit.SECONDS);
+        
+        RpcMetrics.ActionSnapshot snapshot = metrics.getSnapshot("accounts_balances");
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getInFlight());
+        assertEquals(0, snapshot.getErrorCount());
+        assertTrue(snapshot.getResponseSize() > 0);
+        assertNull(metrics.getSnapshot("account_balance"));
+    }
+    
+    @Test
+    public void testUnsupportedRequest() throws Exception {
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestBatcher(new RequestBatcher())
+                .setRequestExecutor((address, request, timeout) -> {
+                    assertTrue(request.contains("block_count"));
+                    return "{\"count\":\"10\",\"unchecked\":\"0\",\"cemented\":\"5\"}";
+                }).build();
+        
+        assertEquals(10, node.processRequest(new RequestBlockCount()).getProcessedBlocks());
+    }
+    
+    @Test
+    public void testBlockingInterceptorsDoNotStarveFlush() throws Exception {
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestBatcher(new RequestBatcher(2, 5000))
+                .setAsyncExecutorService(Executors.newFixedThreadPool(2))
+                .addInterceptor(new RpcInterceptor() { // Uses the default (blocking) async implementation
+                    @Override
+                    public <R extends RpcResponse> R intercept(RpcRequest<R> request, int timeout, Chain chain)
+                            throws IOException, RpcException {
+                        return chain.proceed(request, timeout);
+                    }
+                })
+                .setRequestExecutor((address, request, timeout) -> {
+                    JsonObject balances = new JsonObject();
+                    for (JsonElement acc : JsonParser.parseString(request).getAsJsonObject().getAsJsonArray("accounts"))
+                        balances.add(acc.getAsString(), mockBalance(acc.getAsString()));
+                    JsonObject response = new JsonObject();
+                    response.add("balances", balances);
+                    return response.toString();
+                }).build();
+        
+        String acc1 = TestConstants.randAccount().toAddress(), acc2 = TestConstants.randAccount().toAddress();
+        CompletableFuture<ResponseBalance> f1 = node.processRequestAsync(new RequestAccountBalance(acc1));
+        CompletableFuture<ResponseBalance> f2 = node.processRequestAsync(new RequestAccountBalance(acc2));
+        
+        assertEquals(expectedBalance(acc1), f1.get(5, TimeUnit.SECONDS).getPocketed().getAsRaw());
+        assertEquals(expectedBalance(acc2), f2.get(5, TimeUnit.SECONDS).getPocketed().getAsRaw());
+    }
+    
+    
+    private static JsonObject mockBalance(String account) {
+        JsonObject json = new JsonObject();
+        json.addProperty("balance", expectedBalance(account).toString());
+        json.addProperty("pending", "0");
+        return json;
+    }
+    
+    private static BigInteger expectedBalance(String account) {
+        return BigInteger.valueOf(Math.abs(NanoAccount.parse(account).toPublicKey().hashCode()));
+    }
+    
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class RpcMetricsTest {
+    
+    @Test
+    public void testBuckets() {
+        for (long value : new long[] {0, 1, 7, 8, 15, 16, 100, 1000, 123456789, 1L << 40}) {
+            int index = RpcMetrics.bucketIndex(value);
+            assertTrue(RpcMetrics.bucketLowerBound(index) <= value);
+            assertTrue(RpcMetrics.bucketLowerBound(index + 1) > value);
+        }
+        assertEquals(RpcMetrics.bucketIndex(Long.MAX_VALUE), RpcMetrics.bucketIndex(1L << 50)); // Clamped
+    }
+    
+    @Test
+    public void testHistogram() {
+        RpcMetrics metrics = new RpcMetrics();
+        for (int i=1; i<=1000; i++) {
+            metrics.requestStarted("block_count");
+            metrics.requestCompleted("block_count", 10, i * 1000L, 5, 20, 40, null);
+        }
+        RpcMetrics.ActionSnapshot snapshot = metrics.getSnapshot("block_count");
+        RpcMetrics.Histogram transport = snapshot.getTransportLatency();
+        
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(20000, snapshot.getRequestSize());
+        assertEquals(40000, snapshot.getResponseSize());
+        assertEquals(1000000, transport.getMax());
+        assertEquals(500500, transport.getMean(), 0.001);
+        assertEquals(500000, transport.getPercentile(50), 500000 * 0.125);
+        assertEquals(990000, transport.getPercentile(99), 990000 * 0.125);
+        assertEquals(1000000, transport.getPercentile(100));
+        assertEquals(10, snapshot.getSerializeLatency().getPercentile(50));
+        assertNull(metrics.getSnapshot("account_info"));
+    }
+    
+    @Test
+    public void testErrorsAndInFlight() {
+        RpcMetrics metrics = new RpcMetrics();
+        metrics.requestStarted("version");
+        metrics.requestStarted("version");
+        metrics.requestCompleted("version", 1, 1, 0, 10, -1, new IOException());
+        
+        RpcMetrics.ActionSnapshot snapshot = metrics.getSnapshot().get("version");
+        assertEquals(1, snapshot.getInFlight());
+        assertEquals(1, snapshot.getErrorCount());
+        assertEquals(Long.valueOf(1), snapshot.getErrors().get(IOException.class));
+        assertEquals(0, snapshot.getResponseSize());
+        
+        metrics.clear();
+        metrics.requestCompleted("version", 1, 1, 0, 10, 20, null); // Started before clearing
+        snapshot = metrics.getSnapshot("version");
+        assertEquals(0, snapshot.getInFlight());
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getErrorCount());
+    }
+    
+}
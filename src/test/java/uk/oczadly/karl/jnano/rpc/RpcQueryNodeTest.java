@@ -6,13 +6,21 @@
 package uk.oczadly.karl.jnano.rpc;
 
 import org.junit.Test;
+import uk.oczadly.karl.jnano.rpc.exception.RpcEntityNotFoundException;
 import uk.oczadly.karl.jnano.rpc.exception.RpcException;
 import uk.oczadly.karl.jnano.rpc.request.RpcRequest;
 import uk.oczadly.karl.jnano.rpc.response.RpcResponse;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -46,6 +54,18 @@ public class RpcQueryNodeTest {
         assertEquals(420, node.getDefaultTimeout());
     }
     
+    @Test
+    public void testDefaultExecutorService() {
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setUseVirtualThreads(true)
+                .build();
+        
+        assertTrue(node.isUsingVirtualThreads());
+        ExecutorService es = node.getExecutorService();
+        assertNotNull(es);
+        assertSame(es, node.getExecutorService());
+    }
+    
     @Test
     public void testProcess() throws Exception {
         MockRequest mockRequest = new MockRequest();
@@ -79,6 +99,207 @@ public class RpcQueryNodeTest {
         assertTrue("Callback was not successful", callback.success);
     }
     
+    @Test
+    public void testProcessAsyncExecutor() throws Exception {
+        MockRequest mockRequest = new MockRequest();
+        MockResponse mockResponse = new MockResponse();
+        CompletableFuture<String> exchange = new CompletableFuture<>();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setSerializer(req -> "REQ")
+                .setRequestExecutor((AsyncRpcRequestExecutor)(address, req, timeout) -> {
+                    assertEquals("REQ", req);
+                    return exchange;
+                })
+                .setDeserializer(new RpcResponseDeserializer() {
+                    @Override
+                    public <R extends RpcResponse> R deserialize(String response, Class<R> responseClass)
+                            throws RpcException {
+                        assertEquals("EXEC", response);
+                        return (R)mockResponse;
+                    }
+                }).build();
+        
+        MockCallback callback = new MockCallback();
+        CompletableFuture<MockResponse> futureRes = node.processRequestAsync(mockRequest, callback);
+        assertFalse(futureRes.isDone());
+        exchange.complete("EXEC");
+        assertSame(mockResponse, futureRes.get(5000, TimeUnit.MILLISECONDS));
+        assertTrue("Callback was not successful", callback.success);
+    }
+    
+    @Test
+    public void testInterceptors() throws Exception {
+        MockResponse mockResponse = new MockResponse(), cachedResponse = new MockResponse();
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger(1);
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setSerializer(req -> req.getActionCommand())
+                .setRequestExecutor((address, req, timeout) -> {
+                    calls.add("exec:" + req + ":" + timeout);
+                    if (failures.getAndDecrement() > 0) throw new IOException("Connection reset");
+                    return "EXEC";
+                })
+                .setDeserializer(new RpcResponseDeserializer() {
+                    @Override
+                    public <R extends RpcResponse> R deserialize(String response, Class<R> responseClass) {
+                        return (R)mockResponse;
+                    }
+                })
+                .addInterceptor(new RpcInterceptor() { // Retry and rewrite timeout
+                    @Override
+                    public <R extends RpcResponse> R intercept(RpcRequest<R> request, int timeout, Chain chain)
+                            throws IOException, RpcException {
+                        calls.add("retry");
+                        try {
+                            return chain.proceed(request, 1000);
+                        } catch (IOException e) {
+                            return chain.proceed(request, 1000);
+                        }
+                    }
+                    
+                    @Override
+                    public <R extends RpcResponse> CompletableFuture<R> interceptAsync(RpcRequest<R> request,
+                            int timeout, Chain chain) {
+                        calls.add("retryAsync");
+                        return chain.proceedAsync(request, 1000);
+                    }
+                })
+                .addInterceptor(new RpcInterceptor() { // Cache
+                    @Override
+                    public <R extends RpcResponse> R intercept(RpcRequest<R> request, int timeout, Chain chain)
+                            throws IOException, RpcException {
+                        calls.add("cache");
+                        if (request instanceof CachedRequest) return (R)cachedResponse;
+                        return chain.proceed(request, timeout);
+                    }
+                })
+                .build();
+        assertEquals(2, node.getInterceptors().size());
+        
+        assertSame(mockResponse, node.processRequest(new MockRequest()));
+        assertEquals(List.of("retry", "cache", "exec:mock_cmd:1000", "cache", "exec:mock_cmd:1000"), calls);
+        calls.clear();
+        
+        assertSame(cachedResponse, node.processRequest(new CachedRequest()));
+        assertEquals(List.of("retry", "cache"), calls);
+        calls.clear();
+        
+        assertSame(mockResponse, node.processRequestAsync(new MockRequest()).get(5000, TimeUnit.MILLISECONDS));
+        assertEquals(List.of("retryAsync", "cache", "exec:mock_cmd:1000"), calls); // Cache uses default async
+    }
+    
+    @Test
+    public void testMetrics() throws Exception {
+        MockResponse mockResponse = new MockResponse();
+        RpcMetrics metrics = new RpcMetrics();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setSerializer(req -> "REQ")
+                .setRequestExecutor((AsyncRpcRequestExecutor)(address, req, timeout) ->
+                        CompletableFuture.completedFuture("EXEC"))
+                .setDeserializer(new RpcResponseDeserializer() {
+                    @Override
+                    public <R extends RpcResponse> R deserialize(String response, Class<R> responseClass)
+                            throws RpcException {
+                        if (response.equals("EXEC"))
+                            return (R)mockResponse;
+                        throw new RpcEntityNotFoundException("Not found");
+                    }
+                })
+                .setMetricsSink(metrics)
+                .build();
+        assertSame(metrics, node.getMetricsSink());
+        
+        assertSame(mockResponse, node.processRequest(new MockRequest()));
+        assertSame(mockResponse, node.processRequestAsync(new MockRequest()).get());
+        
+        RpcMetrics.ActionSnapshot snapshot = metrics.getSnapshot("mock_cmd");
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getInFlight());
+        assertEquals(0, snapshot.getErrorCount());
+        assertEquals(6, snapshot.getRequestSize());
+        assertEquals(8, snapshot.getResponseSize());
+        assertEquals(2, snapshot.getSerializeLatency().getCount());
+        assertEquals(2, snapshot.getDeserializeLatency().getCount());
+        assertEquals(1, metrics.getSnapshot().size());
+    }
+    
+    @Test
+    public void testMetricsStreamedBodyIsTransport() throws Exception {
+        RpcMetrics metrics = new RpcMetrics();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setSerializer(req -> "REQ")
+                .setRequestExecutor(new RpcRequestExecutor() {
+                    @Override
+                    public String submit(URL address, String request, int timeout) {
+                        throw new UnsupportedOperationException();
+                    }
+                    
+                    @Override
+                    public Reader submitStream(URL address, String request, int timeout) {
+                        return new StringReader("EXEC") {
+                            @Override
+                            public int read(char[] cbuf, int off, int len) throws IOException {
+                                try {
+                                    Thread.sleep(50); // Slow response body
+                                } catch (InterruptedException e) {
+                                    throw new InterruptedIOException();
+                                }
+                                return super.read(cbuf, off, len);
+                            }
+                        };
+                    }
+                })
+                .setDeserializer(new RpcResponseDeserializer() {
+                    @Override
+                    public <R extends RpcResponse> R deserialize(String response, Class<R> responseClass) {
+                        return (R)new MockResponse();
+                    }
+                })
+                .setMetricsSink(metrics)
+                .build();
+        node.processRequest(new MockRequest());
+        
+        RpcMetrics.ActionSnapshot snapshot = metrics.getSnapshot("mock_cmd");
+        assertTrue(snapshot.getTransportLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(snapshot.getDeserializeLatency().getMax() < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+    
+    @Test
+    public void testMetricsErrors() throws Exception {
+        RpcMetrics metrics = new RpcMetrics();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setSerializer(req -> "REQ")
+                .setRequestExecutor((address, req, timeout) -> {
+                    if (timeout == 1) throw new IOException("Connection refused");
+                    return "ERR";
+                })
+                .setDeserializer(new RpcResponseDeserializer() {
+                    @Override
+                    public <R extends RpcResponse> R deserialize(String response, Class<R> responseClass)
+                            throws RpcException {
+                        throw new RpcEntityNotFoundException("Not found");
+                    }
+                })
+                .setMetricsSink(metrics)
+                .build();
+        
+        try {
+            node.processRequest(new MockRequest());
+            fail();
+        } catch (RpcEntityNotFoundException ignored) {}
+        try {
+            node.processRequest(new MockRequest(), 1);
+            fail();
+        } catch (IOException ignored) {}
+        
+        RpcMetrics.ActionSnapshot snapshot = metrics.getSnapshot("mock_cmd");
+        assertEquals(2, snapshot.getCount());
+        assertEquals(2, snapshot.getErrorCount());
+        assertEquals(Long.valueOf(1), snapshot.getErrors().get(RpcEntityNotFoundException.class));
+        assertEquals(Long.valueOf(1), snapshot.getErrors().get(IOException.class));
+        assertEquals(3, snapshot.getResponseSize());
+    }
+    
     
     
     static class MockRequest extends RpcRequest<MockResponse> {
@@ -87,6 +308,8 @@ public class RpcQueryNodeTest {
         }
     }
     
+    static class CachedRequest extends MockRequest {}
+    
     static class MockResponse extends RpcResponse {}
     
     static class MockCallback implements QueryCallback<MockRequest, MockResponse> {
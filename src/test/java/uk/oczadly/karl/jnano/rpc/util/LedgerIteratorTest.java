@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.rpc.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class LedgerIteratorTest {
+    
+    @Test
+    public void testIteratesAllPages() {
+        TreeMap<NanoAccount, String> ledger = new TreeMap<>(Comparator.comparing(NanoAccount::getAccountIndex));
+        for (int i=0; i<25; i++)
+            ledger.put(TestConstants.randAccount(), TestConstants.randHex(64));
+        AtomicInteger requests = new AtomicInteger();
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestExecutor((address, request, timeout) -> {
+                    requests.incrementAndGet();
+                    return mockLedger(ledger, JsonParser.parseString(request).getAsJsonObject());
+                }).build();
+        
+        List<NanoAccount> accounts = new LedgerIterator(node, 10).stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        
+        assertEquals(new ArrayList<>(ledger.keySet()), accounts);
+        assertEquals(3, requests.get());
+    }
+    
+    @Test
+    public void testEmptyLedger() {
+        RpcQueryNode node = new RpcQueryNode.Builder()
+                .setRequestExecutor((address, request, timeout) -> "{\"accounts\": \"\"}")
+                .build();
+        
+        assertFalse(new LedgerIterator(node, 10).hasNext());
+    }
+    
+    
+    private static String mockLedger(TreeMap<NanoAccount, String> ledger, JsonObject request) {
+        assertEquals("ledger", request.get("action").getAsString());
+        NanoAccount start = NanoAccount.parse(request.get("account").getAsString());
+        int count = request.get("count").getAsInt();
+        
+        JsonObject accounts = new JsonObject();
+        ledger.tailMap(start, true).entrySet().stream().limit(count).forEach(e -> {
+            JsonObject info = new JsonObject();
+            info.addProperty("frontier", e.getValue());
+            info.addProperty("balance", "1");
+            accounts.add(e.getKey().toAddress(), info);
+        });
+        JsonObject response = new JsonObject();
+        response.add("accounts", accounts);
+        return response.toString();
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.block.OpenBlock;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class SignatureUtilTest {
+    
+    private static final String KEY = "9F0E444C69F77A49BD0BE89DB92C38FE713E0963165CCA12FAF5712D7657120F";
+    private static final NanoAccount ACCOUNT = WalletUtil.deriveAccountFromKey(KEY);
+    private static final String HASH = "4F4648622C812DD194E0FAAB0A5BA2DFE6391E807FCDD814FE3FBB28A9919136";
+    
+    
+    @Test
+    public void testVerifyGenesis() {
+        NetworkConstants[] networks = {NanoConstants.NANO_LIVE_NET, NanoConstants.NANO_BETA_NET};
+        for (NetworkConstants network : networks) {
+            OpenBlock genesis = network.getGenesisBlock();
+            assertTrue(SignatureUtil.verify(genesis, genesis.getAccount()));
+            assertTrue(SignatureUtil.verify(genesis.getHash(), genesis.getSignature(), genesis.getAccount()));
+            assertFalse(SignatureUtil.verify(genesis, ACCOUNT));
+        }
+    }
+    
+    @Test
+    public void testSignAndVerify() {
+        String signature = SignatureUtil.sign(HASH, KEY);
+        assertEquals(128, signature.length());
+        assertEquals(signature, SignatureUtil.sign(HASH.toLowerCase(), KEY)); // Deterministic
+        assertTrue(SignatureUtil.verify(HASH, signature, ACCOUNT));
+        assertTrue(SignatureUtil.verify(HASH, signature.toLowerCase(), ACCOUNT));
+        
+        // Tampered hash
+        assertFalse(SignatureUtil.verify("5" + HASH.substring(1), signature, ACCOUNT));
+        // Tampered signature
+        assertFalse(SignatureUtil.verify(HASH, "0" + signature.substring(1), ACCOUNT));
+        // Malformed signature
+        assertFalse(SignatureUtil.verify(HASH, "ABC", ACCOUNT));
+    }
+    
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.block.Block;
+import uk.oczadly.karl.jnano.model.block.StateBlockBuilder;
+import uk.oczadly.karl.jnano.model.block.StateBlockSubType;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageVote;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class SignatureValidatorTest {
+    
+    private static final String SEED = "0000000000000000000000000000000000000000000000000000000000000000";
+    private static final BigInteger P = BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19));
+    private static final BigInteger L = BigInteger.ONE.shiftLeft(252)
+            .add(new BigInteger("27742317777372353535851937790883648493"));
+    
+    
+    @Test
+    public void testVerifyMessages() {
+        int count = 150; // Spans multiple batches
+        byte[][] messages = new byte[count][], signatures = new byte[count][], publicKeys = new byte[count][];
+        for (int i=0; i<count; i++) {
+            byte[] key = WalletUtil.deriveKeyFromSeed(new byte[32], i % 5);
+            messages[i] = JNH.blake2b(32, JNH.longToBytes(i));
+            signatures[i] = SignatureUtil.sign(messages[i], key);
+            publicKeys[i] = WalletUtil.derivePublicKey(key);
+        }
+        BitSet expected = new BitSet();
+        expected.set(0, count);
+        assertEquals(expected, SignatureValidator.verify(messages, signatures, publicKeys));
+        
+        // Tamper with entries in two of the batches
+        signatures[3] = Arrays.copyOf(signatures[3], 64);
+        signatures[3][10] ^= 1;
+        messages[70] = JNH.blake2b(32, messages[70]);
+        publicKeys[71] = publicKeys[72];
+        signatures[100] = new byte[10]; // Malformed
+        messages[101] = null;
+        expected.clear(3);
+        expected.clear(70);
+        expected.clear(71);
+        expected.clear(100);
+        expected.clear(101);
+        assertEquals(expected, SignatureValidator.verify(messages, signatures, publicKeys));
+    }
+    
+    @Test
+    public void testVerifyBlocks() {
+        NanoAccount genesis = NanoConstants.NANO_LIVE_NET.getGenesisAccount();
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(NanoConstants.NANO_LIVE_NET.getGenesisBlock());
+        for (int i=0; i<5; i++) {
+            blocks.add(new StateBlockBuilder()
+                    .setSubtype(StateBlockSubType.CHANGE)
+                    .setPreviousBlockHash(JNH.ENC_16.encode(JNH.blake2b(32, JNH.longToBytes(i))))
+                    .setRepresentativeAddress(genesis)
+                    .setBalance(BigInteger.ONE)
+                    .buildAndSign(WalletUtil.deriveKeyFromSeed(SEED, i)));
+        }
+        blocks.add(new StateBlockBuilder()
+                .setSubtype(StateBlockSubType.CHANGE)
+                .setAccountAddress(genesis)
+                .setPreviousBlockHash(JNH.ZEROES_64)
+                .setRepresentativeAddress(genesis)
+                .setBalance(BigInteger.ONE)
+                .build()); // Unsigned
+        
+        BitSet expected = new BitSet();
+        expected.set(0, 6);
+        assertEquals(expected, SignatureValidator.verifyBlocks(blocks));
+        
+        // Explicit accounts
+        List<NanoAccount> accounts = new ArrayList<>();
+        for (int i=0; i<blocks.size(); i++)
+            accounts.add(null);
+        accounts.set(2, genesis); // Wrong account
+        expected.clear(2);
+        assertEquals(expected, SignatureValidator.verifyBlocks(blocks, accounts));
+    }
+    
+    @Test
+    public void testVerifyVotes() {
+        String key = WalletUtil.deriveKeyFromSeed(SEED, 0);
+        String hash1 = "4F4648622C812DD194E0FAAB0A5BA2DFE6391E807FCDD814FE3FBB28A9919136";
+        String hash2 = "A09DAA9C69FD79A940B51ADC04DF5C9F5693F8445B8B02EFA6A9C9DC650C586B";
+        List<TopicMessageVote> votes = new ArrayList<>();
+        votes.add(JNH.GSON.fromJson(createVote(key, 1, hash1), TopicMessageVote.class));
+        votes.add(JNH.GSON.fromJson(createVote(key, 0xFFFFFFFFFFFFFFFFL, hash1, hash2), TopicMessageVote.class));
+        votes.add(JNH.GSON.fromJson(createVote(key, 2, hash2), TopicMessageVote.class));
+        votes.add(JNH.GSON.fromJson(createVote(key, 3, hash1, hash2), TopicMessageVote.class));
+        // Signature of a different sequence number
+        JsonObject replayed = createVote(key, 3, hash1);
+        replayed.addProperty("sequence", "4");
+        votes.add(JNH.GSON.fromJson(replayed, TopicMessageVote.class));
+        
+        BitSet expected = new BitSet();
+        expected.set(0, 4);
+        assertEquals(expected, SignatureValidator.verifyVotes(votes));
+    }
+    
+    @Test
+    public void testRejectsSmallOrderComponentInR() {
+        byte[] key = WalletUtil.deriveKeyFromSeed(new byte[32], 0);
+        byte[] nonceKey = WalletUtil.deriveKeyFromSeed(new byte[32], 1);
+        byte[] publicKey = WalletUtil.derivePublicKey(key);
+        byte[] message = JNH.blake2b(32, JNH.longToBytes(1));
+        
+        // R' = R + (0, -1), where (0, -1) is the point of order 2. Negating both coordinates of R gives R'.
+        byte[] r = WalletUtil.derivePublicKey(nonceKey);
+        BigInteger y = decodeLE(r).clearBit(255);
+        byte[] rTorsion = encodeLE(P.subtract(y));
+        rTorsion[31] |= (byte)(~r[31] & 0x80);
+        byte[] forged = signWithR(rTorsion, expandScalar(nonceKey), message, key, publicKey);
+        assertInvalid(message, forged, publicKey);
+    }
+    
+    @Test
+    public void testRejectsNonCanonicalR() {
+        byte[] key = WalletUtil.deriveKeyFromSeed(new byte[32], 0);
+        byte[] publicKey = WalletUtil.derivePublicKey(key);
+        byte[] message = JNH.blake2b(32, JNH.longToBytes(2));
+        
+        // R is the identity (with nonce 0), encoded canonically as y = 1
+        byte[] identity = encodeLE(BigInteger.ONE);
+        byte[] sig = signWithR(identity, BigInteger.ZERO, message, key, publicKey);
+        assertTrue(SignatureValidator.verify(new byte[][] {message, message},
+                new byte[][] {sig, SignatureUtil.sign(message, key)}, new byte[][] {publicKey, publicKey}).get(0));
+        
+        // Non-canonical encodings of the identity, as y = p + 1 and with the sign bit set for x = 0
+        assertInvalid(message, signWithR(encodeLE(P.add(BigInteger.ONE)), BigInteger.ZERO, message, key, publicKey),
+                publicKey);
+        byte[] negativeZero = encodeLE(BigInteger.ONE);
+        negativeZero[31] |= (byte)0x80;
+        assertInvalid(message, signWithR(negativeZero, BigInteger.ZERO, message, key, publicKey), publicKey);
+    }
+    
+    
+    /** Asserts that the signature is rejected, both individually and within a batch of otherwise valid entries. */
+    private static void assertInvalid(byte[] message, byte[] signature, byte[] publicKey) {
+        byte[] key = WalletUtil.deriveKeyFromSeed(new byte[32], 2);
+        byte[] validMessage = JNH.blake2b(32, message);
+        byte[] validSig = SignatureUtil.sign(validMessage, key), validKey = WalletUtil.derivePublicKey(key);
+        
+        assertFalse(SignatureUtil.verify(message, signature, publicKey));
+        BitSet expected = new BitSet();
+        expected.set(1);
+        for (int i=0; i<64; i++) { // The random batch scalars previously accepted small-order errors half the time
+            assertEquals(expected, SignatureValidator.verify(new byte[][] {message, validMessage},
+                    new byte[][] {signature, validSig}, new byte[][] {publicKey, validKey}));
+        }
+    }
+    
+    /** Signs the message using the given encoding of R and its nonce r, i.e. S = r + H(R || A || M) * a. */
+    private static byte[] signWithR(byte[] encodedR, BigInteger r, byte[] message, byte[] key, byte[] publicKey) {
+        BigInteger h = decodeLE(JNH.blake2b(64, encodedR, publicKey, message)).mod(L);
+        byte[] sig = new byte[64];
+        System.arraycopy(encodedR, 0, sig, 0, 32);
+        System.arraycopy(encodeLE(r.add(h.multiply(expandScalar(key))).mod(L)), 0, sig, 32, 32);
+        return sig;
+    }
+    
+    private static BigInteger expandScalar(byte[] key) {
+        byte[] d = JNH.blake2b(64, key);
+        d[0] &= (byte)248;
+        d[31] &= 127;
+        d[31] |= 64;
+        return decodeLE(Arrays.copyOf(d, 32));
+    }
+    
+    private static BigInteger decodeLE(byte[] bytes) {
+        byte[] be = new byte[bytes.length];
+        for (int i=0; i<bytes.length; i++)
+            be[i] = bytes[bytes.length - 1 - i];
+        return new BigInteger(1, be);
+    }
+    
+    private static byte[] encodeLE(BigInteger val) {
+        byte[] be = val.toByteArray(), le = new byte[32];
+        for (int i=0; i<32 && i<be.length; i++)
+            le[i] = be[be.length - 1 - i];
+        return le;
+    }
+    
+    private static JsonObject createVote(String key, long sequence, String...hashes) {
+        byte[][] hashables = new byte[hashes.length + 2][];
+        hashables[0] = "vote ".getBytes(StandardCharsets.US_ASCII);
+        for (int i=0; i<hashes.length; i++)
+            hashables[i + 1] = JNH.ENC_16.decode(hashes[i]);
+        byte[] sequenceBytes = JNH.longToBytes(sequence);
+        for (int i=0; i<4; i++) { // Reverse to little-endian
+            byte b = sequenceBytes[i];
+            sequenceBytes[i] = sequenceBytes[7 - i];
+            sequenceBytes[7 - i] = b;
+        }
+        hashables[hashables.length - 1] = sequenceBytes;
+        
+        JsonObject json = new JsonObject();
+        json.addProperty("account", WalletUtil.deriveAccountFromKey(key).toAddress());
+        json.addProperty("signature", SignatureUtil.sign(JNH.ENC_16.encode(JNH.blake2b(32, hashables)), key));
+        json.addProperty("sequence", Long.toUnsignedString(sequence));
+        JsonArray blocks = new JsonArray();
+        for (String hash : hashes)
+            blocks.add(hash);
+        json.add("blocks", blocks);
+        json.addProperty("type", "vote");
+        return json;
+    }
+    
+}
@@ -7,6 +7,10 @@ package uk.oczadly.karl.jnano.util;
 
 import org.junit.Test;
 import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -25,5 +29,42 @@ public class WalletUtilTest {
         assertEquals("A09DAA9C69FD79A940B51ADC04DF5C9F5693F8445B8B02EFA6A9C9DC650C586B",
                 WalletUtil.deriveKeyFromSeed(seed, 24));
     }
-
-}
\ No newline at end of file
+    
+    @Test
+    public void deriveAccount() {
+        String seed = "0000000000000000000000000000000000000000000000000000000000000000";
+        assertEquals("9F0E444C69F77A49BD0BE89DB92C38FE713E0963165CCA12FAF5712D7657120F",
+                WalletUtil.deriveKeyFromSeed(seed, 0));
+        NanoAccount account = WalletUtil.deriveAccountFromSeed(seed, 0);
+        assertEquals("C008B814A7D269A1FA3C6528B19201A24D797912DB9996FF02A1FF356E45552B", account.toPublicKey());
+        assertEquals(account, WalletUtil.deriveAccountFromKey(
+                "9f0e444c69f77a49bd0be89db92c38fe713e0963165cca12faf5712d7657120f"));
+    }
+    
+    @Test
+    public void deriveAccountsBulk() {
+        String seed = "4F4648622C812DD194E0FAAB0A5BA2DFE6391E807FCDD814FE3FBB28A9919136";
+        List<WalletUtil.DerivedAccount> accounts = WalletUtil.deriveAccounts(seed, 20, 100)
+                .collect(Collectors.toList());
+        assertEquals(80, accounts.size());
+        for (int i=0; i<accounts.size(); i++) {
+            WalletUtil.DerivedAccount account = accounts.get(i);
+            assertEquals(20 + i, account.getIndex());
+            assertEquals(WalletUtil.deriveKeyFromSeed(seed, 20 + i), account.getPrivateKey());
+            assertEquals(WalletUtil.deriveAccountFromSeed(seed, 20 + i), account.getAccount());
+        }
+        assertEquals("A09DAA9C69FD79A940B51ADC04DF5C9F5693F8445B8B02EFA6A9C9DC650C586B",
+                accounts.get(4).getPrivateKey());
+        assertEquals(0, WalletUtil.deriveAccounts(seed, 5, 5).count());
+    }
+    
+    @Test
+    public void findAccountIndex() {
+        String seed = "4F4648622C812DD194E0FAAB0A5BA2DFE6391E807FCDD814FE3FBB28A9919136";
+        NanoAccount account = WalletUtil.deriveAccountFromSeed(seed, 137);
+        assertEquals(137, WalletUtil.findAccountIndex(seed, account, 0, 1000));
+        assertEquals(-1, WalletUtil.findAccountIndex(seed, account, 0, 137));
+        assertEquals(137, WalletUtil.findAccountIndex(seed.toLowerCase(), account, 137, 138));
+    }
+    
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.util.NanoConstants;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class WorkGeneratorTest {
+    
+    static final String ROOT = "718CC2121C3E641059BC1C2CFC45666C99E8AE922F7A807B7D07B62C995D79E2";
+    static final WorkDifficulty LOW = new WorkDifficulty("fff0000000000000");
+    static final WorkDifficulty HIGHER = new WorkDifficulty("fffc000000000000");
+    static final WorkDifficulty IMPOSSIBLE = WorkDifficulty.MAX_VALUE;
+    
+    
+    @Test
+    public void testGenerate() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(NanoConstants.NANO_LIVE_NET.getWorkDifficulties(), 2)) {
+            WorkSolution work = gen.generate(ROOT, LOW).get(30, TimeUnit.SECONDS);
+            assertTrue(work.calculateDifficulty(ROOT).isValid(LOW));
+            assertTrue(gen.getHashRateMeter().getTotalHashes() > 0);
+            assertEquals(0, gen.getQueueDepth());
+            assertEquals(0, gen.getActiveCount());
+        }
+    }
+    
+    @Test
+    public void testDuplicateRootsCombined() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(NanoConstants.NANO_LIVE_NET.getWorkDifficulties(), 1)) {
+            CompletableFuture<WorkSolution> blocker = gen.generate(ROOT.replace('7', '0'), IMPOSSIBLE, 10);
+            awaitActive(gen);
+            CompletableFuture<WorkSolution> f1 = gen.generate(ROOT, LOW);
+            CompletableFuture<WorkSolution> f2 = gen.generate(ROOT.toLowerCase(), LOW);
+            assertEquals(1, gen.getQueueDepth());
+            blocker.cancel(true);
+            assertEquals(f1.get(30, TimeUnit.SECONDS), f2.get(30, TimeUnit.SECONDS));
+        }
+    }
+    
+    @Test
+    public void testUpgrade() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(NanoConstants.NANO_LIVE_NET.getWorkDifficulties(), 1)) {
+            CompletableFuture<WorkSolution> blocker = gen.generate(ROOT.replace('7', '0'), IMPOSSIBLE, 10);
+            CompletableFuture<WorkSolution> f1 = gen.generate(ROOT, LOW);
+            CompletableFuture<WorkSolution> f2 = gen.generate(ROOT, HIGHER);
+            assertFalse(gen.upgrade(ROOT, LOW));
+            blocker.cancel(true);
+            assertTrue(f1.get(60, TimeUnit.SECONDS).calculateDifficulty(ROOT).isValid(HIGHER));
+            assertEquals(f1.get(), f2.get());
+        }
+    }
+    
+    @Test
+    public void testCancel() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(NanoConstants.NANO_LIVE_NET.getWorkDifficulties(), 1)) {
+            CompletableFuture<WorkSolution> f1 = gen.generate(ROOT, IMPOSSIBLE);
+            CompletableFuture<WorkSolution> f2 = gen.generate(ROOT, IMPOSSIBLE);
+            f1.cancel(true);
+            assertFalse(f2.isDone());
+            assertTrue(gen.cancel(ROOT));
+            try {
+                f2.get(5, TimeUnit.SECONDS);
+                fail("Expected cancellation.");
+            } catch (CancellationException ignored) {}
+            assertFalse(gen.cancel(ROOT));
+            assertEquals(0, gen.getQueueDepth() + gen.getActiveCount());
+        }
+    }
+    
+    @Test
+    public void testShutdownStopsWorkers() throws Exception {
+        WorkGenerator gen = new WorkGenerator(NanoConstants.NANO_LIVE_NET.getWorkDifficulties(), 1);
+        CompletableFuture<WorkSolution> future = gen.generate(ROOT, IMPOSSIBLE);
+        awaitActive(gen);
+        gen.shutdown();
+        assertTrue(future.isCancelled());
+        Thread.sleep(100); // Allow the current batch to finish
+        long hashes = gen.getHashRateMeter().getTotalHashes();
+        Thread.sleep(100);
+        assertEquals(hashes, gen.getHashRateMeter().getTotalHashes());
+    }
+    
+    
+    private static void awaitActive(WorkGenerator gen) throws InterruptedException {
+        while (gen.getActiveCount() == 0)
+            Thread.sleep(1);
+    }
+    
+}
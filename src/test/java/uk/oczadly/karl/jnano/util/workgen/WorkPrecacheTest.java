@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.TestConstants;
+import uk.oczadly.karl.jnano.internal.JNH;
+import uk.oczadly.karl.jnano.model.NanoAccount;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.websocket.topic.message.TopicMessageConfirmation;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class WorkPrecacheTest {
+    
+    static final WorkDifficulty LOW = new WorkDifficulty("fff0000000000000");
+    static final String HASH_1 = "718CC2121C3E641059BC1C2CFC45666C99E8AE922F7A807B7D07B62C995D79E2";
+    static final String HASH_2 = "A170D51B94E00371ACE76E35AC81DC9405D5D04D4CEBC399AEACE07AE05DD293";
+    
+    
+    @Test
+    public void testConfirmationPrecaches() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(() -> LOW, 1)) {
+            WorkPrecache precache = new WorkPrecache(gen);
+            NanoAccount account = TestConstants.randAccount();
+            precache.addAccount(account);
+            
+            precache.getConfirmationListener().onMessage(confirmation(TestConstants.randAccount(), HASH_1), null);
+            assertEquals(0, precache.size()); // Not tracked
+            
+            precache.getConfirmationListener().onMessage(confirmation(account, HASH_1), null);
+            assertEquals(1, precache.size());
+            WorkSolution work = precache.getWork(HASH_1.toLowerCase()).get(30, TimeUnit.SECONDS);
+            assertEquals(work, precache.getIfReady(HASH_1));
+            assertTrue(work.calculateDifficulty(HASH_1).isValid(LOW));
+            
+            precache.getConfirmationListener().onMessage(confirmation(account, HASH_2), null);
+            assertEquals(1, precache.size());
+            assertNull(precache.getIfReady(HASH_1)); // Stale frontier evicted
+            
+            assertTrue(precache.removeAccount(account));
+            assertEquals(0, precache.size());
+        }
+    }
+    
+    @Test
+    public void testCapacity() {
+        try (WorkGenerator gen = new WorkGenerator(() -> WorkDifficulty.MAX_VALUE, 1)) {
+            WorkPrecache precache = new WorkPrecache(gen, 1);
+            precache.addAccount(TestConstants.randAccount(), HASH_1);
+            precache.addAccount(TestConstants.randAccount(), HASH_2);
+            assertEquals(1, precache.size());
+            assertEquals(1, gen.getQueueDepth() + gen.getActiveCount());
+        }
+    }
+    
+    
+    private static TopicMessageConfirmation confirmation(NanoAccount account, String hash) {
+        JsonObject json = new JsonObject();
+        json.addProperty("account", account.toAddress());
+        json.addProperty("hash", hash);
+        return JNH.GSON.fromJson(json, TopicMessageConfirmation.class);
+    }
+    
+}
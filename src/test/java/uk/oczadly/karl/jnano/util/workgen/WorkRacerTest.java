@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+import uk.oczadly.karl.jnano.rpc.RpcQueryNode;
+import uk.oczadly.karl.jnano.rpc.RpcRequestExecutor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class WorkRacerTest {
+    
+    static final String ROOT = "133D48F43EC826CF0B66C78B4B3DDF0D8E57550B0F6119186DB4CB1B5D8ACC35";
+    static final String WORK = "6277aa854f897e6f"; // Difficulty of fffffff4bc8f0cbf
+    
+    
+    @Test
+    public void testNodeWins() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        WorkRacer racer = new WorkRacer(node((address, request, timeout) -> {
+            requests.add(request);
+            return "{\"work\":\"" + WORK + "\",\"difficulty\":\"fffffff4bc8f0cbf\",\"multiplier\":\"1.0\"}";
+        }));
+        
+        WorkSolution work = racer.generate(ROOT, new WorkDifficulty("fffffff000000000")).get(10, TimeUnit.SECONDS);
+        assertEquals(new WorkSolution(WORK), work);
+        assertEquals(1, racer.getStats(WorkRacer.Source.NODE).getWins());
+        assertEquals(1, racer.getStats(WorkRacer.Source.LOCAL).getAttempts());
+        assertEquals(0, racer.getStats(WorkRacer.Source.LOCAL).getWins());
+        assertEquals(1.0, racer.getStats(WorkRacer.Source.NODE).getWinRate(), 0);
+        assertEquals(1, requests.size()); // Node source completed, so no cancel request
+    }
+    
+    @Test
+    public void testLocalWinsOnNodeError() throws Exception {
+        WorkRacer racer = new WorkRacer(node((address, request, timeout) -> "{\"error\":\"Work generation failed\"}"));
+        WorkDifficulty threshold = new WorkDifficulty("fff0000000000000");
+        
+        WorkSolution work = racer.generate(ROOT, threshold).get(10, TimeUnit.SECONDS);
+        assertTrue(work.calculateDifficulty(ROOT).isValid(threshold));
+        assertEquals(1, racer.getStats(WorkRacer.Source.LOCAL).getWins());
+        assertEquals(0, racer.getStats(WorkRacer.Source.NODE).getWins());
+    }
+    
+    @Test
+    public void testInvalidWorkRejected() throws Exception {
+        WorkRacer racer = new WorkRacer(node((address, request, timeout) ->
+                "{\"work\":\"0000000000000000\",\"difficulty\":\"ffffffffffffffff\",\"multiplier\":\"1.0\"}"));
+        racer.setEnabled(WorkRacer.Source.LOCAL, false);
+        
+        try {
+            racer.generate(ROOT, new WorkDifficulty("fffffff000000000")).get(10, TimeUnit.SECONDS);
+            fail("Invalid work should not be accepted.");
+        } catch (ExecutionException ignored) {}
+        assertEquals(1, racer.getStats(WorkRacer.Source.NODE).getFailures());
+        
+        try {
+            racer.setEnabled(WorkRacer.Source.NODE, false);
+            fail("All sources should not be disabled.");
+        } catch (IllegalArgumentException ignored) {}
+    }
+    
+    
+    private static RpcQueryNode node(RpcRequestExecutor executor) {
+        return new RpcQueryNode.Builder().setRequestExecutor(executor).build();
+    }
+    
+}
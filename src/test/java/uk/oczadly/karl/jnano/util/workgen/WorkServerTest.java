@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 Karl Oczadly (karl@oczadly.uk)
+ * Licensed under the MIT License
+ */
+
+package uk.oczadly.karl.jnano.util.workgen;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import uk.oczadly.karl.jnano.model.work.WorkDifficulty;
+import uk.oczadly.karl.jnano.model.work.WorkSolution;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Karl Oczadly
+ */
+public class WorkServerTest {
+    
+    static final String ROOT = "718CC2121C3E641059BC1C2CFC45666C99E8AE922F7A807B7D07B62C995D79E2";
+    static final WorkDifficulty LOW = new WorkDifficulty("fff0000000000000");
+    
+    
+    @Test
+    public void testGenerateAndValidate() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(() -> LOW, 1)) {
+            WorkServer server = new WorkServer(gen, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+            List<String> completed = new CopyOnWriteArrayList<>();
+            server.registerListener((action, hash, duration, success) -> {
+                assertTrue(duration > 0);
+                completed.add(action + ":" + success);
+            });
+            server.start();
+            try {
+                JsonObject gen1 = send(server, "{\"action\":\"work_generate\",\"hash\":\"" + ROOT + "\"}")
+                        .get(30, TimeUnit.SECONDS);
+                WorkSolution work = new WorkSolution(gen1.get("work").getAsString());
+                assertTrue(work.calculateDifficulty(ROOT).isValid(LOW));
+                assertEquals(ROOT, gen1.get("hash").getAsString());
+                
+                JsonObject val = send(server, "{\"action\":\"work_validate\",\"hash\":\"" + ROOT + "\",\"work\":\""
+                        + work.getAsHexadecimal() + "\",\"difficulty\":\"ffffffffffffffff\"}").get();
+                assertEquals("1", val.get("valid_all").getAsString());
+                assertEquals("0", val.get("valid").getAsString());
+                
+                JsonObject err = send(server, "{\"action\":\"work_generate\",\"hash\":\"XYZ\"}").get();
+                assertTrue(err.has("error"));
+                while (completed.size() < 3)
+                    Thread.sleep(1); // Listeners are notified after the response is sent
+                assertEquals(List.of("work_generate:true", "work_validate:true", "work_generate:false"), completed);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+    
+    @Test
+    public void testCancel() throws Exception {
+        try (WorkGenerator gen = new WorkGenerator(() -> WorkDifficulty.MAX_VALUE, 1)) {
+            WorkServer server = new WorkServer(gen, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+            server.start();
+            try {
+                CompletableFuture<JsonObject> pending = send(server,
+                        "{\"action\":\"work_generate\",\"hash\":\"" + ROOT + "\"}");
+                while (gen.getActiveCount() == 0)
+                    Thread.sleep(1);
+                CompletableFuture<WorkSolution> shared = gen.generate(ROOT, WorkDifficulty.MAX_VALUE);
+                JsonObject cancel = send(server, "{\"action\":\"work_cancel\",\"hash\":\"" + ROOT + "\"}").get();
+                assertFalse(cancel.has("error"));
+                assertTrue(pending.get(10, TimeUnit.SECONDS).has("error"));
+                assertFalse(shared.isDone()); // Other subscribers are unaffected
+                assertEquals(1, gen.getActiveCount());
+                
+                JsonObject err = send(server, "{\"action\":[],\"hash\":{}}").get(10, TimeUnit.SECONDS);
+                assertTrue(err.has("error"));
+            } finally {
+                server.stop();
+            }
+        }
+    }
+    
+    
+    private static CompletableFuture<JsonObject> send(WorkServer server, String body) {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getAddress().getPort() + "/"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(r -> JsonParser.parseString(r.body()).getAsJsonObject());
+    }
+    
+}